@@ -32,17 +32,24 @@ import com.igormaznitsa.jcp.cmdline.ExcludedFileExtensionsHandler;
 import com.igormaznitsa.jcp.cmdline.FileExtensionsHandler;
 import com.igormaznitsa.jcp.cmdline.GlobalVariableDefiningFileHandler;
 import com.igormaznitsa.jcp.cmdline.GlobalVariableHandler;
+import com.igormaznitsa.jcp.cmdline.HardLinkCopyHandler;
 import com.igormaznitsa.jcp.cmdline.HelpHandler;
 import com.igormaznitsa.jcp.cmdline.InCharsetHandler;
+import com.igormaznitsa.jcp.cmdline.IncrementalHandler;
 import com.igormaznitsa.jcp.cmdline.KeepAttributesHandler;
 import com.igormaznitsa.jcp.cmdline.KeepLineHandler;
 import com.igormaznitsa.jcp.cmdline.OutCharsetHandler;
+import com.igormaznitsa.jcp.cmdline.ParallelHandler;
 import com.igormaznitsa.jcp.cmdline.PreserveIndentDirectiveHandler;
 import com.igormaznitsa.jcp.cmdline.RemoveCommentsHandler;
 import com.igormaznitsa.jcp.cmdline.SourceDirectoryHandler;
 import com.igormaznitsa.jcp.cmdline.UnknownAsFalseHandler;
 import com.igormaznitsa.jcp.cmdline.VerboseHandler;
+import com.igormaznitsa.jcp.cmdline.WatchHandler;
 import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.context.ContentHashManifest;
+import com.igormaznitsa.jcp.context.DependencyGraph;
+import com.igormaznitsa.jcp.context.IncrementalManifest;
 import com.igormaznitsa.jcp.context.PreprocessingState;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.directives.ExcludeIfDirectiveHandler;
@@ -52,23 +59,47 @@ import com.igormaznitsa.jcp.expression.Expression;
 import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.expression.ValueType;
 import com.igormaznitsa.jcp.utils.PreprocessorUtils;
+import com.igormaznitsa.jcp.utils.SourceTreeScanner;
 import com.igormaznitsa.meta.annotation.MustNotContainNull;
 import lombok.Data;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
-import org.springframework.util.AntPathMatcher;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.igormaznitsa.jcp.InfoHelper.makeTextForHelpInfo;
 import static com.igormaznitsa.jcp.utils.PreprocessorUtils.readWholeTextFileIntoArray;
@@ -102,9 +133,21 @@ public final class JcpPreprocessor {
       new PreserveIndentDirectiveHandler(),
       new ExcludeFoldersHandler(),
       new KeepAttributesHandler(),
-      new UnknownAsFalseHandler()
+      new UnknownAsFalseHandler(),
+      new ParallelHandler(),
+      new IncrementalHandler(),
+      new WatchHandler(),
+      new HardLinkCopyHandler()
   };
+  private static final long WATCH_QUIET_PERIOD_MS = 200L;
+  private static final int COPY_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
   private final PreprocessorContext context;
+  private volatile DependencyGraph dependencyGraph = new DependencyGraph();
+  private Collection<FileInfoContainer> processedFiles = Collections.emptyList();
+  private Map<String, Value> globalPhaseVariables = Collections.emptyMap();
+  private boolean globalsChangedByPreprocessing;
+  private Set<String> globalDirectiveFiles = Collections.emptySet();
 
   public JcpPreprocessor(@Nonnull final PreprocessorContext context) {
     assertNotNull("Configurator is null", context);
@@ -137,7 +180,11 @@ public final class JcpPreprocessor {
     final JcpPreprocessor preprocessor = new JcpPreprocessor(preprocessorContext);
 
     try {
-      preprocessor.execute();
+      if (preprocessorContext.isWatch()) {
+        preprocessor.watch();
+      } else {
+        preprocessor.execute();
+      }
     } catch (Exception unexpected) {
       System.err.println(PreprocessorException.referenceAsString(' ', unexpected));
       System.exit(1);
@@ -208,9 +255,21 @@ public final class JcpPreprocessor {
     return this.context;
   }
 
+  /**
+   * Get reverse dependency graph built during the last execution, it shows which preprocessed files use included, evaluated, binary and XML files.
+   *
+   * @return the dependency graph, must not be null
+   * @since 7.0.3
+   */
+  @Nonnull
+  public DependencyGraph getDependencyGraph() {
+    return this.dependencyGraph;
+  }
+
   @Nonnull
   public Statistics execute() throws IOException {
     final long timeStart = System.currentTimeMillis();
+    this.dependencyGraph = new DependencyGraph();
     processConfigFiles();
 
     this.context.logInfo(String.format("File extensions: %s excluded %s", this.context.getExtensions(), this.context.getExcludeExtensions()));
@@ -226,19 +285,279 @@ public final class JcpPreprocessor {
     final List<PreprocessingState.ExcludeIfInfo> excludedIf = processGlobalDirectives(filesToBePreprocessed);
 
     processFileExclusion(excludedIf);
+    this.globalPhaseVariables = new HashMap<>(this.context.getGlobalVarTable());
     if (!this.context.isDryRun()) {
       createTargetFolder();
     } else {
       this.context.logInfo("Dry run mode is ON");
     }
     final Statistics stat = preprocessFiles(filesToBePreprocessed);
+    this.processedFiles = filesToBePreprocessed;
+    this.globalsChangedByPreprocessing = !this.globalPhaseVariables.equals(this.context.getGlobalVarTable());
 
     final long elapsedTime = System.currentTimeMillis() - timeStart;
+    this.context.logDebug(String.format("Source text cache: %d hits, %d misses", this.context.getSourceTextCache().getHits(), this.context.getSourceTextCache().getMisses()));
+    this.context.logDebug(String.format("Expression tree cache: %d hits, %d misses", this.context.getExpressionTreeCache().getHits(), this.context.getExpressionTreeCache().getMisses()));
+    this.context.logDebug(String.format("Function result cache: %d hits, %d misses", this.context.getFunctionResultCache().getHits(), this.context.getFunctionResultCache().getMisses()));
     this.context.logInfo("-----------------------------------------------------------------");
-    this.context.logInfo(String.format("Preprocessed %d files, copied %d files, ignored %d files, elapsed time %d ms", stat.getPreprocessed(), stat.getCopied(), stat.getExcluded(), elapsedTime));
+    if (this.context.isIncremental()) {
+      this.context.logInfo(String.format("Preprocessed %d files, skipped %d unchanged files, copied %d files, ignored %d files, elapsed time %d ms", stat.getPreprocessed(), stat.getSkipped(), stat.getCopied(), stat.getExcluded(), elapsedTime));
+    } else {
+      this.context.logInfo(String.format("Preprocessed %d files, copied %d files, ignored %d files, elapsed time %d ms", stat.getPreprocessed(), stat.getCopied(), stat.getExcluded(), elapsedTime));
+    }
     return stat;
   }
 
+  /**
+   * Preprocess files and then watch source folders, used files and config files, changed files are preprocessed again in the same JVM with warm caches.
+   * Global phase is processed again only if a config file or a file with global phase directives is changed, a file is added or removed, otherwise
+   * only changed files and files which use them are preprocessed. Preprocessing errors are logged and the watching is continued.
+   * The method blocks the current thread until it is interrupted.
+   *
+   * @throws IOException it will be thrown if the file system can't be watched
+   * @since 7.0.3
+   */
+  public void watch() throws IOException {
+    final Map<String, Value> initialGlobalVariables = new HashMap<>(this.context.getGlobalVarTable());
+
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      final Set<Path> watchedFolders = new HashSet<>();
+      Set<File> changedFiles = Collections.emptySet();
+      boolean fullRun = true;
+
+      while (true) {
+        boolean foldersChanged = fullRun;
+        try {
+          if (!fullRun) {
+            final Set<FileInfoContainer> affectedFiles = new HashSet<>();
+            fullRun = findAffectedFiles(changedFiles, affectedFiles) || (!affectedFiles.isEmpty() && !preprocessAffectedFiles(affectedFiles));
+            foldersChanged = fullRun;
+          }
+          if (fullRun) {
+            restoreGlobalVariables(initialGlobalVariables);
+            execute();
+            this.globalDirectiveFiles = findGlobalDirectiveFiles();
+            fullRun = false;
+          }
+        } catch (IOException | RuntimeException ex) {
+          this.context.logError(PreprocessorException.referenceAsString(' ', ex));
+          fullRun = true;
+        }
+
+        if (foldersChanged) {
+          registerWatchedFolders(watchService, watchedFolders);
+        }
+
+        this.context.logInfo("Waiting for changes...");
+        changedFiles = new LinkedHashSet<>();
+        try {
+          if (!waitForChanges(watchService, watchedFolders, changedFiles)) {
+            this.context.logInfo("Too many changes, all files will be preprocessed");
+            fullRun = true;
+          }
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          this.context.logInfo("Watching has been stopped");
+          return;
+        }
+      }
+    }
+  }
+
+  private boolean waitForChanges(
+      @Nonnull final WatchService watchService,
+      @Nonnull @MustNotContainNull final Set<Path> watchedFolders,
+      @Nonnull @MustNotContainNull final Set<File> changedFiles
+  ) throws InterruptedException {
+    boolean result = true;
+    // collect events until the file system becomes quiet to process batch saves together
+    WatchKey key = watchService.take();
+    while (key != null) {
+      final Path folder = (Path) key.watchable();
+      for (final WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+          result = false;
+        } else {
+          changedFiles.add(folder.resolve((Path) event.context()).toFile());
+        }
+      }
+      if (!key.reset()) {
+        watchedFolders.remove(folder);
+      }
+      key = watchService.poll(WATCH_QUIET_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+    return result;
+  }
+
+  private void registerWatchedFolders(@Nonnull final WatchService watchService, @Nonnull @MustNotContainNull final Set<Path> watchedFolders) throws IOException {
+    final Path targetFolder = this.context.getTarget().toPath().toAbsolutePath().normalize();
+
+    for (final PreprocessorContext.SourceFolder sourceFolder : this.context.getSources()) {
+      final Path root = sourceFolder.getAsFile().toPath();
+      if (Files.isDirectory(root)) {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+          @Override
+          @Nonnull
+          public FileVisitResult preVisitDirectory(@Nonnull final Path dir, @Nonnull final BasicFileAttributes attrs) throws IOException {
+            if (dir.toAbsolutePath().normalize().equals(targetFolder)) {
+              return FileVisitResult.SKIP_SUBTREE;
+            }
+            registerWatchedFolder(watchService, watchedFolders, dir);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          @Nonnull
+          public FileVisitResult visitFileFailed(@Nonnull final Path file, @Nonnull final IOException exc) {
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      }
+    }
+
+    for (final File configFile : this.context.getConfigFiles()) {
+      registerWatchedFolder(watchService, watchedFolders, configFile.getAbsoluteFile().getParentFile().toPath());
+    }
+
+    for (final File resource : this.dependencyGraph.getResources()) {
+      registerWatchedFolder(watchService, watchedFolders, resource.getParentFile().toPath());
+    }
+  }
+
+  private void registerWatchedFolder(@Nonnull final WatchService watchService, @Nonnull @MustNotContainNull final Set<Path> watchedFolders, @Nonnull final Path folder) throws IOException {
+    final Path normalized = folder.toAbsolutePath().normalize();
+    if (Files.isDirectory(normalized) && watchedFolders.add(normalized)) {
+      normalized.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+      this.context.logDebug("Watching folder: " + normalized);
+    }
+  }
+
+  /**
+   * Find files to be preprocessed again for changed files.
+   *
+   * @param changedFiles  changed files reported by the watch service, must not be null
+   * @param affectedFiles collection to be filled by files which should be preprocessed again, must not be null
+   * @return true if changes can't be processed without new global phase, false otherwise
+   * @throws IOException it will be thrown for any IO error
+   */
+  private boolean findAffectedFiles(
+      @Nonnull @MustNotContainNull final Set<File> changedFiles,
+      @Nonnull @MustNotContainNull final Set<FileInfoContainer> affectedFiles
+  ) throws IOException {
+    final String targetPath = this.context.getTarget().getCanonicalPath() + File.separator;
+
+    final Set<String> configFiles = new HashSet<>();
+    for (final File configFile : this.context.getConfigFiles()) {
+      configFiles.add(configFile.getCanonicalPath());
+    }
+
+    final Map<String, FileInfoContainer> knownFiles = new HashMap<>();
+    for (final FileInfoContainer fileRef : this.processedFiles) {
+      knownFiles.put(fileRef.getSourceFile().getCanonicalPath(), fileRef);
+    }
+
+    for (final File file : changedFiles) {
+      final String path = file.getCanonicalPath();
+      if (path.startsWith(targetPath)) {
+        continue;
+      }
+
+      this.context.getSourceTextCache().invalidate(file);
+
+      if (configFiles.contains(path)) {
+        this.context.logInfo("Detected change of config file: " + path);
+        return true;
+      }
+
+      final List<File> dependents = this.dependencyGraph.findDependents(file);
+      final FileInfoContainer fileRef = knownFiles.get(path);
+
+      if (fileRef == null) {
+        if (file.isDirectory() || (file.isFile() && dependents.isEmpty() && isInSources(path) && !this.context.isFileExcludedByExtension(file))) {
+          this.context.logInfo("Detected new source: " + path);
+          return true;
+        }
+      } else if (!file.isFile()) {
+        this.context.logInfo("Detected removed source file: " + path);
+        return true;
+      } else {
+        if (!fileRef.isCopyOnly() && (this.globalDirectiveFiles.contains(path) || fileRef.hasGlobalPhaseDirectives(this.context))) {
+          this.context.logInfo("Detected change of file with global phase directives: " + path);
+          return true;
+        }
+        affectedFiles.add(fileRef);
+      }
+
+      for (final File root : dependents) {
+        final FileInfoContainer dependent = knownFiles.get(root.getCanonicalPath());
+        if (dependent != null) {
+          affectedFiles.add(dependent);
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean isInSources(@Nonnull final String canonicalPath) throws IOException {
+    for (final PreprocessorContext.SourceFolder sourceFolder : this.context.getSources()) {
+      if (canonicalPath.startsWith(sourceFolder.getAsFile().getCanonicalPath() + File.separator)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Preprocess affected files again with global variables made by the last global phase.
+   *
+   * @param affectedFiles files to be preprocessed, must not be null
+   * @return false if global variables are changed during preprocessing so that all files must be preprocessed, true otherwise
+   * @throws IOException it will be thrown for any IO error
+   */
+  private boolean preprocessAffectedFiles(@Nonnull @MustNotContainNull final Set<FileInfoContainer> affectedFiles) throws IOException {
+    // #define in a file is visible in next files so that the files can't be preprocessed separately
+    if (this.globalsChangedByPreprocessing) {
+      this.context.logInfo("Global variables are changed during preprocessing, all files will be preprocessed");
+      return false;
+    }
+
+    final long timeStart = System.currentTimeMillis();
+    restoreGlobalVariables(this.globalPhaseVariables);
+
+    int counter = 0;
+    for (final FileInfoContainer fileRef : this.processedFiles) {
+      if (affectedFiles.contains(fileRef)) {
+        this.dependencyGraph.removeDependencies(fileRef.getSourceFile());
+        processFile(fileRef, this.context, null, null);
+        counter++;
+      }
+    }
+
+    if (!this.globalPhaseVariables.equals(this.context.getGlobalVarTable())) {
+      this.context.logInfo("Global variables are changed during preprocessing, all files will be preprocessed");
+      return false;
+    }
+
+    this.context.logInfo(String.format("Preprocessed %d changed files, elapsed time %d ms", counter, System.currentTimeMillis() - timeStart));
+    return true;
+  }
+
+  @Nonnull
+  @MustNotContainNull
+  private Set<String> findGlobalDirectiveFiles() throws IOException {
+    final Set<String> result = new HashSet<>();
+    for (final FileInfoContainer fileRef : this.processedFiles) {
+      if (!fileRef.isCopyOnly() && fileRef.hasGlobalPhaseDirectives(this.context)) {
+        result.add(fileRef.getSourceFile().getCanonicalPath());
+      }
+    }
+    return result;
+  }
+
+  private void restoreGlobalVariables(@Nonnull final Map<String, Value> variables) {
+    this.context.replaceGlobalVariables(variables);
+  }
+
   private void processFileExclusion(@Nonnull @MustNotContainNull final List<PreprocessingState.ExcludeIfInfo> foundExcludeIf) {
     final String DIRECTIVE_NAME = new ExcludeIfDirectiveHandler().getFullName();
 
@@ -284,11 +603,15 @@ public final class JcpPreprocessor {
   @Nonnull
   @MustNotContainNull
   private List<PreprocessingState.ExcludeIfInfo> processGlobalDirectives(@Nonnull @MustNotContainNull final Collection<FileInfoContainer> files) throws IOException {
+    if (this.context.isParallel()) {
+      return processGlobalDirectivesInParallel(files);
+    }
+
     final List<PreprocessingState.ExcludeIfInfo> result = new ArrayList<>();
     for (final FileInfoContainer fileRef : files) {
       if (!(fileRef.isExcludedFromPreprocessing() || fileRef.isCopyOnly())) {
         final long startTime = System.currentTimeMillis();
-        result.addAll(fileRef.processGlobalDirectives(null, context));
+        result.addAll(fileRef.replayGlobalDirectives(fileRef.scanGlobalDirectives(this.context), this.context));
         final long elapsedTime = System.currentTimeMillis() - startTime;
         if (context.isVerbose()) {
           context.logForVerbose(String.format("Global phase completed for file '%s', elapsed time %d ms ", PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
@@ -298,46 +621,457 @@ public final class JcpPreprocessor {
     return result;
   }
 
+  /**
+   * Files are read and scanned for global directives in a thread pool but found directives are processed in the file list order,
+   * so that global variables and exclude-if conditions are the same as in sequential processing.
+   *
+   * @param files files to be processed, must not be null
+   * @return list of found exclude-if conditions, must not be null
+   * @throws IOException if any IO error or interruption
+   * @see FileInfoContainer#scanGlobalDirectives(PreprocessorContext)
+   */
+  @Nonnull
+  @MustNotContainNull
+  private List<PreprocessingState.ExcludeIfInfo> processGlobalDirectivesInParallel(@Nonnull @MustNotContainNull final Collection<FileInfoContainer> files) throws IOException {
+    final List<PreprocessingState.ExcludeIfInfo> result = new ArrayList<>();
+
+    final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    try {
+      final List<FileInfoContainer> scannedFiles = new ArrayList<>(files.size());
+      final List<ForkJoinTask<FileInfoContainer.GlobalDirectivesScan>> tasks = new ArrayList<>(files.size());
+      for (final FileInfoContainer fileRef : files) {
+        if (!(fileRef.isExcludedFromPreprocessing() || fileRef.isCopyOnly())) {
+          scannedFiles.add(fileRef);
+          tasks.add(pool.submit(() -> fileRef.scanGlobalDirectives(this.context)));
+        }
+      }
+
+      for (int i = 0; i < tasks.size(); i++) {
+        final FileInfoContainer fileRef = scannedFiles.get(i);
+        final long startTime = System.currentTimeMillis();
+        result.addAll(fileRef.replayGlobalDirectives(waitResult(tasks.get(i)), this.context));
+        final long elapsedTime = System.currentTimeMillis() - startTime;
+        if (context.isVerbose()) {
+          context.logForVerbose(String.format("Global phase completed for file '%s', elapsed time %d ms ", PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return result;
+  }
+
+  @Nonnull
+  private static <T> T waitResult(@Nonnull final Future<T> task) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Parallel preprocessing has been interrupted");
+    } catch (ExecutionException ex) {
+      final Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else {
+        throw new IOException("Unexpected error during parallel preprocessing", cause);
+      }
+    }
+  }
+
   @Nonnull
   private Statistics preprocessFiles(@Nonnull @MustNotContainNull final Collection<FileInfoContainer> files) throws IOException {
+    final File manifestFile = new File(this.context.getTarget(), IncrementalManifest.FILE_NAME);
+    final File graphFile = new File(this.context.getTarget(), DependencyGraph.FILE_NAME);
+    final IncrementalManifest previousManifest;
+    final IncrementalManifest manifest;
+    if (this.context.isIncremental() && !this.context.isDryRun()) {
+      previousManifest = loadManifest(manifestFile);
+      manifest = new IncrementalManifest();
+      manifest.markChangedDependents(previousManifest, loadDependencyGraph(graphFile));
+    } else {
+      previousManifest = null;
+      manifest = null;
+    }
+
+    final File hashManifestFile = new File(this.context.getTarget(), ContentHashManifest.FILE_NAME);
+    final ContentHashManifest hashManifest;
+    if (this.context.isDontOverwriteSameContent() && !this.context.isDryRun()) {
+      hashManifest = loadHashManifest(hashManifestFile);
+    } else {
+      hashManifest = null;
+    }
+
+    final List<FileProcessingResult> results;
+    this.context.setContentHashManifest(hashManifest);
+    final ExecutorService copyPool = makeCopyPool();
+    try {
+      if (this.context.isParallel()) {
+        results = preprocessFilesInParallel(files, copyPool, previousManifest, manifest);
+      } else {
+        results = preprocessFilesSequentially(files, copyPool, previousManifest, manifest);
+      }
+    } finally {
+      copyPool.shutdownNow();
+      this.context.setContentHashManifest(null);
+    }
+
+    if (hashManifest != null) {
+      hashManifest.save(hashManifestFile);
+      this.context.logDebug("Content hash manifest has been saved: " + hashManifestFile);
+    }
+
+    if (manifest != null) {
+      manifest.save(manifestFile);
+      this.context.logDebug("Incremental manifest has been saved: " + manifestFile);
+      this.dependencyGraph.save(graphFile);
+      this.context.logDebug("Dependency graph has been saved: " + graphFile);
+    }
+
     int preprocessedCounter = 0;
     int copiedCounter = 0;
     int excludedCounter = 0;
+    int skippedCounter = 0;
+
+    for (final FileProcessingResult result : results) {
+      switch (result) {
+        case EXCLUDED:
+          excludedCounter++;
+          break;
+        case COPIED:
+          copiedCounter++;
+          break;
+        case PREPROCESSED:
+          preprocessedCounter++;
+          break;
+        case SKIPPED:
+          skippedCounter++;
+          break;
+        default:
+          break;
+      }
+    }
+    return new Statistics(preprocessedCounter, copiedCounter, excludedCounter, skippedCounter);
+  }
+
+  @Nonnull
+  private IncrementalManifest loadManifest(@Nonnull final File manifestFile) {
+    try {
+      return IncrementalManifest.load(manifestFile);
+    } catch (IOException ex) {
+      this.context.logWarning("Can't load incremental manifest, all files will be preprocessed: " + ex.getMessage());
+      return new IncrementalManifest();
+    }
+  }
+
+  @Nonnull
+  private DependencyGraph loadDependencyGraph(@Nonnull final File graphFile) {
+    try {
+      return DependencyGraph.load(graphFile);
+    } catch (IOException ex) {
+      this.context.logWarning("Can't load dependency graph, dependencies will be checked for every file: " + ex.getMessage());
+      return new DependencyGraph();
+    }
+  }
+
+  @Nonnull
+  private ContentHashManifest loadHashManifest(@Nonnull final File manifestFile) {
+    try {
+      return ContentHashManifest.load(manifestFile);
+    } catch (IOException ex) {
+      this.context.logWarning("Can't load content hash manifest, written files will be compared by content: " + ex.getMessage());
+      return new ContentHashManifest();
+    }
+  }
 
+  /**
+   * Check that a destination file has the same content as a source file. If hash manifest is defined then the destination file is compared
+   * by its registered hash and read only if it is unknown or changed, else both files are read.
+   *
+   * @param hashManifest the hash manifest, can be null
+   * @param source       the source file, must not be null
+   * @param sourceHash   hash of the source file content, it is used only if the hash manifest is defined
+   * @param destination  the destination file, must not be null
+   * @return true if the content is the same, false otherwise
+   * @throws IOException it will be thrown for IO errors
+   */
+  private static boolean isSameContent(
+      @Nullable final ContentHashManifest hashManifest,
+      @Nonnull final File source,
+      final long sourceHash,
+      @Nonnull final File destination
+  ) throws IOException {
+    final Boolean sameContent = hashManifest == null ? null : hashManifest.checkContent(destination, source.length(), sourceHash);
+    return sameContent == null ? PreprocessorUtils.isFileContentEquals(source, destination) : sameContent;
+  }
+
+  @Nonnull
+  private static ExecutorService makeCopyPool() {
+    return Executors.newFixedThreadPool(COPY_THREADS, new ThreadFactory() {
+      private final AtomicInteger counter = new AtomicInteger();
+
+      @Override
+      @Nonnull
+      public Thread newThread(@Nonnull final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "jcp-copy-" + this.counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Preprocess files one by one in the current thread with the context. Copy-only files are copied in the IO thread pool concurrently
+   * with preprocessing, results are collected in the file list order.
+   *
+   * @param files            files to be processed, must not be null
+   * @param copyPool         thread pool to copy files, must not be null
+   * @param previousManifest manifest of previous session in incremental mode, can be null
+   * @param manifest         manifest of the current session in incremental mode, can be null
+   * @return processing results in the file list order, must not be null
+   * @throws IOException if any IO error or interruption
+   */
+  @Nonnull
+  @MustNotContainNull
+  private List<FileProcessingResult> preprocessFilesSequentially(
+      @Nonnull @MustNotContainNull final Collection<FileInfoContainer> files,
+      @Nonnull final ExecutorService copyPool,
+      @Nullable final IncrementalManifest previousManifest,
+      @Nullable final IncrementalManifest manifest
+  ) throws IOException {
+    final List<Future<FileProcessingResult>> copyTasks = new ArrayList<>(files.size());
     for (final FileInfoContainer fileRef : files) {
-      if (fileRef.isExcludedFromPreprocessing()) {
-        excludedCounter++;
-      } else if (fileRef.isCopyOnly()) {
-        if (!context.isDryRun()) {
-          final File destinationFile = this.context.createDestinationFileForPath(fileRef.makeTargetFilePathAsString());
-          boolean doCopy = true;
-
-          if (this.context.isDontOverwriteSameContent() && PreprocessorUtils.isFileContentEquals(fileRef.getSourceFile(), destinationFile)) {
-            doCopy = false;
-            if (this.context.isVerbose()) {
-              this.context.logForVerbose(String.format("Copy skipped because same content: %s -> {dst} %s", PreprocessorUtils.getFilePath(fileRef.getSourceFile()), fileRef.makeTargetFilePathAsString()));
+      if (!fileRef.isExcludedFromPreprocessing() && fileRef.isCopyOnly()) {
+        copyTasks.add(copyPool.submit(() -> processFile(fileRef, this.context, previousManifest, manifest)));
+      } else {
+        copyTasks.add(null);
+      }
+    }
+
+    final List<FileProcessingResult> results = new ArrayList<>(files.size());
+    int index = 0;
+    for (final FileInfoContainer fileRef : files) {
+      final Future<FileProcessingResult> copyTask = copyTasks.get(index++);
+      results.add(copyTask == null ? processFile(fileRef, this.context, previousManifest, manifest) : waitResult(copyTask));
+    }
+    return results;
+  }
+
+  /**
+   * Preprocess files in a work-stealing thread pool, every preprocessed file gets own fork of the context.
+   * Copy-only files are copied in own IO thread pool concurrently with preprocessing, so that blocking file operations don't hold preprocessing threads.
+   * Results are collected in the file list order so that statistics and the first reported error are the same for every run.
+   * Changes of global variables made by files are merged in the file list order, if a file has used a global variable changed by a previous file
+   * then it is preprocessed again with global variables which it would see in sequential mode.
+   *
+   * @param files            files to be processed, must not be null
+   * @param copyPool         thread pool to copy files, must not be null
+   * @param previousManifest manifest of previous session in incremental mode, can be null
+   * @param manifest         manifest of the current session in incremental mode, can be null
+   * @return processing results in the file list order, must not be null
+   * @throws IOException if any IO error or interruption
+   * @see PreprocessorContext#makeFork()
+   * @see PreprocessorContext#getReadGlobalVariables()
+   */
+  @Nonnull
+  @MustNotContainNull
+  private List<FileProcessingResult> preprocessFilesInParallel(
+      @Nonnull @MustNotContainNull final Collection<FileInfoContainer> files,
+      @Nonnull final ExecutorService copyPool,
+      @Nullable final IncrementalManifest previousManifest,
+      @Nullable final IncrementalManifest manifest
+  ) throws IOException {
+    final List<FileProcessingResult> results = new ArrayList<>(files.size());
+    final List<FileInfoContainer> fileList = new ArrayList<>(files);
+    final Map<String, Value> initialGlobalVariables = Collections.unmodifiableMap(new HashMap<>(this.context.getGlobalVarTable()));
+
+    final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    try {
+      final List<Future<ForkResult>> tasks = new ArrayList<>(fileList.size());
+      for (final FileInfoContainer fileRef : fileList) {
+        if (fileRef.isExcludedFromPreprocessing()) {
+          results.add(FileProcessingResult.EXCLUDED);
+          tasks.add(null);
+        } else if (fileRef.isCopyOnly()) {
+          results.add(null);
+          tasks.add(copyPool.submit(() -> new ForkResult(processFile(fileRef, this.context, previousManifest, manifest), null, Collections.emptySet(), Collections.emptyMap())));
+        } else {
+          results.add(null);
+          tasks.add(pool.submit(() -> processFileInFork(fileRef, initialGlobalVariables, previousManifest, manifest)));
+        }
+      }
+
+      final Map<String, Value> globalVariables = new HashMap<>(initialGlobalVariables);
+      final Set<String> changedGlobalVariables = new HashSet<>();
+
+      for (int i = 0; i < tasks.size(); i++) {
+        final Future<ForkResult> task = tasks.get(i);
+        if (task != null) {
+          final ForkResult forkResult = waitResult(task);
+          final Map<String, Value> changes;
+          if (forkResult.isAffectedBy(changedGlobalVariables)) {
+            final FileInfoContainer fileRef = fileList.get(i);
+            this.context.logDebug("Global variables changed by previous files are used, preprocessing again: " + PreprocessorUtils.getFilePath(fileRef.getSourceFile()));
+            this.dependencyGraph.removeDependencies(fileRef.getSourceFile());
+            final PreprocessorContext fork = this.context.makeFork();
+            fork.replaceGlobalVariables(globalVariables);
+            results.set(i, processFile(fileRef, fork, previousManifest, manifest));
+            changes = findChangedGlobalVariables(globalVariables, fork.getGlobalVarTable());
+          } else {
+            results.set(i, forkResult.getResult());
+            changes = forkResult.getChangedGlobalVariables();
+          }
+
+          for (final Map.Entry<String, Value> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+              globalVariables.remove(change.getKey());
+            } else {
+              globalVariables.put(change.getKey(), change.getValue());
             }
+            changedGlobalVariables.add(change.getKey());
           }
+        }
+      }
 
-          if (doCopy) {
-            if (this.context.isVerbose()) {
-              this.context.logForVerbose(String.format("Copy file %s -> {dst} %s", PreprocessorUtils.getFilePath(fileRef.getSourceFile()), fileRef.makeTargetFilePathAsString()));
+      if (!changedGlobalVariables.isEmpty()) {
+        this.context.replaceGlobalVariables(globalVariables);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return results;
+  }
+
+  @Nonnull
+  private ForkResult processFileInFork(
+      @Nonnull final FileInfoContainer fileRef,
+      @Nonnull final Map<String, Value> initialGlobalVariables,
+      @Nullable final IncrementalManifest previousManifest,
+      @Nullable final IncrementalManifest manifest
+  ) {
+    final PreprocessorContext fork = this.context.makeFork();
+    FileProcessingResult result = null;
+    Exception error = null;
+    try {
+      result = processFile(fileRef, fork, previousManifest, manifest);
+    } catch (IOException | RuntimeException ex) {
+      error = ex;
+    }
+    // names must be taken before the table request which makes them unknown
+    final Set<String> readGlobalVariables = fork.getReadGlobalVariables();
+    return new ForkResult(result, error, readGlobalVariables, findChangedGlobalVariables(initialGlobalVariables, fork.getGlobalVarTable()));
+  }
+
+  /**
+   * Find global variables which are different in a table and in its base.
+   *
+   * @param base  base table of global variables, must not be null
+   * @param table changed table of global variables, must not be null
+   * @return changed variables and their new values, removed variables have null as value
+   */
+  @Nonnull
+  private static Map<String, Value> findChangedGlobalVariables(@Nonnull final Map<String, Value> base, @Nonnull final Map<String, Value> table) {
+    final Map<String, Value> result = new HashMap<>();
+    for (final Map.Entry<String, Value> e : table.entrySet()) {
+      if (!e.getValue().equals(base.get(e.getKey()))) {
+        result.put(e.getKey(), e.getValue());
+      }
+    }
+    for (final String name : base.keySet()) {
+      if (!table.containsKey(name)) {
+        result.put(name, null);
+      }
+    }
+    return result;
+  }
+
+  @Nonnull
+  private FileProcessingResult processFile(
+      @Nonnull final FileInfoContainer fileRef,
+      @Nonnull final PreprocessorContext fileContext,
+      @Nullable final IncrementalManifest previousManifest,
+      @Nullable final IncrementalManifest manifest
+  ) throws IOException {
+    if (fileRef.isExcludedFromPreprocessing()) {
+      return FileProcessingResult.EXCLUDED;
+    } else if (fileRef.isCopyOnly()) {
+      if (!fileContext.isDryRun()) {
+        final File destinationFile = fileContext.createDestinationFileForPath(fileRef.makeTargetFilePathAsString());
+        boolean doCopy = true;
+        // the manifest is defined only if same content must not be overwritten
+        final ContentHashManifest hashManifest = fileContext.getContentHashManifest();
+        final long sourceHash = hashManifest == null ? 0L : ContentHashManifest.hash(fileRef.getSourceFile());
+
+        if (fileContext.isDontOverwriteSameContent() && isSameContent(hashManifest, fileRef.getSourceFile(), sourceHash, destinationFile)) {
+          doCopy = false;
+          if (fileContext.isVerbose()) {
+            fileContext.logForVerbose(String.format("Copy skipped because same content: %s -> {dst} %s", PreprocessorUtils.getFilePath(fileRef.getSourceFile()), fileRef.makeTargetFilePathAsString()));
+          }
+        }
+
+        if (doCopy) {
+          if (fileContext.isVerbose()) {
+            fileContext.logForVerbose(String.format("Copy file %s -> {dst} %s", PreprocessorUtils.getFilePath(fileRef.getSourceFile()), fileRef.makeTargetFilePathAsString()));
+          }
+          if (fileContext.isHardLinkCopy()) {
+            if (!PreprocessorUtils.linkFile(fileRef.getSourceFile(), destinationFile, fileContext.isKeepAttributes()) && fileContext.isVerbose()) {
+              fileContext.logForVerbose(String.format("Can't make hard link, file copied %s -> {dst} %s", PreprocessorUtils.getFilePath(fileRef.getSourceFile()), fileRef.makeTargetFilePathAsString()));
             }
-            PreprocessorUtils.copyFile(fileRef.getSourceFile(), destinationFile, this.context.isKeepAttributes());
-            copiedCounter++;
+          } else {
+            PreprocessorUtils.copyFile(fileRef.getSourceFile(), destinationFile, fileContext.isKeepAttributes());
           }
         }
-      } else {
-        final long startTime = System.currentTimeMillis();
-        fileRef.preprocessFile(null, this.context);
-        final long elapsedTime = System.currentTimeMillis() - startTime;
-        if (this.context.isVerbose()) {
-          this.context.logForVerbose(String.format("File preprocessing completed  '%s', elapsed time %d ms", PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
+
+        if (hashManifest != null) {
+          hashManifest.register(destinationFile, sourceHash);
+        }
+        if (doCopy) {
+          return FileProcessingResult.COPIED;
+        }
+      }
+      return FileProcessingResult.NONE;
+    } else {
+      String fingerprint = null;
+      if (previousManifest != null && manifest != null) {
+        fingerprint = IncrementalManifest.makeContextFingerprint(fileContext);
+        final IncrementalManifest.Record previousRecord = previousManifest.findRecord(fileRef.getSourceFile());
+        final IncrementalManifest.Record actualRecord = previousRecord == null ? null : manifest.checkUpToDate(previousRecord, fingerprint, fileContext.getTarget());
+        if (actualRecord != null) {
+          manifest.putRecord(actualRecord);
+          final List<File> recordedDependencies = new ArrayList<>();
+          actualRecord.getDependencies().forEach(x -> recordedDependencies.add(new File(x.getPath())));
+          this.dependencyGraph.addDependencies(fileRef.getSourceFile(), recordedDependencies);
+          if (fileContext.isVerbose()) {
+            fileContext.logForVerbose(String.format("File preprocessing skipped because nothing changed '%s'", PreprocessorUtils.getFilePath(fileRef.getSourceFile())));
+          }
+          return FileProcessingResult.SKIPPED;
         }
-        preprocessedCounter++;
       }
+
+      final long startTime = System.currentTimeMillis();
+      final Set<File> dependencies;
+      fileContext.startDependencyRecording();
+      try {
+        fileRef.preprocessFile(null, fileContext);
+      } finally {
+        dependencies = fileContext.stopDependencyRecording();
+      }
+      this.dependencyGraph.addDependencies(fileRef.getSourceFile(), dependencies);
+      final long elapsedTime = System.currentTimeMillis() - startTime;
+      if (fileContext.isVerbose()) {
+        fileContext.logForVerbose(String.format("File preprocessing completed  '%s', elapsed time %d ms", PreprocessorUtils.getFilePath(fileRef.getSourceFile()), elapsedTime));
+      }
+
+      if (fingerprint != null) {
+        // a file changing global variables affects next files and a file reading time or environment can't be checked by content so that they must not be skipped
+        final boolean volatileGlobals = fileContext.isVolatileVariableRead() || !fingerprint.equals(IncrementalManifest.makeContextFingerprint(fileContext));
+        manifest.putRecord(manifest.makeRecord(fileRef.getSourceFile(), fileRef.makeTargetFilePathAsString(), dependencies, fingerprint, volatileGlobals));
+      }
+      return FileProcessingResult.PREPROCESSED;
     }
-    return new Statistics(preprocessedCounter, copiedCounter, excludedCounter);
   }
 
   private void createTargetFolder() throws IOException {
@@ -366,24 +1100,20 @@ public final class JcpPreprocessor {
   private Collection<FileInfoContainer> collectFilesToPreprocess(@Nonnull @MustNotContainNull final List<PreprocessorContext.SourceFolder> sources, @Nonnull @MustNotContainNull final List<String> excluded) throws IOException {
     final Collection<FileInfoContainer> result = new ArrayList<>();
 
-    final AntPathMatcher antPathMatcher = new AntPathMatcher();
+    final SourceTreeScanner scanner = new SourceTreeScanner(this.context, excluded, this.context.isParallel());
 
     for (final PreprocessorContext.SourceFolder sourceFolder : sources) {
-      String canonicalSourcePath = sourceFolder.getAsFile().getCanonicalPath();
-
       this.context.logDebug("Processing folder: " + sourceFolder);
 
-      if (!canonicalSourcePath.endsWith(File.separator)) {
-        canonicalSourcePath += File.separator;
-      }
-
-      for (final File file : findAllFiles(canonicalSourcePath, sourceFolder.getAsFile(), antPathMatcher, excluded)) {
-        if (this.context.isFileExcludedByExtension(file)) {
+      for (final SourceTreeScanner.FoundFile foundFile : scanner.scan(sourceFolder.getAsFile())) {
+        final File file = foundFile.getFile();
+        // attributes are already read by the scanner so that extensions are checked directly without file system access
+        final String extension = PreprocessorUtils.getFileExtension(file);
+        if (this.context.getExcludeExtensions().contains(extension)) {
           this.context.logForVerbose(String.format("File '%s' excluded by its extension", file.getPath()));
         } else {
-          final String canonicalFilePath = file.getCanonicalPath();
-          final String canonicalRelativePath = canonicalFilePath.substring(canonicalSourcePath.length());
-          final FileInfoContainer reference = new FileInfoContainer(file, canonicalRelativePath, !this.context.isFileAllowedForPreprocessing(file));
+          final boolean allowedForPreprocessing = foundFile.getSize() != 0L && this.context.getExtensions().contains(extension);
+          final FileInfoContainer reference = new FileInfoContainer(file, foundFile.getRelativePath(), !allowedForPreprocessing);
           result.add(reference);
           this.context.logDebug("File added to preprocess list: " + reference);
         }
@@ -393,53 +1123,6 @@ public final class JcpPreprocessor {
     return result;
   }
 
-  @Nonnull
-  private Set<File> findAllFiles(
-      @Nonnull final String sourceCanonicalPath,
-      @Nonnull final File dir,
-      @Nonnull final AntPathMatcher antPathMatcher,
-      @Nonnull @MustNotContainNull final List<String> excludedFolderPatterns
-  ) throws IOException {
-
-    final Set<File> result = new HashSet<>();
-
-    this.context.logDebug("Looking for files in folder: " + dir);
-
-    final File[] allowedFiles = dir.listFiles();
-    if (allowedFiles == null) {
-      this.context.logWarning("Can't find files in folder: " + dir);
-    } else {
-      final String normalizedBasePath = FilenameUtils.normalize(sourceCanonicalPath, true);
-
-      for (final File file : allowedFiles) {
-        if (file.isDirectory()) {
-          final String folderPath = file.getCanonicalPath();
-          String excludedFolderPattern = null;
-
-          if (!excludedFolderPatterns.isEmpty()) {
-            final String subPathInBase = folderPath.substring(normalizedBasePath.length());
-
-            for (final String pattern : excludedFolderPatterns) {
-              if (antPathMatcher.match(pattern, subPathInBase)) {
-                excludedFolderPattern = pattern;
-                break;
-              }
-            }
-          }
-
-          if (excludedFolderPattern == null) {
-            result.addAll(findAllFiles(sourceCanonicalPath, file, antPathMatcher, excludedFolderPatterns));
-          } else {
-            this.context.logForVerbose(String.format("Folder '%s' excluded by '%s'", folderPath, excludedFolderPattern));
-          }
-        } else {
-          result.add(file);
-        }
-      }
-    }
-    return result;
-  }
-
   void processConfigFiles() throws IOException {
 
     for (final File file : context.getConfigFiles()) {
@@ -501,10 +1184,76 @@ public final class JcpPreprocessor {
     }
   }
 
+  /**
+   * Result of a file preprocessed in own fork of the context, it is accepted only if the fork has not used global variables changed by previous files.
+   */
+  private static final class ForkResult {
+    private final FileProcessingResult result;
+    private final Exception error;
+    private final Set<String> readGlobalVariables;
+    private final Map<String, Value> changedGlobalVariables;
+
+    private ForkResult(
+        @Nullable final FileProcessingResult result,
+        @Nullable final Exception error,
+        @Nullable final Set<String> readGlobalVariables,
+        @Nonnull final Map<String, Value> changedGlobalVariables
+    ) {
+      this.result = result;
+      this.error = error;
+      this.readGlobalVariables = readGlobalVariables;
+      this.changedGlobalVariables = changedGlobalVariables;
+    }
+
+    private boolean isAffectedBy(@Nonnull @MustNotContainNull final Set<String> changedNames) {
+      return !changedNames.isEmpty() && (this.readGlobalVariables == null || !Collections.disjoint(this.readGlobalVariables, changedNames));
+    }
+
+    @Nonnull
+    private FileProcessingResult getResult() throws IOException {
+      if (this.error instanceof IOException) {
+        throw (IOException) this.error;
+      } else if (this.error != null) {
+        throw (RuntimeException) this.error;
+      }
+      return assertNotNull(this.result);
+    }
+
+    @Nonnull
+    private Map<String, Value> getChangedGlobalVariables() {
+      return this.changedGlobalVariables;
+    }
+  }
+
+  private enum FileProcessingResult {
+    NONE,
+    EXCLUDED,
+    COPIED,
+    PREPROCESSED,
+    SKIPPED
+  }
+
   @Data
   public static final class Statistics {
     private final int preprocessed;
     private final int copied;
     private final int excluded;
+    /**
+     * Number of files skipped in incremental mode because nothing changed.
+     *
+     * @since 7.0.3
+     */
+    private final int skipped;
+
+    public Statistics(final int preprocessed, final int copied, final int excluded, final int skipped) {
+      this.preprocessed = preprocessed;
+      this.copied = copied;
+      this.excluded = excluded;
+      this.skipped = skipped;
+    }
+
+    public Statistics(final int preprocessed, final int copied, final int excluded) {
+      this(preprocessed, copied, excluded, 0);
+    }
   }
 }
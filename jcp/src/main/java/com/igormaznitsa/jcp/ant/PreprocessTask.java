@@ -81,6 +81,9 @@ public class PreprocessTask extends Task implements PreprocessorLogger, SpecialV
   private boolean allowWhitespaces = false;
   private boolean preserveIndents = false;
   private boolean dontOverwriteSameContent = false;
+  private boolean parallel = false;
+  private boolean incremental = false;
+  private boolean hardLinkCopy = false;
   private Map<String, Value> antVariables = new HashMap<>();
 
   private void registerConfigFiles(@Nonnull final PreprocessorContext context) {
@@ -156,6 +159,9 @@ public class PreprocessTask extends Task implements PreprocessorLogger, SpecialV
     context.setPreserveIndents(this.isPreserveIndents());
     context.setKeepAttributes(this.isKeepAttributes());
     context.setUnknownVariableAsFalse(this.isUnknownVarAsFalse());
+    context.setParallel(this.isParallel());
+    context.setIncremental(this.isIncremental());
+    context.setHardLinkCopy(this.isHardLinkCopy());
 
     if (this.getEol() != null) {
       context.setEol(StringEscapeUtils.unescapeJava(this.getEol()));
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.containers;
+
+import javax.annotation.Nullable;
+
+/**
+ * Map of directive blocks of a text, for every line with //#if (and its variants), //#else and //#while directive it keeps index of
+ * the line which continues the block (next //#else, //#endif or //#end). It allows to jump over inactive block without reading of its lines.
+ * The map is made once for a text and kept by the text, if the text contains unknown directives or broken blocks then the map doesn't
+ * contain any block to keep reporting of errors.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @see LineIndexedText#getDirectiveBlockMap()
+ * @since 7.0.3
+ */
+final class DirectiveBlockMap {
+
+  private final boolean allowWhitespaces;
+  private final int[] partners;
+
+  /**
+   * Constructor.
+   *
+   * @param allowWhitespaces flag shows that the map is made for directives which can contain whitespaces after comment
+   * @param partners         array contains index of partner line for every line or -1, can be null if there is no any block
+   */
+  DirectiveBlockMap(final boolean allowWhitespaces, @Nullable final int[] partners) {
+    this.allowWhitespaces = allowWhitespaces;
+    this.partners = partners;
+  }
+
+  boolean isAllowWhitespaces() {
+    return this.allowWhitespaces;
+  }
+
+  /**
+   * Find line which continues block started at line.
+   *
+   * @param lineIndex index of line contains //#if, //#else or //#while directive
+   * @return index of line contains next directive of the block or -1 if there is no such one
+   */
+  int findPartner(final int lineIndex) {
+    return this.partners == null || lineIndex < 0 || lineIndex >= this.partners.length ? -1 : this.partners[lineIndex];
+  }
+}
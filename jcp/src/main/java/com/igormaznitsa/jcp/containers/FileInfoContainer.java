@@ -23,9 +23,16 @@ package com.igormaznitsa.jcp.containers;
 
 import com.igormaznitsa.jcp.context.PreprocessingState;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.context.SourceTextCache;
 import com.igormaznitsa.jcp.directives.AbstractDirectiveHandler;
 import com.igormaznitsa.jcp.directives.AfterDirectiveProcessingBehaviour;
 import com.igormaznitsa.jcp.directives.DirectiveArgumentType;
+import com.igormaznitsa.jcp.directives.ElseDirectiveHandler;
+import com.igormaznitsa.jcp.directives.EndDirectiveHandler;
+import com.igormaznitsa.jcp.directives.EndIfDirectiveHandler;
+import com.igormaznitsa.jcp.directives.IfDefinedDirectiveHandler;
+import com.igormaznitsa.jcp.directives.IfDirectiveHandler;
+import com.igormaznitsa.jcp.directives.WhileDirectiveHandler;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.utils.PreprocessorUtils;
@@ -37,10 +44,9 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
 
@@ -52,11 +58,6 @@ import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
 @Data
 public class FileInfoContainer {
 
-  private static final Pattern DIRECTIVE_HASH_PREFIXED = Pattern.compile("^\\s*//\\s*#(.*)$");
-  private static final Pattern DIRECTIVE_TWO_DOLLARS_PREFIXED = Pattern.compile("^\\s*//\\s*\\$\\$(.*)$");
-  private static final Pattern DIRECTIVE_SINGLE_DOLLAR_PREFIXED = Pattern.compile("^\\s*//\\s*\\$(.*)$");
-  private static final Pattern DIRECTIVE_TAIL_REMOVER = Pattern.compile("\\/\\*\\s*-\\s*\\*\\/");
-
   public static final String WARNING_SPACE_BEFORE_HASH = "Detected hash prefixed comment line with whitespace, directive may be lost: ";
 
   /**
@@ -110,9 +111,9 @@ public class FileInfoContainer {
   private static String findTailRemover(@Nonnull final String str, @Nonnull final PreprocessorContext context) {
     String result = str;
     if (context.isAllowWhitespaces()) {
-      final Matcher matcher = DIRECTIVE_TAIL_REMOVER.matcher(str);
-      if (matcher.find()) {
-        result = str.substring(0, matcher.start());
+      final int tailRemoverStart = PreprocessorUtils.findSpaceTolerantTailRemover(str);
+      if (tailRemoverStart >= 0) {
+        result = str.substring(0, tailRemoverStart);
       }
     } else {
       final int tailRemoverStart = str.indexOf("/*-*/");
@@ -151,13 +152,119 @@ public class FileInfoContainer {
   @MustNotContainNull
   public List<PreprocessingState.ExcludeIfInfo> processGlobalDirectives(@Nullable final PreprocessingState state, @Nonnull final PreprocessorContext context) throws IOException {
     final PreprocessingState preprocessingState = state == null ? context.produceNewPreprocessingState(this, 0) : state;
+    return processGlobalDirectives(preprocessingState, null, context);
+  }
+
+  /**
+   * Read the file and find lines which can contain directives of the global phase. The method doesn't change the context so that it can be called concurrently for different files.
+   *
+   * @param context the preprocessor context, must not be null
+   * @return the scan result to be replayed by {@link #replayGlobalDirectives(GlobalDirectivesScan, PreprocessorContext)}, must not be null
+   * @throws IOException it will be thrown for any IO error
+   * @since 7.0.3
+   */
+  @Nonnull
+  public GlobalDirectivesScan scanGlobalDirectives(@Nonnull final PreprocessorContext context) throws IOException {
+    final LineIndexedText text = readText(context);
+
+    // only candidate lines are decoded and visited during replay, so that other lines are not kept
+    final String[] candidateText = new String[text.size()];
+    Arrays.fill(candidateText, "");
+
+    int[] lineIndexes = new int[16];
+    int counter = 0;
+
+    for (int i = 0; i < candidateText.length; i++) {
+      if (!text.isDirectivePrefixed(i, '#')) {
+        continue;
+      }
+      final String line = text.getLine(i);
+      final String leftTrimmed = PreprocessorUtils.leftTrim(line);
+      if (isGlobalPhaseCandidate(leftTrimmed, context)) {
+        if (counter == lineIndexes.length) {
+          lineIndexes = Arrays.copyOf(lineIndexes, counter << 1);
+        }
+        lineIndexes[counter++] = i;
+        candidateText[i] = line;
+      }
+    }
+
+    return new GlobalDirectivesScan(new TextFileDataContainer(this.sourceFile, candidateText, text.isEndedByNextLine(), 0), Arrays.copyOf(lineIndexes, counter));
+  }
+
+  @Nonnull
+  private LineIndexedText readText(@Nonnull final PreprocessorContext context) throws IOException {
+    final SourceTextCache textCache = context.getSourceTextCache();
+    return textCache == null
+        ? PreprocessorUtils.readWholeText(this.sourceFile, context.getSourceEncoding())
+        : textCache.readText(this.sourceFile, context.getSourceEncoding());
+  }
+
+  /**
+   * Process global directives for lines found by scan of the file, the result is the same as for sequential processing of the file.
+   *
+   * @param scan    result of the file scan, must not be null
+   * @param context the preprocessor context, must not be null
+   * @return list of found exclude-if conditions, must not be null
+   * @throws IOException it will be thrown for any IO error
+   * @see #scanGlobalDirectives(PreprocessorContext)
+   * @since 7.0.3
+   */
+  @Nonnull
+  @MustNotContainNull
+  public List<PreprocessingState.ExcludeIfInfo> replayGlobalDirectives(@Nonnull final GlobalDirectivesScan scan, @Nonnull final PreprocessorContext context) throws IOException {
+    if (context.isVerbose()) {
+      context.logInfo("Start search global definitions in '" + PreprocessorUtils.getFilePath(this.getSourceFile()) + '\'');
+    }
+    final PreprocessingState preprocessingState = context.produceNewPreprocessingState(this, scan.getText());
+    return processGlobalDirectives(preprocessingState, scan.getLineIndexes(), context);
+  }
+
+  /**
+   * Check that the file contains directives processed in the global phase (for instance {@code //#global} or {@code //#excludeif}).
+   *
+   * @param context the preprocessor context, must not be null
+   * @return true if there is any global phase directive in the file, false otherwise
+   * @throws IOException it will be thrown for any IO error
+   * @since 7.0.3
+   */
+  public boolean hasGlobalPhaseDirectives(@Nonnull final PreprocessorContext context) throws IOException {
+    final LineIndexedText text = readText(context);
+
+    for (int i = 0; i < text.size(); i++) {
+      if (!text.isDirectivePrefixed(i, '#')) {
+        continue;
+      }
+      final String leftTrimmed = PreprocessorUtils.leftTrim(text.getLine(i));
+      if (isGlobalPhaseCandidate(leftTrimmed, context) && (context.isAllowWhitespaces() || leftTrimmed.startsWith(AbstractDirectiveHandler.DIRECTIVE_PREFIX))) {
+        final String directive = extractHashPrefixedDirective(leftTrimmed, context);
+        final AbstractDirectiveHandler handler = AbstractDirectiveHandler.getDirectiveTrie().find(directive);
+        if (handler != null && handler.isGlobalPhaseAllowed()) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Nonnull
+  @MustNotContainNull
+  private List<PreprocessingState.ExcludeIfInfo> processGlobalDirectives(@Nonnull final PreprocessingState preprocessingState, @Nullable final int[] lineIndexes, @Nonnull final PreprocessorContext context) throws IOException {
     preprocessingState.setGlobalPhase(true);
 
     String leftTrimmedString = null;
+    int lineIndexPosition = 0;
     try {
       try {
         while (!Thread.currentThread().isInterrupted()) {
-          String nonTrimmedProcessingString = preprocessingState.nextLine();
+          String nonTrimmedProcessingString;
+          if (lineIndexes == null) {
+            nonTrimmedProcessingString = preprocessingState.nextLine();
+          } else if (lineIndexPosition < lineIndexes.length) {
+            nonTrimmedProcessingString = preprocessingState.goToString(lineIndexes[lineIndexPosition++]).nextLine();
+          } else {
+            nonTrimmedProcessingString = null;
+          }
 
           final Set<PreprocessingFlag> processFlags = preprocessingState.getPreprocessingFlags();
 
@@ -212,7 +319,7 @@ public class FileInfoContainer {
 
   private boolean isDoubleDollarPrefixed(@Nonnull final String line, @Nonnull final PreprocessorContext context) {
     if (context.isAllowWhitespaces()) {
-      return DIRECTIVE_TWO_DOLLARS_PREFIXED.matcher(line).matches();
+      return PreprocessorUtils.findSpaceTolerantDirectiveTail(line, "$$") >= 0;
     } else {
       return line.startsWith("//$$");
     }
@@ -220,19 +327,27 @@ public class FileInfoContainer {
 
   private boolean isSingleDollarPrefixed(@Nonnull final String line, @Nonnull final PreprocessorContext context) {
     if (context.isAllowWhitespaces()) {
-      return DIRECTIVE_SINGLE_DOLLAR_PREFIXED.matcher(line).matches();
+      return PreprocessorUtils.findSpaceTolerantDirectiveTail(line, "$") >= 0;
     } else {
       return line.startsWith("//$");
     }
   }
 
+  private static boolean isGlobalPhaseCandidate(@Nonnull final String line, @Nonnull final PreprocessorContext context) {
+    if (context.isAllowWhitespaces()) {
+      return PreprocessorUtils.findSpaceTolerantDirectiveTail(line, "#") >= 0;
+    } else {
+      return line.startsWith(AbstractDirectiveHandler.DIRECTIVE_PREFIX) || (line.startsWith("// ") && PreprocessorUtils.findSpaceTolerantDirectiveTail(line, "#") >= 0);
+    }
+  }
+
   private boolean isHashPrefixed(@Nonnull final String line, @Nonnull final PreprocessorContext context) {
     if (context.isAllowWhitespaces()) {
-      return DIRECTIVE_HASH_PREFIXED.matcher(line).matches();
+      return PreprocessorUtils.findSpaceTolerantDirectiveTail(line, "#") >= 0;
     } else {
       final boolean result = line.startsWith(AbstractDirectiveHandler.DIRECTIVE_PREFIX);
 
-      if (context.getPreprocessingState().isGlobalPhase() && !result && line.startsWith("// ") && DIRECTIVE_HASH_PREFIXED.matcher(line).matches()) {
+      if (context.getPreprocessingState().isGlobalPhase() && !result && line.startsWith("// ") && PreprocessorUtils.findSpaceTolerantDirectiveTail(line, "#") >= 0) {
         final TextFileDataContainer textContainer = context.getPreprocessingState().getCurrentIncludeFileContainer();
         String lineInfo = "<NONE>";
         if (textContainer != null) {
@@ -248,9 +363,9 @@ public class FileInfoContainer {
   @Nonnull
   private String extractHashPrefixedDirective(@Nonnull final String line, @Nonnull final PreprocessorContext context) {
     if (context.isAllowWhitespaces()) {
-      final Matcher matcher = DIRECTIVE_HASH_PREFIXED.matcher(line);
-      if (matcher.find()) {
-        return matcher.group(1);
+      final int tailStart = PreprocessorUtils.findSpaceTolerantDirectiveTail(line, "#");
+      if (tailStart >= 0) {
+        return line.substring(tailStart);
       } else {
         throw new Error("Unexpected situation, directive is not found, contact developer! (" + line + ')');
       }
@@ -263,9 +378,9 @@ public class FileInfoContainer {
   private String extractDoubleDollarPrefixedDirective(@Nonnull final String line, @Nonnull final PreprocessorContext context) {
     String tail;
     if (context.isAllowWhitespaces()) {
-      final Matcher matcher = DIRECTIVE_TWO_DOLLARS_PREFIXED.matcher(line);
-      if (matcher.find()) {
-        tail = matcher.group(1);
+      final int tailStart = PreprocessorUtils.findSpaceTolerantDirectiveTail(line, "$$");
+      if (tailStart >= 0) {
+        tail = line.substring(tailStart);
       } else {
         throw new Error("Unexpected situation, '//$$' directive is not found, contact developer! (" + line + ')');
       }
@@ -283,9 +398,9 @@ public class FileInfoContainer {
   private String extractSingleDollarPrefixedDirective(@Nonnull final String line, @Nonnull final PreprocessorContext context) {
     String tail;
     if (context.isAllowWhitespaces()) {
-      final Matcher matcher = DIRECTIVE_SINGLE_DOLLAR_PREFIXED.matcher(line);
-      if (matcher.find()) {
-        tail = matcher.group(1);
+      final int tailStart = PreprocessorUtils.findSpaceTolerantDirectiveTail(line, "$");
+      if (tailStart >= 0) {
+        tail = line.substring(tailStart);
       } else {
         throw new Error("Unexpected situation, '//$' directive is not found, contact developer! (" + line + ')');
       }
@@ -370,6 +485,8 @@ public class FileInfoContainer {
 
         if (isHashPrefixed(stringToBeProcessed, context)) {
           final String extractedDirective = extractHashPrefixedDirective(stringToBeProcessed, context);
+          final TextFileDataContainer directiveContainer = assertNotNull(preprocessingState.peekFile());
+          final int directiveLineIndex = directiveContainer.getLastReadStringIndex();
           switch (processDirective(preprocessingState, extractedDirective, context, false)) {
             case PROCESSED:
             case READ_NEXT_LINE: {
@@ -381,6 +498,8 @@ public class FileInfoContainer {
                 } else {
                   thePrinter.print(text);
                 }
+              } else {
+                skipInactiveBlock(preprocessingState, directiveContainer, directiveLineIndex, context);
               }
               continue;
             }
@@ -484,6 +603,83 @@ public class FileInfoContainer {
     return preprocessingState;
   }
 
+  /**
+   * Jump to the line which continues block if a block directive has made processing inactive. Lines of inactive block don't make any output
+   * if lines are not kept, and blocks inside are balanced, so that processing of the lines doesn't change anything.
+   *
+   * @param state          current preprocessing state, must not be null
+   * @param container      text container which line contains the processed directive, must not be null
+   * @param directiveIndex index of the processed directive line
+   * @param context        preprocessor context, must not be null
+   */
+  private void skipInactiveBlock(@Nonnull final PreprocessingState state, @Nonnull final TextFileDataContainer container, final int directiveIndex, @Nonnull final PreprocessorContext context) {
+    if (state.peekFile() != container || container.getNextStringIndex() != directiveIndex + 1 || state.isDirectiveCanBeProcessed()) {
+      return;
+    }
+    final int partner = findDirectiveBlockMap(container.getIndexedText(), context).findPartner(directiveIndex);
+    if (partner > directiveIndex) {
+      state.goToString(partner);
+    }
+  }
+
+  @Nonnull
+  private DirectiveBlockMap findDirectiveBlockMap(@Nonnull final LineIndexedText text, @Nonnull final PreprocessorContext context) {
+    DirectiveBlockMap result = text.getDirectiveBlockMap();
+    if (result == null || result.isAllowWhitespaces() != context.isAllowWhitespaces()) {
+      result = makeDirectiveBlockMap(text, context);
+      text.setDirectiveBlockMap(result);
+    }
+    return result;
+  }
+
+  @Nonnull
+  private DirectiveBlockMap makeDirectiveBlockMap(@Nonnull final LineIndexedText text, @Nonnull final PreprocessorContext context) {
+    final DirectiveBlockMap noBlocks = new DirectiveBlockMap(context.isAllowWhitespaces(), null);
+    final int[] partners = new int[text.size()];
+    Arrays.fill(partners, -1);
+
+    // indexes of last lines of open blocks, while blocks are kept inverted
+    int[] openBlocks = new int[16];
+    int depth = 0;
+
+    for (int i = 0; i < partners.length; i++) {
+      final String leftTrimmed = PreprocessorUtils.leftTrim(text.getLine(i));
+      if (!isHashPrefixed(leftTrimmed, context)) {
+        continue;
+      }
+
+      final String directive = extractHashPrefixedDirective(leftTrimmed, context);
+      final AbstractDirectiveHandler handler = AbstractDirectiveHandler.getDirectiveTrie().find(directive);
+      if (handler == null
+          || (handler.isPreprocessingPhaseAllowed() && !checkDirectiveArgumentRoughly(handler, PreprocessorUtils.extractTail(handler.getName(), directive)))) {
+        return noBlocks;
+      }
+
+      if (handler instanceof IfDirectiveHandler || handler instanceof IfDefinedDirectiveHandler || handler instanceof WhileDirectiveHandler) {
+        if (depth == openBlocks.length) {
+          openBlocks = Arrays.copyOf(openBlocks, depth * 2);
+        }
+        openBlocks[depth++] = handler instanceof WhileDirectiveHandler ? ~i : i;
+      } else if (handler instanceof ElseDirectiveHandler || handler instanceof EndIfDirectiveHandler) {
+        if (depth == 0 || openBlocks[depth - 1] < 0) {
+          return noBlocks;
+        }
+        partners[openBlocks[depth - 1]] = i;
+        if (handler instanceof ElseDirectiveHandler) {
+          openBlocks[depth - 1] = i;
+        } else {
+          depth--;
+        }
+      } else if (handler instanceof EndDirectiveHandler) {
+        if (depth == 0 || openBlocks[depth - 1] >= 0) {
+          return noBlocks;
+        }
+        partners[~openBlocks[--depth]] = i;
+      }
+    }
+    return new DirectiveBlockMap(context.isAllowWhitespaces(), partners);
+  }
+
   private boolean checkDirectiveArgumentRoughly(@Nonnull final AbstractDirectiveHandler directive, @Nonnull final String rest) {
     final DirectiveArgumentType argument = directive.getArgumentType();
 
@@ -524,31 +720,41 @@ public class FileInfoContainer {
   protected AfterDirectiveProcessingBehaviour processDirective(@Nonnull final PreprocessingState state, @Nonnull final String directiveString, @Nonnull final PreprocessorContext context, final boolean firstPass) throws IOException {
     final boolean executionEnabled = state.isDirectiveCanBeProcessed();
 
-    for (final AbstractDirectiveHandler handler : AbstractDirectiveHandler.getAllDirectives()) {
-      final String name = handler.getName();
-      if (directiveString.startsWith(name)) {
-        if ((firstPass && !handler.isGlobalPhaseAllowed()) || (!firstPass && !handler.isPreprocessingPhaseAllowed())) {
-          return AfterDirectiveProcessingBehaviour.READ_NEXT_LINE;
-        }
+    final AbstractDirectiveHandler handler = AbstractDirectiveHandler.getDirectiveTrie().find(directiveString);
+    if (handler == null) {
+      throw context.makeException("Unknown preprocessor directive [" + directiveString + ']', null);
+    }
 
-        final boolean allowedForExecution = executionEnabled || !handler.executeOnlyWhenExecutionAllowed();
+    if ((firstPass && !handler.isGlobalPhaseAllowed()) || (!firstPass && !handler.isPreprocessingPhaseAllowed())) {
+      return AfterDirectiveProcessingBehaviour.READ_NEXT_LINE;
+    }
 
-        final String restOfString = PreprocessorUtils.extractTail(name, directiveString);
-        if (checkDirectiveArgumentRoughly(handler, restOfString)) {
-          if (allowedForExecution) {
-            return handler.execute(restOfString, context);
-          } else {
-            return context.isKeepLines() ? AfterDirectiveProcessingBehaviour.SHOULD_BE_COMMENTED : AfterDirectiveProcessingBehaviour.PROCESSED;
-          }
-        } else {
-          throw context.makeException("Detected bad argument for " + AbstractDirectiveHandler.DIRECTIVE_PREFIX + handler.getName(), null);
-        }
+    final boolean allowedForExecution = executionEnabled || !handler.executeOnlyWhenExecutionAllowed();
+
+    final String restOfString = PreprocessorUtils.extractTail(handler.getName(), directiveString);
+    if (checkDirectiveArgumentRoughly(handler, restOfString)) {
+      if (allowedForExecution) {
+        return handler.execute(restOfString, context);
+      } else {
+        return context.isKeepLines() ? AfterDirectiveProcessingBehaviour.SHOULD_BE_COMMENTED : AfterDirectiveProcessingBehaviour.PROCESSED;
       }
+    } else {
+      throw context.makeException("Detected bad argument for " + AbstractDirectiveHandler.DIRECTIVE_PREFIX + handler.getName(), null);
     }
-    throw context.makeException("Unknown preprocessor directive [" + directiveString + ']', null);
   }
 
   public void setExcluded(final boolean flag) {
     excludedFromPreprocessing = flag;
   }
+
+  /**
+   * Result of file scan for global directives, it contains text of the file and indexes of lines to be processed in the global phase.
+   *
+   * @since 7.0.3
+   */
+  @Data
+  public static final class GlobalDirectivesScan {
+    private final TextFileDataContainer text;
+    private final int[] lineIndexes;
+  }
 }
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import com.igormaznitsa.meta.annotation.MustNotContainNull;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
+
+/**
+ * Immutable text split into lines. Text read from a file is kept packed in one array (original bytes for Latin-1 and ASCII content, decoded chars otherwise)
+ * together with line bounds, line strings are made only on request. The class is thread-safe.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.0.3
+ */
+public abstract class LineIndexedText {
+
+  private final boolean endedByNextLine;
+  private volatile DirectiveBlockMap directiveBlockMap;
+
+  private LineIndexedText(final boolean endedByNextLine) {
+    this.endedByNextLine = endedByNextLine;
+  }
+
+  /**
+   * Read text file. Lines are split by LF, CR before LF and CR in the end of the file are removed.
+   *
+   * @param file     the file to be read, must not be null
+   * @param encoding the file encoding, must not be null
+   * @return the read text, must not be null
+   * @throws IOException it will be thrown for IO errors
+   */
+  @Nonnull
+  public static LineIndexedText read(@Nonnull final File file, @Nonnull final Charset encoding) throws IOException {
+    assertNotNull("File is null", file);
+    assertNotNull("Encoding is null", encoding);
+    return parse(Files.readAllBytes(file.toPath()), encoding);
+  }
+
+  /**
+   * Make text from file content.
+   *
+   * @param data     the file content, must not be null, the array is kept by the text and must not be changed
+   * @param encoding the content encoding, must not be null
+   * @return the text, must not be null
+   */
+  @Nonnull
+  public static LineIndexedText parse(@Nonnull final byte[] data, @Nonnull final Charset encoding) {
+    if (isSingleByteCompatible(data, encoding)) {
+      return PackedLines.make(data, null, data.length);
+    } else {
+      final CharBuffer decoded = encoding.decode(ByteBuffer.wrap(data));
+      final char[] chars = decoded.array().length == decoded.limit() && decoded.arrayOffset() == 0 ? decoded.array() : Arrays.copyOf(decoded.array(), decoded.limit());
+      return PackedLines.make(null, chars, decoded.limit());
+    }
+  }
+
+  /**
+   * Make text for lines.
+   *
+   * @param lines           text lines, must not be null, the array is kept by the text and must not be changed
+   * @param endedByNextLine flag that the text is ended by next line
+   * @return the text, must not be null
+   */
+  @Nonnull
+  public static LineIndexedText wrap(@Nonnull @MustNotContainNull final String[] lines, final boolean endedByNextLine) {
+    return new ArrayLines(assertNotNull("Lines are null", lines), endedByNextLine);
+  }
+
+  private static boolean isSingleByteCompatible(@Nonnull final byte[] data, @Nonnull final Charset encoding) {
+    if (StandardCharsets.ISO_8859_1.equals(encoding)) {
+      return true;
+    }
+    if (StandardCharsets.UTF_8.equals(encoding) || StandardCharsets.US_ASCII.equals(encoding)) {
+      for (final byte b : data) {
+        if (b < 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Get number of lines.
+   *
+   * @return number of lines
+   */
+  public abstract int size();
+
+  /**
+   * Get line for index, every call makes new string for packed text.
+   *
+   * @param index index of line
+   * @return the line, must not be null
+   * @throws IndexOutOfBoundsException if wrong index
+   */
+  @Nonnull
+  public abstract String getLine(int index);
+
+  /**
+   * Check that line can contain a directive, i.e. after leading chars with codes less than or equal to 32 it starts with {@code //}
+   * followed by optional chars with such codes and the marker char. Lines of packed text are checked without making of strings,
+   * so that the method can be used to find lines to be decoded.
+   *
+   * @param index  index of line
+   * @param marker the char which starts directive after comment, for instance '#'
+   * @return true if the line can contain a directive, false otherwise
+   * @throws IndexOutOfBoundsException if wrong index
+   */
+  public boolean isDirectivePrefixed(final int index, final char marker) {
+    final int length = this.getLineLength(index);
+    int pos = 0;
+    while (pos < length && this.getLineChar(index, pos) <= ' ') {
+      pos++;
+    }
+    if (pos + 2 >= length || this.getLineChar(index, pos) != '/' || this.getLineChar(index, pos + 1) != '/') {
+      return false;
+    }
+    pos += 2;
+    while (pos < length && this.getLineChar(index, pos) <= ' ') {
+      pos++;
+    }
+    return pos < length && this.getLineChar(index, pos) == marker;
+  }
+
+  abstract int getLineLength(int index);
+
+  abstract char getLineChar(int index, int offset);
+
+  /**
+   * Get approximate number of chars kept by the text.
+   *
+   * @return number of chars
+   */
+  public abstract long getWeight();
+
+  public boolean isEndedByNextLine() {
+    return this.endedByNextLine;
+  }
+
+  /**
+   * Get map of directive blocks made for the text.
+   *
+   * @return the map or null if it has not been made yet
+   */
+  @Nullable
+  DirectiveBlockMap getDirectiveBlockMap() {
+    return this.directiveBlockMap;
+  }
+
+  void setDirectiveBlockMap(@Nonnull final DirectiveBlockMap map) {
+    this.directiveBlockMap = map;
+  }
+
+  /**
+   * Make array of all lines.
+   *
+   * @return new array contains all lines, must not be null
+   */
+  @Nonnull
+  @MustNotContainNull
+  public String[] toArray() {
+    final String[] result = new String[size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = getLine(i);
+    }
+    return result;
+  }
+
+  private static final class ArrayLines extends LineIndexedText {
+    private final String[] lines;
+
+    private ArrayLines(@Nonnull @MustNotContainNull final String[] lines, final boolean endedByNextLine) {
+      super(endedByNextLine);
+      this.lines = lines;
+    }
+
+    @Override
+    public int size() {
+      return this.lines.length;
+    }
+
+    @Override
+    @Nonnull
+    public String getLine(final int index) {
+      return this.lines[index];
+    }
+
+    @Override
+    int getLineLength(final int index) {
+      return this.lines[index].length();
+    }
+
+    @Override
+    char getLineChar(final int index, final int offset) {
+      return this.lines[index].charAt(offset);
+    }
+
+    @Override
+    public long getWeight() {
+      long result = this.lines.length;
+      for (final String s : this.lines) {
+        result += s.length();
+      }
+      return result;
+    }
+
+    @Override
+    @Nonnull
+    @MustNotContainNull
+    public String[] toArray() {
+      return this.lines.clone();
+    }
+  }
+
+  private static final class PackedLines extends LineIndexedText {
+    private final byte[] bytes;
+    private final char[] chars;
+    private final int[] bounds;
+    private final int length;
+
+    private PackedLines(final byte[] bytes, final char[] chars, final int length, @Nonnull final int[] bounds, final boolean endedByNextLine) {
+      super(endedByNextLine);
+      this.bytes = bytes;
+      this.chars = chars;
+      this.length = length;
+      this.bounds = bounds;
+    }
+
+    @Nonnull
+    private static PackedLines make(final byte[] bytes, final char[] chars, final int length) {
+      int[] bounds = new int[64];
+      int counter = 0;
+      int start = 0;
+      for (int i = 0; i < length; i++) {
+        final int chr = bytes == null ? chars[i] : bytes[i] & 0xFF;
+        if (chr == '\n') {
+          if (counter + 2 > bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length << 1);
+          }
+          bounds[counter++] = start;
+          bounds[counter++] = i > start && charAt(bytes, chars, i - 1) == '\r' ? i - 1 : i;
+          start = i + 1;
+        }
+      }
+      if (start < length) {
+        final int end = charAt(bytes, chars, length - 1) == '\r' ? length - 1 : length;
+        if (end > start) {
+          if (counter + 2 > bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length + 2);
+          }
+          bounds[counter++] = start;
+          bounds[counter++] = end;
+        }
+      }
+      final boolean endedByNextLine = length > 0 && charAt(bytes, chars, length - 1) == '\n';
+      return new PackedLines(bytes, chars, length, Arrays.copyOf(bounds, counter), endedByNextLine);
+    }
+
+    private static char charAt(final byte[] bytes, final char[] chars, final int index) {
+      return bytes == null ? chars[index] : (char) (bytes[index] & 0xFF);
+    }
+
+    @Override
+    public int size() {
+      return this.bounds.length >> 1;
+    }
+
+    @Override
+    @Nonnull
+    public String getLine(final int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Line index out of bound [" + index + ']');
+      }
+      final int start = this.bounds[index << 1];
+      final int end = this.bounds[(index << 1) + 1];
+      return this.bytes == null ? new String(this.chars, start, end - start) : new String(this.bytes, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    int getLineLength(final int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Line index out of bound [" + index + ']');
+      }
+      return this.bounds[(index << 1) + 1] - this.bounds[index << 1];
+    }
+
+    @Override
+    char getLineChar(final int index, final int offset) {
+      return charAt(this.bytes, this.chars, this.bounds[index << 1] + offset);
+    }
+
+    @Override
+    public long getWeight() {
+      return this.length + this.bounds.length;
+    }
+  }
+}
@@ -30,13 +30,14 @@ import java.io.File;
 import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
 
 /**
- * The class contains text data of a file and the string position index for the file
+ * The class contains text data of a file and the string position index for the file.
+ * Text lines are kept in {@link LineIndexedText} so that text read from a file is packed and line strings are made only when they are read.
  *
  * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
  */
 public final class TextFileDataContainer {
 
-  private final String[] text;
+  private final LineIndexedText text;
   private final boolean fileEndedByNextLine;
   private final File file;
 
@@ -51,6 +52,19 @@ public final class TextFileDataContainer {
   }
 
   public TextFileDataContainer(@Nonnull final File currentFile, @Nonnull @MustNotContainNull final String[] text, final boolean fileEndedByNextLine, final int stringIndex) {
+    this(currentFile, LineIndexedText.wrap(assertNotNull("Text is null", text), fileEndedByNextLine), fileEndedByNextLine, stringIndex);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param currentFile         the file, must not be null
+   * @param text                the file text, must not be null
+   * @param fileEndedByNextLine flag that the file is ended by next line
+   * @param stringIndex         index of the next line
+   * @since 7.0.3
+   */
+  public TextFileDataContainer(@Nonnull final File currentFile, @Nonnull final LineIndexedText text, final boolean fileEndedByNextLine, final int stringIndex) {
     assertNotNull("File is null", currentFile);
     assertNotNull("Text is null", text);
     this.file = currentFile;
@@ -70,7 +84,12 @@ public final class TextFileDataContainer {
   @Nonnull
   @MustNotContainNull
   public String[] getText() {
-    return this.text.clone();
+    return this.text.toArray();
+  }
+
+  @Nonnull
+  LineIndexedText getIndexedText() {
+    return this.text;
   }
 
   @Nonnull
@@ -83,15 +102,15 @@ public final class TextFileDataContainer {
   }
 
   public boolean isPresentedNextLineOnReadString() {
-    return this.nextStringIndex < this.text.length || fileEndedByNextLine;
+    return this.nextStringIndex < this.text.size() || fileEndedByNextLine;
   }
 
   @Nullable
   public String nextLine() {
-    if (this.nextStringIndex >= this.text.length) {
+    if (this.nextStringIndex >= this.text.size()) {
       return null;
     } else {
-      return this.text[this.nextStringIndex++];
+      return this.text.getLine(this.nextStringIndex++);
     }
   }
 
@@ -104,7 +123,7 @@ public final class TextFileDataContainer {
   }
 
   public void setNextStringIndex(final int index) {
-    if (index < 0 || index >= text.length) {
+    if (index < 0 || index >= text.size()) {
       throw new IndexOutOfBoundsException("String index out of bound [" + index + ']');
     }
     this.nextStringIndex = index;
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import lombok.Data;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
+
+/**
+ * Manifest of written files, it keeps for every file in the target folder its size, modification time and 64 bit XXH64 hash of content.
+ * It allows to detect that new content is the same as already written one by hash of in-memory content, the written file is read only if it
+ * is unknown or has been changed since registration. The class is thread-safe.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.0.3
+ */
+public final class ContentHashManifest {
+
+  public static final String FILE_NAME = ".jcp_hashes";
+
+  private static final String HEADER = "#JCP content hashes v1";
+
+  private static final long PRIME1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME3 = 0x165667B19E3779F9L;
+  private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+  private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Load manifest from a file.
+   *
+   * @param file the manifest file, must not be null
+   * @return loaded manifest or empty manifest if the file doesn't exist
+   * @throws IOException it will be thrown for IO errors or wrong manifest format
+   */
+  @Nonnull
+  public static ContentHashManifest load(@Nonnull final File file) throws IOException {
+    final ContentHashManifest result = new ContentHashManifest();
+    if (!file.isFile()) {
+      return result;
+    }
+
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(reader.readLine())) {
+        throw new IOException("Unsupported content hash manifest format: " + file);
+      }
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        final String[] split = line.split(" ", 4);
+        result.entries.put(split[3], new Entry(Long.parseLong(split[0]), Long.parseLong(split[1]), Long.parseUnsignedLong(split[2], 16)));
+      }
+    } catch (RuntimeException ex) {
+      throw new IOException("Wrong content hash manifest format: " + file, ex);
+    }
+    return result;
+  }
+
+  /**
+   * Save the manifest into a file, entries are sorted by path.
+   *
+   * @param file the target file, must not be null
+   * @throws IOException it will be thrown for any IO error
+   */
+  public void save(@Nonnull final File file) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.write('\n');
+      for (final Map.Entry<String, Entry> e : new TreeMap<>(this.entries).entrySet()) {
+        final Entry entry = e.getValue();
+        writer.write(Long.toString(entry.getSize()) + ' ' + entry.getModified() + ' ' + Long.toHexString(entry.getHash()) + ' ' + e.getKey() + '\n');
+      }
+    }
+  }
+
+  /**
+   * Check that a file has content with known size and hash, it doesn't read the file.
+   *
+   * @param file the file to be checked, must not be null
+   * @param size size of expected content
+   * @param hash hash of expected content
+   * @return TRUE if the file has the content, FALSE if the file has different content or doesn't exist, null if there is no actual information about the file so that it should be checked by its content
+   * @throws IOException if canonical path can't be made
+   * @see #hash(byte[], int, int)
+   */
+  @Nullable
+  public Boolean checkContent(@Nonnull final File file, final long size, final long hash) throws IOException {
+    final BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    } catch (NoSuchFileException ex) {
+      return Boolean.FALSE;
+    }
+    if (!attributes.isRegularFile()) {
+      return Boolean.FALSE;
+    }
+    if (attributes.size() != size) {
+      return Boolean.FALSE;
+    }
+
+    final Entry entry = this.entries.get(file.getCanonicalPath());
+    if (entry == null || entry.getSize() != attributes.size() || entry.getModified() != attributes.lastModifiedTime().toMillis()) {
+      return null;
+    }
+    return entry.getHash() == hash;
+  }
+
+  /**
+   * Register current state of a file which has content with the hash.
+   *
+   * @param file the written file, must not be null
+   * @param hash hash of the file content
+   * @throws IOException it will be thrown if the file attributes can't be read
+   */
+  public void register(@Nonnull final File file, final long hash) throws IOException {
+    final BasicFileAttributes attributes = Files.readAttributes(assertNotNull(file).toPath(), BasicFileAttributes.class);
+    this.entries.put(file.getCanonicalPath(), new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), hash));
+  }
+
+  public int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Calculate XXH64 hash (seed 0) of a byte array part.
+   *
+   * @param data   the data, must not be null
+   * @param offset start offset
+   * @param length number of bytes
+   * @return the hash
+   */
+  public static long hash(@Nonnull final byte[] data, final int offset, final int length) {
+    final Hasher hasher = new Hasher();
+    final int consumed = hasher.stripes(data, offset, length);
+    return hasher.finish(data, offset + consumed, length - consumed);
+  }
+
+  /**
+   * Calculate XXH64 hash (seed 0) of a file content.
+   *
+   * @param file the file, must not be null
+   * @return the hash
+   * @throws IOException it will be thrown for IO errors
+   */
+  public static long hash(@Nonnull final File file) throws IOException {
+    final Hasher hasher = new Hasher();
+    final byte[] buffer = new byte[65536];
+    try (InputStream in = Files.newInputStream(file.toPath())) {
+      int length = 0;
+      while (true) {
+        final int read = in.read(buffer, length, buffer.length - length);
+        if (read < 0) {
+          break;
+        }
+        length += read;
+        if (length == buffer.length) {
+          // buffer size is multiple of stripe size so that the full buffer is consumed
+          hasher.stripes(buffer, 0, length);
+          length = 0;
+        }
+      }
+      final int consumed = hasher.stripes(buffer, 0, length);
+      return hasher.finish(buffer, consumed, length - consumed);
+    }
+  }
+
+  @Data
+  private static final class Entry {
+    private final long size;
+    private final long modified;
+    private final long hash;
+  }
+
+  private static final class Hasher {
+    private long v1 = PRIME1 + PRIME2;
+    private long v2 = PRIME2;
+    private long v3 = 0L;
+    private long v4 = -PRIME1;
+    private long total = 0L;
+
+    private static long round(final long acc, final long input) {
+      return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+    }
+
+    private static long merge(final long acc, final long value) {
+      return (acc ^ round(0L, value)) * PRIME1 + PRIME4;
+    }
+
+    private static long getLong(@Nonnull final byte[] data, final int offset) {
+      return (data[offset] & 0xFFL)
+          | (data[offset + 1] & 0xFFL) << 8
+          | (data[offset + 2] & 0xFFL) << 16
+          | (data[offset + 3] & 0xFFL) << 24
+          | (data[offset + 4] & 0xFFL) << 32
+          | (data[offset + 5] & 0xFFL) << 40
+          | (data[offset + 6] & 0xFFL) << 48
+          | (data[offset + 7] & 0xFFL) << 56;
+    }
+
+    private static long getUnsignedInt(@Nonnull final byte[] data, final int offset) {
+      return (data[offset] & 0xFFL)
+          | (data[offset + 1] & 0xFFL) << 8
+          | (data[offset + 2] & 0xFFL) << 16
+          | (data[offset + 3] & 0xFFL) << 24;
+    }
+
+    private int stripes(@Nonnull final byte[] data, final int offset, final int length) {
+      int position = offset;
+      final int limit = offset + length - 32;
+      while (position <= limit) {
+        this.v1 = round(this.v1, getLong(data, position));
+        this.v2 = round(this.v2, getLong(data, position + 8));
+        this.v3 = round(this.v3, getLong(data, position + 16));
+        this.v4 = round(this.v4, getLong(data, position + 24));
+        position += 32;
+      }
+      this.total += position - offset;
+      return position - offset;
+    }
+
+    private long finish(@Nonnull final byte[] data, final int offset, final int length) {
+      long result;
+      if (this.total > 0L) {
+        result = Long.rotateLeft(this.v1, 1) + Long.rotateLeft(this.v2, 7) + Long.rotateLeft(this.v3, 12) + Long.rotateLeft(this.v4, 18);
+        result = merge(result, this.v1);
+        result = merge(result, this.v2);
+        result = merge(result, this.v3);
+        result = merge(result, this.v4);
+      } else {
+        result = PRIME5;
+      }
+      result += this.total + length;
+
+      int position = offset;
+      final int end = offset + length;
+      while (position + 8 <= end) {
+        result ^= round(0L, getLong(data, position));
+        result = Long.rotateLeft(result, 27) * PRIME1 + PRIME4;
+        position += 8;
+      }
+      if (position + 4 <= end) {
+        result ^= getUnsignedInt(data, position) * PRIME1;
+        result = Long.rotateLeft(result, 23) * PRIME2 + PRIME3;
+        position += 4;
+      }
+      while (position < end) {
+        result ^= (data[position] & 0xFFL) * PRIME5;
+        result = Long.rotateLeft(result, 11) * PRIME1;
+        position++;
+      }
+
+      result ^= result >>> 33;
+      result *= PRIME2;
+      result ^= result >>> 29;
+      result *= PRIME3;
+      result ^= result >>> 32;
+      return result;
+    }
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.context;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map which can be forked in constant time, a fork shares the same base storage with its source and both of them keep only
+ * their own changed and removed entries over the shared storage, so that a change doesn't copy other entries. It allows to make
+ * copies of context variable tables for every processed file without copying of their content. Forking of a map which has own changes
+ * merges them into new base storage once. Entry views support changes, their iterators work over snapshot of entries.
+ * Changes must not be made concurrently but a map can be forked from several threads if it is not changed.
+ * Every change increments version of the map, so that users can detect changes made through any reference to the map.
+ * Null keys and values are not supported.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.0.3
+ */
+final class CopyOnWriteMap<K, V> extends AbstractMap<K, V> {
+
+  private static final Object REMOVED = new Object();
+
+  private volatile Map<K, V> base;
+  private volatile boolean shared;
+  private Map<K, Object> delta;
+  private int size;
+  private int version;
+
+  CopyOnWriteMap() {
+    this.base = new HashMap<>();
+    this.shared = false;
+  }
+
+  private CopyOnWriteMap(@Nonnull final Map<K, V> base) {
+    this.base = base;
+    this.shared = true;
+    this.size = base.size();
+  }
+
+  /**
+   * Make fork of the map, the fork and the map share base storage and keep their next changes separately.
+   *
+   * @return new map with the same content, must not be null
+   */
+  @Nonnull
+  synchronized CopyOnWriteMap<K, V> fork() {
+    if (this.delta != null) {
+      final Map<K, V> merged = new HashMap<>(this.base);
+      for (final Entry<K, Object> e : this.delta.entrySet()) {
+        if (e.getValue() == REMOVED) {
+          merged.remove(e.getKey());
+        } else {
+          merged.put(e.getKey(), cast(e.getValue()));
+        }
+      }
+      this.base = merged;
+      this.delta = null;
+    }
+    this.size = this.base.size();
+    this.shared = true;
+    return new CopyOnWriteMap<>(this.base);
+  }
+
+  /**
+   * Check that the map shares its base storage with another map.
+   *
+   * @return true if the storage is shared, false otherwise
+   */
+  boolean isShared() {
+    return this.shared;
+  }
+
+  /**
+   * Get number of entries kept by the map over the shared storage.
+   *
+   * @return number of changed and removed entries, zero if the map doesn't have own changes
+   */
+  int getDeltaSize() {
+    return this.delta == null ? 0 : this.delta.size();
+  }
+
+  /**
+   * Get version of the map content, it is changed by every change of the map.
+   *
+   * @return the current version
+   */
+  int getVersion() {
+    return this.version;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nonnull
+  private static <V> V cast(@Nonnull final Object value) {
+    return (V) value;
+  }
+
+  @Nonnull
+  private Map<K, Object> delta() {
+    if (this.delta == null) {
+      this.delta = new HashMap<>();
+    }
+    return this.delta;
+  }
+
+  @Override
+  public int size() {
+    return this.shared ? this.size : this.base.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.size() == 0;
+  }
+
+  @Override
+  public boolean containsKey(@Nullable final Object key) {
+    if (this.delta != null) {
+      final Object value = this.delta.get(key);
+      if (value != null) {
+        return value != REMOVED;
+      }
+    }
+    return this.base.containsKey(key);
+  }
+
+  @Override
+  @Nullable
+  public V get(@Nullable final Object key) {
+    if (this.delta != null) {
+      final Object value = this.delta.get(key);
+      if (value != null) {
+        return value == REMOVED ? null : cast(value);
+      }
+    }
+    return this.base.get(key);
+  }
+
+  @Override
+  @Nullable
+  public V put(@Nonnull final K key, @Nonnull final V value) {
+    this.version++;
+    if (!this.shared) {
+      return this.base.put(key, value);
+    }
+    final V result = this.get(key);
+    this.delta().put(key, value);
+    if (result == null) {
+      this.size++;
+    }
+    return result;
+  }
+
+  @Override
+  @Nullable
+  public V remove(@Nullable final Object key) {
+    if (!this.containsKey(key)) {
+      return null;
+    }
+    this.version++;
+    if (!this.shared) {
+      return this.base.remove(key);
+    }
+    final V result = this.get(key);
+    if (this.base.containsKey(key)) {
+      this.delta().put(cast(key), REMOVED);
+    } else {
+      this.delta.remove(key);
+    }
+    this.size--;
+    return result;
+  }
+
+
+  @Override
+  public void clear() {
+    this.version++;
+    this.base = new HashMap<>();
+    this.delta = null;
+    this.shared = false;
+  }
+
+  @Override
+  @Nonnull
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<Entry<K, V>>() {
+      @Override
+      @Nonnull
+      public Iterator<Entry<K, V>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return CopyOnWriteMap.this.size();
+      }
+
+      @Override
+      public void clear() {
+        CopyOnWriteMap.this.clear();
+      }
+    };
+  }
+
+  /**
+   * Iterator over snapshot of entries made when the iterator is created, removing and changing of values are made through the map.
+   */
+  private final class EntryIterator implements Iterator<Entry<K, V>> {
+
+    private final Iterator<Entry<K, V>> iterator;
+    private Entry<K, V> last;
+
+    EntryIterator() {
+      final List<Entry<K, V>> entries = new ArrayList<>(CopyOnWriteMap.this.size());
+      final Map<K, Object> changes = CopyOnWriteMap.this.delta;
+      if (changes != null) {
+        for (final Entry<K, Object> e : changes.entrySet()) {
+          if (e.getValue() != REMOVED) {
+            entries.add(new MapEntry(e.getKey(), cast(e.getValue())));
+          }
+        }
+      }
+      for (final Entry<K, V> e : CopyOnWriteMap.this.base.entrySet()) {
+        if (changes == null || !changes.containsKey(e.getKey())) {
+          entries.add(new MapEntry(e.getKey(), e.getValue()));
+        }
+      }
+      this.iterator = entries.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.iterator.hasNext();
+    }
+
+    @Override
+    @Nonnull
+    public Entry<K, V> next() {
+      this.last = this.iterator.next();
+      return this.last;
+    }
+
+    @Override
+    public void remove() {
+      if (this.last == null) {
+        throw new IllegalStateException();
+      }
+      CopyOnWriteMap.this.remove(this.last.getKey());
+      this.last = null;
+    }
+  }
+
+  /**
+   * Entry which value is changed through the map.
+   */
+  private final class MapEntry extends SimpleEntry<K, V> {
+
+    private static final long serialVersionUID = 4518932049117312846L;
+
+    MapEntry(@Nonnull final K key, @Nonnull final V value) {
+      super(key, value);
+    }
+
+    @Override
+    @Nonnull
+    public V setValue(@Nonnull final V value) {
+      CopyOnWriteMap.this.put(this.getKey(), value);
+      return super.setValue(value);
+    }
+  }
+}
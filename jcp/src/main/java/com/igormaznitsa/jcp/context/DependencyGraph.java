@@ -0,0 +1,225 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import com.igormaznitsa.meta.annotation.MustNotContainNull;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
+
+/**
+ * Reverse dependency graph, it keeps for every file used during preprocessing (included, evaluated, loaded as binary or XML file) set of root files which use it.
+ * Files are identified by their canonical paths. The class is thread-safe, all operations are synchronized on the graph so that dependencies
+ * of root files can be registered by parallel workers.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.0.3
+ */
+public final class DependencyGraph {
+
+  public static final String FILE_NAME = ".jcp_dependencies";
+
+  private static final int MAGIC = 0x4A435044;
+  private static final int VERSION = 1;
+
+  private final Map<String, Set<String>> dependents = new HashMap<>();
+
+  /**
+   * Load graph from a file saved by {@link #save(File)}.
+   *
+   * @param file the file to be loaded, must not be null
+   * @return loaded graph or empty graph if the file doesn't exist
+   * @throws IOException it will be thrown for IO errors or wrong format
+   */
+  @Nonnull
+  public static DependencyGraph load(@Nonnull final File file) throws IOException {
+    final DependencyGraph result = new DependencyGraph();
+    if (!file.isFile()) {
+      return result;
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unsupported dependency graph format: " + file);
+      }
+      final String[] paths = new String[in.readInt()];
+      for (int i = 0; i < paths.length; i++) {
+        paths[i] = in.readUTF();
+      }
+      final int resources = in.readInt();
+      for (int i = 0; i < resources; i++) {
+        final String resource = paths[in.readInt()];
+        final int roots = in.readInt();
+        for (int j = 0; j < roots; j++) {
+          result.add(resource, paths[in.readInt()]);
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException ex) {
+      throw new IOException("Wrong dependency graph format: " + file, ex);
+    }
+    return result;
+  }
+
+  private void add(@Nonnull final String resource, @Nonnull final String root) {
+    this.dependents.computeIfAbsent(resource, k -> new HashSet<>()).add(root);
+  }
+
+  /**
+   * Register files used during preprocessing of a root file.
+   *
+   * @param rootFile  the root file, must not be null
+   * @param resources files used by the root file, must not be null
+   * @throws IOException if canonical path can't be made
+   */
+  public void addDependencies(@Nonnull final File rootFile, @Nonnull @MustNotContainNull final Collection<File> resources) throws IOException {
+    final String root = assertNotNull(rootFile).getCanonicalPath();
+    final List<String> paths = new ArrayList<>(resources.size());
+    for (final File resource : resources) {
+      paths.add(resource.getCanonicalPath());
+    }
+    synchronized (this) {
+      for (final String path : paths) {
+        add(path, root);
+      }
+    }
+  }
+
+  /**
+   * Remove all registered dependencies of a root file, it should be called before the root file is preprocessed again.
+   *
+   * @param rootFile the root file, must not be null
+   * @throws IOException if canonical path can't be made
+   */
+  public void removeDependencies(@Nonnull final File rootFile) throws IOException {
+    final String root = assertNotNull(rootFile).getCanonicalPath();
+    synchronized (this) {
+      this.dependents.values().forEach(roots -> roots.remove(root));
+      this.dependents.values().removeIf(Set::isEmpty);
+    }
+  }
+
+  /**
+   * Find root files which use a file.
+   *
+   * @param resource the used file, must not be null
+   * @return root files sorted by path, empty if there is no any
+   * @throws IOException if canonical path can't be made
+   */
+  @Nonnull
+  @MustNotContainNull
+  public List<File> findDependents(@Nonnull final File resource) throws IOException {
+    final String path = resource.getCanonicalPath();
+    final Set<String> roots;
+    synchronized (this) {
+      final Set<String> found = this.dependents.get(path);
+      if (found == null) {
+        return Collections.emptyList();
+      }
+      roots = new TreeSet<>(found);
+    }
+    final List<File> result = new ArrayList<>(roots.size());
+    for (final String root : roots) {
+      result.add(new File(root));
+    }
+    return result;
+  }
+
+  /**
+   * Get all files used by root files.
+   *
+   * @return used files sorted by path
+   */
+  @Nonnull
+  @MustNotContainNull
+  public synchronized List<File> getResources() {
+    final List<File> result = new ArrayList<>(this.dependents.size());
+    for (final String path : new TreeSet<>(this.dependents.keySet())) {
+      result.add(new File(path));
+    }
+    return result;
+  }
+
+  public synchronized boolean isEmpty() {
+    return this.dependents.isEmpty();
+  }
+
+  /**
+   * Save the graph into a compact binary file, paths are written once into a table and referenced by index.
+   *
+   * @param file the target file, must not be null
+   * @throws IOException it will be thrown for any IO error
+   */
+  public void save(@Nonnull final File file) throws IOException {
+    final Map<String, Set<String>> sorted = new TreeMap<>();
+    synchronized (this) {
+      this.dependents.forEach((k, v) -> sorted.put(k, new TreeSet<>(v)));
+    }
+
+    final Map<String, Integer> indexes = new HashMap<>();
+    final List<String> paths = new ArrayList<>();
+    sorted.forEach((k, v) -> {
+      indexes.computeIfAbsent(k, x -> {
+        paths.add(x);
+        return paths.size() - 1;
+      });
+      v.forEach(r -> indexes.computeIfAbsent(r, x -> {
+        paths.add(x);
+        return paths.size() - 1;
+      }));
+    });
+
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(paths.size());
+      for (final String path : paths) {
+        out.writeUTF(path);
+      }
+      out.writeInt(sorted.size());
+      for (final Map.Entry<String, Set<String>> e : sorted.entrySet()) {
+        out.writeInt(indexes.get(e.getKey()));
+        out.writeInt(e.getValue().size());
+        for (final String root : e.getValue()) {
+          out.writeInt(indexes.get(root));
+        }
+      }
+    }
+  }
+}
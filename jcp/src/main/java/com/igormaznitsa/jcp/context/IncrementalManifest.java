@@ -0,0 +1,355 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import com.igormaznitsa.jcp.InfoHelper;
+import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.meta.annotation.MustNotContainNull;
+import lombok.Data;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
+
+/**
+ * Manifest of incremental preprocessing, it keeps for every preprocessed file states of its source and all files used during its preprocessing
+ * together with fingerprint of the context. If nothing is changed then the file can be skipped in next session. The class is thread-safe.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.0.3
+ */
+public final class IncrementalManifest {
+
+  public static final String FILE_NAME = ".jcp_incremental";
+
+  private static final String HEADER = "#JCP incremental manifest v1";
+
+  private final Map<String, Record> records = new ConcurrentHashMap<>();
+  private final Map<String, FileState> currentStates = new ConcurrentHashMap<>();
+  private final Set<String> changedRoots = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+  /**
+   * Load manifest from a file.
+   *
+   * @param file the manifest file, must not be null
+   * @return loaded manifest or empty manifest if the file doesn't exist
+   * @throws IOException it will be thrown for IO errors or wrong manifest format
+   */
+  @Nonnull
+  public static IncrementalManifest load(@Nonnull final File file) throws IOException {
+    final IncrementalManifest result = new IncrementalManifest();
+    if (!file.isFile()) {
+      return result;
+    }
+
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(reader.readLine())) {
+        throw new IOException("Unsupported manifest format: " + file);
+      }
+
+      String sourceLine = null;
+      String target = null;
+      List<FileState> dependencies = new ArrayList<>();
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        switch (line.charAt(0)) {
+          case 'F': {
+            if (sourceLine != null) {
+              result.putRecord(parseRecord(sourceLine, target, dependencies));
+            }
+            sourceLine = line;
+            target = null;
+            dependencies = new ArrayList<>();
+          }
+          break;
+          case 'T': {
+            target = line.substring(2);
+          }
+          break;
+          case 'D': {
+            dependencies.add(parseFileState(line.substring(2)));
+          }
+          break;
+          default:
+            throw new IOException("Unexpected manifest line: " + line);
+        }
+      }
+      if (sourceLine != null) {
+        result.putRecord(parseRecord(sourceLine, target, dependencies));
+      }
+    } catch (RuntimeException ex) {
+      throw new IOException("Wrong manifest format: " + file, ex);
+    }
+
+    return result;
+  }
+
+  @Nonnull
+  private static Record parseRecord(@Nonnull final String line, @Nullable final String target, @Nonnull @MustNotContainNull final List<FileState> dependencies) throws IOException {
+    if (target == null) {
+      throw new IOException("Target is not defined for manifest line: " + line);
+    }
+    final String[] split = line.split(" ", 4);
+    return new Record(parseFileState(split[3]), target, split[2], "1".equals(split[1]), Collections.unmodifiableList(dependencies));
+  }
+
+  @Nonnull
+  private static FileState parseFileState(@Nonnull final String text) {
+    final String[] split = text.split(" ", 4);
+    return new FileState(split[3], Long.parseLong(split[0]), Long.parseLong(split[1]), split[2]);
+  }
+
+  /**
+   * Make fingerprint of the context options and global variables which can affect result of preprocessing.
+   *
+   * @param context the context, must not be null
+   * @return the fingerprint as hex string, must not be null
+   */
+  @Nonnull
+  public static String makeContextFingerprint(@Nonnull final PreprocessorContext context) {
+    final StringBuilder buffer = new StringBuilder(1024);
+    buffer.append(InfoHelper.getVersion())
+        .append('|').append(context.isKeepComments())
+        .append('|').append(context.isKeepLines())
+        .append('|').append(context.isCareForLastEol())
+        .append('|').append(context.isAllowWhitespaces())
+        .append('|').append(context.isPreserveIndents())
+        .append('|').append(context.isUnknownVariableAsFalse())
+        .append('|').append(context.getEol())
+        .append('|').append(context.getSourceEncoding().name())
+        .append('|').append(context.getTargetEncoding().name())
+        .append('|').append(context.getPreprocessorExtension() == null ? "" : context.getPreprocessorExtension().getClass().getName());
+
+    for (final Map.Entry<String, Value> e : new TreeMap<>(context.getGlobalVarTable()).entrySet()) {
+      buffer.append('\n').append(e.getKey()).append('=').append(e.getValue().toStringDetail());
+    }
+
+    return DigestUtils.md5Hex(buffer.toString());
+  }
+
+  /**
+   * Save the manifest into a file, records are sorted by source path.
+   *
+   * @param file the target file, must not be null
+   * @throws IOException it will be thrown for any IO error
+   */
+  public void save(@Nonnull final File file) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.write('\n');
+      for (final Record record : new TreeMap<>(this.records).values()) {
+        writer.write("F " + (record.isVolatileGlobals() ? '1' : '0') + ' ' + record.getFingerprint() + ' ' + record.getSource().asString() + '\n');
+        writer.write("T " + record.getTarget() + '\n');
+        for (final FileState dependency : record.getDependencies()) {
+          writer.write("D " + dependency.asString() + '\n');
+        }
+      }
+    }
+  }
+
+  /**
+   * Find record for a source file.
+   *
+   * @param sourceFile the source file, must not be null
+   * @return found record or null
+   * @throws IOException if canonical path can't be made
+   */
+  @Nullable
+  public Record findRecord(@Nonnull final File sourceFile) throws IOException {
+    return this.records.get(sourceFile.getCanonicalPath());
+  }
+
+  public void putRecord(@Nonnull final Record record) {
+    this.records.put(record.getSource().getPath(), record);
+  }
+
+  @Nonnull
+  @MustNotContainNull
+  public Collection<Record> getRecords() {
+    return Collections.unmodifiableCollection(this.records.values());
+  }
+
+  /**
+   * Mark root files which use files changed since previous session, so that their records are not actual without check of every dependency.
+   * Every used file is checked only once for all root files which use it.
+   *
+   * @param previous manifest of previous session, must not be null
+   * @param graph    dependency graph of previous session, must not be null
+   * @throws IOException it will be thrown for any IO error
+   * @see #checkUpToDate(Record, String, File)
+   */
+  public void markChangedDependents(@Nonnull final IncrementalManifest previous, @Nonnull final DependencyGraph graph) throws IOException {
+    final Map<String, FileState> knownStates = new HashMap<>();
+    for (final Record record : previous.getRecords()) {
+      for (final FileState dependency : record.getDependencies()) {
+        knownStates.putIfAbsent(dependency.getPath(), dependency);
+      }
+    }
+
+    for (final File resource : graph.getResources()) {
+      final FileState known = knownStates.get(resource.getPath());
+      final FileState current = findCurrentState(resource, known);
+      if (known == null || current == null || !current.getHash().equals(known.getHash())) {
+        for (final File root : graph.findDependents(resource)) {
+          this.changedRoots.add(root.getPath());
+        }
+      }
+    }
+  }
+
+  /**
+   * Check that a record of previous session is still actual: the context fingerprint is the same, the source file and all its dependencies are not changed and the target file exists.
+   * Records of root files marked by {@link #markChangedDependents(IncrementalManifest, DependencyGraph)} are not actual.
+   *
+   * @param record       the record made in previous session, must not be null
+   * @param fingerprint  the current context fingerprint, must not be null
+   * @param targetFolder the target folder, must not be null
+   * @return refreshed record if nothing is changed, null otherwise
+   * @throws IOException it will be thrown for any IO error
+   */
+  @Nullable
+  public Record checkUpToDate(@Nonnull final Record record, @Nonnull final String fingerprint, @Nonnull final File targetFolder) throws IOException {
+    if (record.isVolatileGlobals() || this.changedRoots.contains(record.getSource().getPath()) || !record.getFingerprint().equals(fingerprint) || !new File(targetFolder, record.getTarget()).isFile()) {
+      return null;
+    }
+
+    final FileState source = findCurrentState(new File(record.getSource().getPath()), record.getSource());
+    if (source == null || !source.getHash().equals(record.getSource().getHash())) {
+      return null;
+    }
+
+    final List<FileState> dependencies = new ArrayList<>(record.getDependencies().size());
+    for (final FileState dependency : record.getDependencies()) {
+      final FileState current = findCurrentState(new File(dependency.getPath()), dependency);
+      if (current == null || !current.getHash().equals(dependency.getHash())) {
+        return null;
+      }
+      dependencies.add(current);
+    }
+
+    return new Record(source, record.getTarget(), fingerprint, false, Collections.unmodifiableList(dependencies));
+  }
+
+  /**
+   * Make record for a preprocessed file.
+   *
+   * @param sourceFile    the source file, must not be null
+   * @param target        the target file path relative to the target folder, must not be null
+   * @param dependencies  files used during preprocessing, must not be null
+   * @param fingerprint   the context fingerprint before preprocessing, must not be null
+   * @param volatileGlobals true if the file must be preprocessed in every session because it changed global variables or read volatile special variables
+   * @return new record, must not be null
+   * @throws IOException it will be thrown for any IO error
+   */
+  @Nonnull
+  public Record makeRecord(@Nonnull final File sourceFile, @Nonnull final String target, @Nonnull @MustNotContainNull final Collection<File> dependencies, @Nonnull final String fingerprint, final boolean volatileGlobals) throws IOException {
+    final FileState source = assertNotNull("Source file must exist: " + sourceFile, findCurrentState(sourceFile, null));
+    final List<FileState> dependencyStates = new ArrayList<>(dependencies.size());
+    for (final File file : dependencies) {
+      final FileState state = findCurrentState(file, null);
+      if (state != null) {
+        dependencyStates.add(state);
+      }
+    }
+    return new Record(source, target, fingerprint, volatileGlobals, Collections.unmodifiableList(dependencyStates));
+  }
+
+  @Nullable
+  private FileState findCurrentState(@Nonnull final File file, @Nullable final FileState known) throws IOException {
+    final String path = file.getCanonicalPath();
+    FileState result = this.currentStates.get(path);
+    if (result == null) {
+      final BasicFileAttributes attributes;
+      try {
+        attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+      } catch (NoSuchFileException ex) {
+        return null;
+      }
+      final long size = attributes.size();
+      final long modified = attributes.lastModifiedTime().toMillis();
+
+      final String hash;
+      if (known != null && known.getSize() == size && known.getModified() == modified) {
+        hash = known.getHash();
+      } else {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+          hash = DigestUtils.md5Hex(in);
+        }
+      }
+      result = new FileState(path, size, modified, hash);
+      this.currentStates.put(path, result);
+    }
+    return result;
+  }
+
+  /**
+   * State of a file.
+   */
+  @Data
+  public static final class FileState {
+    private final String path;
+    private final long size;
+    private final long modified;
+    private final String hash;
+
+    @Nonnull
+    private String asString() {
+      return Long.toString(this.size) + ' ' + this.modified + ' ' + this.hash + ' ' + this.path;
+    }
+  }
+
+  /**
+   * Record about preprocessed file.
+   */
+  @Data
+  public static final class Record {
+    private final FileState source;
+    private final String target;
+    private final String fingerprint;
+    private final boolean volatileGlobals;
+    private final List<FileState> dependencies;
+  }
+}
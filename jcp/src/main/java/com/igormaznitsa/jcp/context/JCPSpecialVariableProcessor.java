@@ -87,6 +87,24 @@ public class JCPSpecialVariableProcessor implements SpecialVariableProcessor {
     return result;
   }
 
+  @Nonnull
+  private static String format(@Nonnull final SimpleDateFormat format, @Nonnull final Date date) {
+    synchronized (format) {
+      return format.format(date);
+    }
+  }
+
+  /**
+   * Check that value of a variable can be different in next sessions for the same source file content, such variables are time, date and timestamp of the source file.
+   *
+   * @param varName normalized variable name, must not be null
+   * @return true if the variable value can be changed without change of source file content, false otherwise
+   * @since 7.0.3
+   */
+  public static boolean isVolatileVariable(@Nonnull final String varName) {
+    return VAR_TIME.equals(varName) || VAR_DATE.equals(varName) || VAR_TIMESTAMP.equals(varName);
+  }
+
   @Override
   @Nonnull
   @MustNotContainNull
@@ -133,16 +151,16 @@ public class JCPSpecialVariableProcessor implements SpecialVariableProcessor {
       case VAR_VERSION:
         return Value.valueOf(InfoHelper.getVersion());
       case VAR_TIME:
-        return Value.valueOf(timeFormat.format(new Date()));
+        return Value.valueOf(format(timeFormat, new Date()));
       case VAR_DATE:
-        return Value.valueOf(dateFormat.format(new Date()));
+        return Value.valueOf(format(dateFormat, new Date()));
       case VAR_TIMESTAMP:
         final TextFileDataContainer filedata = state.peekFile();
         final Value result;
         if (filedata == null) {
           result = Value.valueOf("<no file>");
         } else {
-          result = Value.valueOf(timestampFormat.format(new Date(filedata.getFile().lastModified())));
+          result = Value.valueOf(format(timestampFormat, new Date(filedata.getFile().lastModified())));
         }
         return result;
       case VAR_LINE:
@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.context;
 
 
 import com.igormaznitsa.jcp.containers.FileInfoContainer;
+import com.igormaznitsa.jcp.containers.LineIndexedText;
 import com.igormaznitsa.jcp.containers.PreprocessingFlag;
 import com.igormaznitsa.jcp.containers.TextFileDataContainer;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
@@ -56,7 +57,6 @@ import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
 import static com.igormaznitsa.meta.common.utils.IOUtils.closeQuietly;
@@ -207,10 +207,11 @@ public final class PreprocessingState {
   public TextFileDataContainer openFile(@Nonnull final File file) throws IOException {
     assertNotNull("The file is null", file);
 
-    final AtomicBoolean endedByNextLineContainer = new AtomicBoolean();
-
-    final String[] texts = PreprocessorUtils.readWholeTextFileIntoArray(file, globalInCharacterEncoding, endedByNextLineContainer);
-    final TextFileDataContainer newContainer = new TextFileDataContainer(file, texts, endedByNextLineContainer.get(), 0);
+    final SourceTextCache textCache = this.context == null ? null : this.context.getSourceTextCache();
+    final LineIndexedText text = textCache == null
+        ? PreprocessorUtils.readWholeText(file, globalInCharacterEncoding)
+        : textCache.readText(file, globalInCharacterEncoding);
+    final TextFileDataContainer newContainer = new TextFileDataContainer(file, text, text.isEndedByNextLine(), 0);
     includeStack.push(newContainer);
     return newContainer;
   }
@@ -234,9 +235,9 @@ public final class PreprocessingState {
     }
 
     final FilePositionInfo[] stack = new FilePositionInfo[includeStack.size()];
-    for (int i = 0; i < includeStack.size(); i++) {
-      final TextFileDataContainer fileContainer = includeStack.get(i);
-      stack[i] = new FilePositionInfo(fileContainer.getFile(), fileContainer.getLastReadStringIndex());
+    int index = 0;
+    for (final TextFileDataContainer fileContainer : includeStack) {
+      stack[index++] = new FilePositionInfo(fileContainer.getFile(), fileContainer.getLastReadStringIndex());
     }
     return stack;
   }
@@ -416,13 +417,14 @@ public final class PreprocessingState {
   public boolean saveBuffersToFile(@Nonnull final File outFile, final boolean keepComments) throws IOException {
     final File path = outFile.getParentFile();
 
-    if (path != null && !path.exists() && !path.mkdirs()) {
+    if (path != null && !path.exists() && !path.mkdirs() && !path.isDirectory()) {
       throw new IOException("Can't make directory [" + PreprocessorUtils.getFilePath(path) + ']');
     }
 
     Writer writer = null;
 
     boolean wasSaved = false;
+    Long contentHash = null;
     try {
       final int totatBufferedChars = prefixPrinter.getSize() + normalPrinter.getSize() + postfixPrinter.getSize();
       final int BUFFER_SIZE = Math.max(64, Math.min(totatBufferedChars << 1, MAX_WRITE_BUFFER_SIZE));
@@ -435,7 +437,17 @@ public final class PreprocessingState {
 
         boolean needWrite = true; // better write than not
         final byte[] contentInBinaryForm = content.getBytes(globalOutCharacterEncoding);
-        if (outFile.isFile() && outFile.length() == contentInBinaryForm.length) {
+        final ContentHashManifest hashManifest = this.context.getContentHashManifest();
+        final Boolean sameContent;
+        if (hashManifest == null) {
+          sameContent = null;
+        } else {
+          contentHash = ContentHashManifest.hash(contentInBinaryForm, 0, contentInBinaryForm.length);
+          sameContent = hashManifest.checkContent(outFile, contentInBinaryForm.length, contentHash);
+        }
+        if (sameContent != null) {
+          needWrite = !sameContent;
+        } else if (outFile.isFile() && outFile.length() == contentInBinaryForm.length) {
           // If file exists and has the same content, then skip overwriting it
           try (InputStream currentFileInputStream = new BufferedInputStream(new FileInputStream(outFile), Math.max(16384, (int) outFile.length()))) {
             needWrite = !IOUtils.contentEquals(currentFileInputStream, new ByteArrayInputStream(contentInBinaryForm));
@@ -466,6 +478,11 @@ public final class PreprocessingState {
       PreprocessorUtils.copyFileAttributes(this.getRootFileInfo().getSourceFile(), outFile);
     }
 
+    final ContentHashManifest hashManifest = this.context.getContentHashManifest();
+    if (hashManifest != null && contentHash != null) {
+      hashManifest.register(outFile, contentHash);
+    }
+
     return wasSaved;
   }
 
@@ -26,7 +26,11 @@ import com.igormaznitsa.jcp.containers.FileInfoContainer;
 import com.igormaznitsa.jcp.containers.TextFileDataContainer;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
+import com.igormaznitsa.jcp.expression.ExpressionTreeCache;
+import com.igormaznitsa.jcp.expression.FunctionResultCache;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.Variable;
+import com.igormaznitsa.jcp.expression.VariableSlotRegistry;
 import com.igormaznitsa.jcp.extension.PreprocessorExtension;
 import com.igormaznitsa.jcp.logger.PreprocessorLogger;
 import com.igormaznitsa.jcp.logger.SystemOutLogger;
@@ -47,11 +51,13 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
@@ -73,10 +79,17 @@ public class PreprocessorContext {
   public static final List<String> DEFAULT_EXCLUDED_EXTENSIONS = singletonList("xml");
   public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
 
-  private final Map<String, Value> globalVarTable = new HashMap<>();
-  private final Map<String, Value> localVarTable = new HashMap<>();
-  private final Map<String, SpecialVariableProcessor> mapVariableNameToSpecialVarProcessor = new HashMap<>();
-  private final Map<String, Object> sharedResources = new HashMap<>();
+  @Getter(AccessLevel.NONE)
+  private final CopyOnWriteMap<String, Value> globalVarTable;
+  @Getter(AccessLevel.NONE)
+  private final CopyOnWriteMap<String, Value> localVarTable;
+  @Getter(AccessLevel.NONE)
+  private final CopyOnWriteMap<String, SpecialVariableProcessor> mapVariableNameToSpecialVarProcessor;
+  private final Map<String, Object> sharedResources;
+  private final SourceTextCache sourceTextCache;
+  private final ExpressionTreeCache expressionTreeCache;
+  private final VariableSlotRegistry variableSlotRegistry;
+  private final FunctionResultCache functionResultCache;
   private final List<File> configFiles = new ArrayList<>();
 
   @Setter(AccessLevel.NONE)
@@ -97,6 +110,10 @@ public class PreprocessorContext {
   private boolean preserveIndents = false;
   private boolean keepAttributes = false;
   private boolean unknownVariableAsFalse = false;
+  private boolean parallel = false;
+  private boolean incremental = false;
+  private boolean watch = false;
+  private boolean hardLinkCopy = false;
   private File target;
   private Set<String> extensions = new HashSet<>(DEFAULT_PROCESSING_EXTENSIONS);
   private Set<String> excludeExtensions = new HashSet<>(DEFAULT_EXCLUDED_EXTENSIONS);
@@ -112,6 +129,26 @@ public class PreprocessorContext {
   @Getter(AccessLevel.NONE)
   private final AtomicReference<PreprocessingState> preprocessingState = new AtomicReference<>();
 
+  @Setter(AccessLevel.NONE)
+  @Getter(AccessLevel.NONE)
+  private final VariableSlotCache variableSlotCache;
+
+  @Setter(AccessLevel.NONE)
+  @Getter(AccessLevel.NONE)
+  private final AtomicReference<Set<File>> recordedDependencies;
+
+  @Setter(AccessLevel.NONE)
+  @Getter(AccessLevel.NONE)
+  private final AtomicReference<Set<String>> readGlobalVariables;
+
+  @Setter(AccessLevel.NONE)
+  @Getter(AccessLevel.NONE)
+  private final AtomicBoolean volatileVariableRead;
+
+  @Setter(AccessLevel.NONE)
+  @Getter(AccessLevel.NONE)
+  private final AtomicReference<ContentHashManifest> contentHashManifest;
+
   /**
    * Constructor
    *
@@ -119,6 +156,19 @@ public class PreprocessorContext {
    */
   public PreprocessorContext(@Nonnull final File baseDir) {
     this.baseDir = assertNotNull("Base folder must not be null", baseDir);
+    this.globalVarTable = new CopyOnWriteMap<>();
+    this.localVarTable = new CopyOnWriteMap<>();
+    this.mapVariableNameToSpecialVarProcessor = new CopyOnWriteMap<>();
+    this.sharedResources = new ConcurrentHashMap<>();
+    this.sourceTextCache = new SourceTextCache();
+    this.expressionTreeCache = new ExpressionTreeCache();
+    this.variableSlotRegistry = new VariableSlotRegistry();
+    this.variableSlotCache = new VariableSlotCache(this.variableSlotRegistry, this.globalVarTable, this.localVarTable, this.mapVariableNameToSpecialVarProcessor);
+    this.functionResultCache = new FunctionResultCache();
+    this.recordedDependencies = new AtomicReference<>();
+    this.readGlobalVariables = null;
+    this.volatileVariableRead = new AtomicBoolean();
+    this.contentHashManifest = new AtomicReference<>();
     this.preprocessingState.set(new PreprocessingState(this, this.sourceEncoding, this.targetEncoding));
     setSources(DEFAULT_SOURCE_DIRECTORY).setTarget(new File(DEFAULT_DEST_DIRECTORY));
     registerSpecialVariableProcessor(new JCPSpecialVariableProcessor());
@@ -133,6 +183,17 @@ public class PreprocessorContext {
    * @param context the context to be cloned, must not be null.
    */
   public PreprocessorContext(@Nonnull final PreprocessorContext context) {
+    this(context, false);
+  }
+
+  /**
+   * Make copy of a preprocessor context, the copy can be either a clone or a worker fork.
+   *
+   * @param context the source context, must not be null.
+   * @param fork    if true then the copy gets own preprocessing state and shares resources with the source context, else it is a clone
+   * @see #makeFork()
+   */
+  private PreprocessorContext(@Nonnull final PreprocessorContext context, final boolean fork) {
     assertNotNull("Source context must not be null", context);
 
     this.baseDir = context.getBaseDir();
@@ -155,6 +216,10 @@ public class PreprocessorContext {
     this.excludeExtensions.addAll(context.excludeExtensions);
 
     this.unknownVariableAsFalse = context.unknownVariableAsFalse;
+    this.parallel = context.isParallel();
+    this.incremental = context.isIncremental();
+    this.watch = context.isWatch();
+    this.hardLinkCopy = context.isHardLinkCopy();
 
     this.preprocessorExtension = context.getPreprocessorExtension();
     this.sourceEncoding = context.getSourceEncoding();
@@ -162,25 +227,121 @@ public class PreprocessorContext {
     this.dontOverwriteSameContent = context.isDontOverwriteSameContent();
     this.eol = context.getEol();
 
-    this.globalVarTable.clear();
-    this.globalVarTable.putAll(context.getGlobalVarTable());
-
-    this.localVarTable.clear();
-    this.localVarTable.putAll(context.getLocalVarTable());
+    this.globalVarTable = context.globalVarTable.fork();
+    this.localVarTable = context.localVarTable.fork();
     this.excludeFolders = new ArrayList<>(context.getExcludeFolders());
 
-    this.mapVariableNameToSpecialVarProcessor.putAll(context.getMapVariableNameToSpecialVarProcessor());
-    this.sharedResources.putAll(context.getSharedResources());
+    this.mapVariableNameToSpecialVarProcessor = context.mapVariableNameToSpecialVarProcessor.fork();
+    if (fork) {
+      this.sharedResources = context.sharedResources;
+    } else {
+      this.sharedResources = new ConcurrentHashMap<>(context.getSharedResources());
+    }
 
     this.configFiles.clear();
     this.configFiles.addAll(context.getConfigFiles());
 
-    this.preprocessingState.set(assertNotNull(context.getPreprocessingState()));
-    this.cloned = true;
-
     this.preprocessorLogger = context.getPreprocessorLogger();
+    this.sourceTextCache = context.sourceTextCache;
+    this.expressionTreeCache = context.expressionTreeCache;
+    this.variableSlotRegistry = context.variableSlotRegistry;
+    this.variableSlotCache = new VariableSlotCache(this.variableSlotRegistry, this.globalVarTable, this.localVarTable, this.mapVariableNameToSpecialVarProcessor);
+    this.functionResultCache = context.functionResultCache;
+    this.contentHashManifest = context.contentHashManifest;
+
+    if (fork) {
+      this.preprocessingState.set(new PreprocessingState(this, this.sourceEncoding, this.targetEncoding));
+      this.recordedDependencies = new AtomicReference<>();
+      this.readGlobalVariables = new AtomicReference<>(new HashSet<>());
+      this.volatileVariableRead = new AtomicBoolean();
+      this.cloned = false;
+      this.currentInCloneSource = null;
+    } else {
+      this.preprocessingState.set(assertNotNull(context.getPreprocessingState()));
+      this.recordedDependencies = context.recordedDependencies;
+      this.readGlobalVariables = context.readGlobalVariables;
+      this.volatileVariableRead = context.volatileVariableRead;
+      this.cloned = true;
+      this.currentInCloneSource = context.getPreprocessingState().peekFile();
+    }
+  }
+
+  /**
+   * Make fork of the context to preprocess a file in a separated thread. The fork has own variable tables and preprocessing state, special variable processors and shared resources are shared with the context.
+   *
+   * @return new fork of the context, must not be null
+   * @since 7.0.3
+   */
+  @Nonnull
+  public PreprocessorContext makeFork() {
+    return new PreprocessorContext(this, true);
+  }
+
+  /**
+   * Get table of global variables. Variable tables of clones and forks share content with the source context until the first change
+   * so that making of a copy doesn't depend on number of variables. Changes made directly in the table are detected by the context.
+   * Request of the table makes unknown set of global variables read by a fork.
+   *
+   * @return map of global variables, must not be null
+   * @see #getReadGlobalVariables()
+   */
+  @Nonnull
+  public Map<String, Value> getGlobalVarTable() {
+    this.markAllGlobalVariablesRead();
+    return this.globalVarTable;
+  }
+
+  /**
+   * Get names of global variables which have been read, defined or removed through a fork and its clones since the fork was made.
+   * The set allows to find whether a file preprocessed in parallel has seen global variables changed by other files.
+   *
+   * @return set of normalized names of global variables, null if the context is not a fork or if the set is unknown because the global variable table has been requested directly
+   * @see #makeFork()
+   * @since 7.0.3
+   */
+  @Nullable
+  public Set<String> getReadGlobalVariables() {
+    if (this.readGlobalVariables == null) {
+      return null;
+    }
+    final Set<String> result = this.readGlobalVariables.get();
+    return result == null ? null : Collections.unmodifiableSet(result);
+  }
+
+  private void registerGlobalVariableRead(@Nonnull final String normalizedName) {
+    if (this.readGlobalVariables != null) {
+      final Set<String> names = this.readGlobalVariables.get();
+      if (names != null) {
+        names.add(normalizedName);
+      }
+    }
+  }
 
-    this.currentInCloneSource = context.getPreprocessingState().peekFile();
+  private void markAllGlobalVariablesRead() {
+    if (this.readGlobalVariables != null) {
+      this.readGlobalVariables.set(null);
+    }
+  }
+
+  /**
+   * Get table of local variables.
+   *
+   * @return map of local variables, must not be null
+   * @see #getGlobalVarTable()
+   */
+  @Nonnull
+  public Map<String, Value> getLocalVarTable() {
+    return this.localVarTable;
+  }
+
+  /**
+   * Get map of registered special variable processors. Changes made directly in the map are detected by the context.
+   *
+   * @return map of special variable processors for their normalized variable names, must not be null
+   */
+  @Nonnull
+  public Map<String, SpecialVariableProcessor> getMapVariableNameToSpecialVarProcessor() {
+    return this.mapVariableNameToSpecialVarProcessor;
   }
 
   @Nonnull
@@ -276,6 +437,7 @@ public class PreprocessorContext {
       }
       mapVariableNameToSpecialVarProcessor.put(varName, processor);
     }
+    this.variableSlotCache.clear();
   }
 
   /**
@@ -461,11 +623,13 @@ public class PreprocessorContext {
       throw makeException("Not defined variable name", null);
     }
 
+    registerGlobalVariableRead(normalized);
     if (mapVariableNameToSpecialVarProcessor.containsKey(normalized) || globalVarTable.containsKey(normalized)) {
       throw makeException("Attempting to set either a global variable or a special variable as a local one [" + normalized + ']', null);
     }
 
     localVarTable.put(normalized, value);
+    this.variableSlotCache.changed(normalized);
     return this;
   }
 
@@ -485,6 +649,7 @@ public class PreprocessorContext {
       throw makeException("Empty variable name", null);
     }
 
+    registerGlobalVariableRead(normalized);
     if (mapVariableNameToSpecialVarProcessor.containsKey(normalized) || globalVarTable.containsKey(normalized)) {
       throw makeException("Attempting to remove either a global variable or a special variable as a local one [" + normalized + ']', null);
     }
@@ -493,6 +658,7 @@ public class PreprocessorContext {
       logForVerbose("Removing local variable '" + normalized + "\'");
     }
     localVarTable.remove(normalized);
+    this.variableSlotCache.changed(normalized);
     return this;
   }
 
@@ -521,7 +687,9 @@ public class PreprocessorContext {
       logForVerbose("Removing global variable '" + normalized + "\'");
     }
 
+    registerGlobalVariableRead(normalized);
     globalVarTable.remove(normalized);
+    this.variableSlotCache.changed(normalized);
     return this;
   }
 
@@ -574,6 +742,24 @@ public class PreprocessorContext {
   @Nonnull
   public PreprocessorContext clearLocalVariables() {
     localVarTable.clear();
+    this.variableSlotCache.clear();
+    return this;
+  }
+
+  /**
+   * Replace all global variables by variables from a map.
+   *
+   * @param variables map of normalized variable names and their values, must not be null
+   * @return this preprocessor context
+   * @since 7.0.3
+   */
+  @Nonnull
+  public PreprocessorContext replaceGlobalVariables(@Nonnull final Map<String, Value> variables) {
+    assertNotNull("Variables are null", variables);
+    markAllGlobalVariablesRead();
+    globalVarTable.clear();
+    globalVarTable.putAll(variables);
+    this.variableSlotCache.clear();
     return this;
   }
 
@@ -599,6 +785,7 @@ public class PreprocessorContext {
     if (mapVariableNameToSpecialVarProcessor.containsKey(normalizedName)) {
       mapVariableNameToSpecialVarProcessor.get(normalizedName).setVariable(normalizedName, value, this);
     } else {
+      registerGlobalVariableRead(normalizedName);
       if (isVerbose()) {
         final String valueAsStr = value.toString();
         if (globalVarTable.containsKey(normalizedName)) {
@@ -608,6 +795,7 @@ public class PreprocessorContext {
         }
       }
       globalVarTable.put(normalizedName, value);
+      this.variableSlotCache.changed(normalizedName);
     }
     return this;
   }
@@ -628,7 +816,11 @@ public class PreprocessorContext {
       return false;
     }
 
-    return mapVariableNameToSpecialVarProcessor.containsKey(normalized) || globalVarTable.containsKey(normalized);
+    if (mapVariableNameToSpecialVarProcessor.containsKey(normalized)) {
+      return true;
+    }
+    registerGlobalVariableRead(normalized);
+    return globalVarTable.containsKey(normalized);
   }
 
   /**
@@ -653,14 +845,16 @@ public class PreprocessorContext {
     final SpecialVariableProcessor processor = mapVariableNameToSpecialVarProcessor.get(normalized);
 
     if (processor != null) {
+      registerSpecialVariableRead(normalized, processor);
       return processor.getVariable(normalized, this);
     }
 
-    final Value val = getLocalVariable(normalized);
+    final Value val = localVarTable.get(normalized);
     if (val != null) {
       return val;
     }
 
+    registerGlobalVariableRead(normalized);
     Value result = globalVarTable.get(normalized);
 
     if (result == null && !enforceUnknownVarAsNull && this.unknownVariableAsFalse) {
@@ -671,6 +865,49 @@ public class PreprocessorContext {
     return result;
   }
 
+  /**
+   * Find value of an expression variable. The variable name is already normalized and found values of local and global variables
+   * are kept in the slot cache until a variable table is changed, so that repeated search doesn't touch variable tables.
+   * Special variables are never cached and any change of special variable processors clears the cache.
+   *
+   * @param variable                the variable to be found, must not be null
+   * @param enforceUnknownVarAsNull if true then state of the unknownVariableAsFalse flag in context will be ignored
+   * @return null if the variable is not found, otherwise the variable value
+   * @see #findVariableForName(String, boolean)
+   * @since 7.0.3
+   */
+  @Nullable
+  public Value findVariable(@Nonnull final Variable variable, final boolean enforceUnknownVarAsNull) {
+    final Value cached = this.variableSlotCache.get(variable);
+    if (cached != null) {
+      return cached;
+    }
+
+    final String name = variable.getName();
+
+    final SpecialVariableProcessor processor = mapVariableNameToSpecialVarProcessor.get(name);
+    if (processor != null) {
+      registerSpecialVariableRead(name, processor);
+      return processor.getVariable(name, this);
+    }
+
+    Value result = localVarTable.get(name);
+    if (result == null) {
+      registerGlobalVariableRead(name);
+      result = globalVarTable.get(name);
+    }
+
+    if (result == null) {
+      if (!enforceUnknownVarAsNull && this.unknownVariableAsFalse) {
+        logDebug("Unknown variable '" + name + "' is replaced by FALSE!");
+        result = Value.BOOLEAN_FALSE;
+      }
+    } else {
+      this.variableSlotCache.put(variable, result);
+    }
+    return result;
+  }
+
   /**
    * Check that there is a global variable with such name.
    *
@@ -680,7 +917,8 @@ public class PreprocessorContext {
   public boolean isGlobalVariable(@Nullable final String variableName) {
     boolean result = false;
     if (variableName != null) {
-      final String normalized = PreprocessorUtils.normalizeVariableName(variableName);
+      final String normalized = assertNotNull(PreprocessorUtils.normalizeVariableName(variableName));
+      registerGlobalVariableRead(normalized);
       result = this.globalVarTable.containsKey(normalized) || mapVariableNameToSpecialVarProcessor.containsKey(normalized);
     }
     return result;
@@ -786,6 +1024,86 @@ public class PreprocessorContext {
     return result;
   }
 
+  /**
+   * Start recording of files used during preprocessing, the recording is shared with clones of the context.
+   *
+   * @see #registerDependency(File)
+   * @see #stopDependencyRecording()
+   * @since 7.0.3
+   */
+  public void startDependencyRecording() {
+    this.recordedDependencies.set(new LinkedHashSet<>());
+    this.volatileVariableRead.set(false);
+  }
+
+  /**
+   * Check that a special variable which value doesn't depend only on the source file content has been read since start of dependency recording.
+   * Such variables are time, date and timestamp of the source file, environment variables and variables provided by external special variable processors (like maven and ant properties).
+   * The flag is shared with clones of the context.
+   *
+   * @return true if such variable has been read, false otherwise
+   * @see #startDependencyRecording()
+   * @since 7.0.3
+   */
+  public boolean isVolatileVariableRead() {
+    return this.volatileVariableRead.get();
+  }
+
+  private void registerSpecialVariableRead(@Nonnull final String normalizedName, @Nonnull final SpecialVariableProcessor processor) {
+    if (!(processor instanceof JCPSpecialVariableProcessor) || JCPSpecialVariableProcessor.isVolatileVariable(normalizedName)) {
+      this.volatileVariableRead.set(true);
+    }
+  }
+
+  /**
+   * Register a file used during preprocessing (included, evaluated or loaded as binary or XML file), it is ignored if recording is not started.
+   *
+   * @param file the used file, must not be null
+   * @since 7.0.3
+   */
+  public void registerDependency(@Nonnull final File file) {
+    assertNotNull("File is null", file);
+    final Set<File> recorded = this.recordedDependencies.get();
+    if (recorded != null) {
+      recorded.add(file);
+    }
+  }
+
+  /**
+   * Stop recording of used files.
+   *
+   * @return files registered since start of recording, must not be null
+   * @since 7.0.3
+   */
+  @Nonnull
+  @MustNotContainNull
+  public Set<File> stopDependencyRecording() {
+    final Set<File> result = this.recordedDependencies.getAndSet(null);
+    return result == null ? Collections.emptySet() : result;
+  }
+
+  /**
+   * Get manifest of written file hashes used to detect same content without reading of written files, it is shared by clones and forks of the context.
+   *
+   * @return the manifest or null if it is not defined
+   * @since 7.0.3
+   */
+  @Nullable
+  public ContentHashManifest getContentHashManifest() {
+    return this.contentHashManifest.get();
+  }
+
+  /**
+   * Set manifest of written file hashes.
+   *
+   * @param manifest the manifest, can be null
+   * @see #getContentHashManifest()
+   * @since 7.0.3
+   */
+  public void setContentHashManifest(@Nullable final ContentHashManifest manifest) {
+    this.contentHashManifest.set(manifest);
+  }
+
   /**
    * Add a configuration file, it is a file which contains directives and global variable definitions
    *
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import com.igormaznitsa.jcp.containers.LineIndexedText;
+import com.igormaznitsa.jcp.utils.PreprocessorUtils;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
+
+/**
+ * Bounded cache of decoded text of source files. Entries are identified by canonical file path and checked for modification time and size of the file,
+ * the least recently used entries are removed when the total number of cached chars exceeds the limit. The class is thread-safe.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.0.3
+ */
+public final class SourceTextCache {
+
+  public static final long DEFAULT_MAX_CHARS = 32L * 1024L * 1024L;
+
+  private final long maxChars;
+  private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private long cachedChars;
+
+  public SourceTextCache() {
+    this(DEFAULT_MAX_CHARS);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param maxChars max number of chars kept in the cache, zero or negative value disables caching
+   */
+  public SourceTextCache(final long maxChars) {
+    this.maxChars = maxChars;
+  }
+
+  /**
+   * Read text of a file, if the file is not changed since last read then cached text is returned.
+   * The returned text is immutable and can be shared.
+   *
+   * @param file     the file to be read, must not be null
+   * @param encoding the file encoding, must not be null
+   * @return text of the file, must not be null
+   * @throws IOException it will be thrown if the file can't be read
+   * @see LineIndexedText#read(File, Charset)
+   */
+  @Nonnull
+  public LineIndexedText readText(@Nonnull final File file, @Nonnull final Charset encoding) throws IOException {
+    assertNotNull("File is null", file);
+    assertNotNull("Encoding is null", encoding);
+
+    if (this.maxChars <= 0L) {
+      return readFile(file, encoding);
+    }
+
+    final String path;
+    final BasicFileAttributes attributes;
+    try {
+      path = file.getCanonicalPath();
+      attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    } catch (IOException ex) {
+      // let the reader to report the problem in its standard way
+      return readFile(file, encoding);
+    }
+
+    final long modified = attributes.lastModifiedTime().toMillis();
+    final long size = attributes.size();
+
+    synchronized (this.entries) {
+      final Entry entry = this.entries.get(path);
+      if (entry != null && entry.isValid(modified, size, encoding)) {
+        this.hits.incrementAndGet();
+        return entry.text;
+      }
+    }
+
+    this.misses.incrementAndGet();
+
+    final LineIndexedText text = readFile(file, encoding);
+
+    final Entry newEntry = new Entry(text, modified, size, encoding);
+    if (newEntry.weight <= this.maxChars) {
+      synchronized (this.entries) {
+        final Entry replaced = this.entries.put(path, newEntry);
+        if (replaced != null) {
+          this.cachedChars -= replaced.weight;
+        }
+        this.cachedChars += newEntry.weight;
+
+        final Iterator<Entry> iterator = this.entries.values().iterator();
+        while (this.cachedChars > this.maxChars && iterator.hasNext()) {
+          this.cachedChars -= iterator.next().weight;
+          iterator.remove();
+        }
+      }
+    }
+
+    return text;
+  }
+
+  @Nonnull
+  private static LineIndexedText readFile(@Nonnull final File file, @Nonnull final Charset encoding) throws IOException {
+    if (!file.isFile()) {
+      throw new FileNotFoundException("File " + PreprocessorUtils.getFilePath(file) + " doesn't exist");
+    }
+    return LineIndexedText.read(file, encoding);
+  }
+
+  /**
+   * Remove cached entry for a file, it allows to drop text of a file which is known as changed one.
+   *
+   * @param file the file which text should be removed from the cache, must not be null
+   * @throws IOException if canonical path can't be made
+   */
+  public void invalidate(@Nonnull final File file) throws IOException {
+    final String path = assertNotNull("File is null", file).getCanonicalPath();
+    synchronized (this.entries) {
+      final Entry removed = this.entries.remove(path);
+      if (removed != null) {
+        this.cachedChars -= removed.weight;
+      }
+    }
+  }
+
+  /**
+   * Remove all cached entries.
+   */
+  public void clear() {
+    synchronized (this.entries) {
+      this.entries.clear();
+      this.cachedChars = 0L;
+    }
+  }
+
+  /**
+   * Get number of cached files.
+   *
+   * @return number of cached files
+   */
+  public int size() {
+    synchronized (this.entries) {
+      return this.entries.size();
+    }
+  }
+
+  public long getHits() {
+    return this.hits.get();
+  }
+
+  public long getMisses() {
+    return this.misses.get();
+  }
+
+  private static final class Entry {
+    private final LineIndexedText text;
+    private final long modified;
+    private final long size;
+    private final Charset encoding;
+    private final long weight;
+
+    private Entry(@Nonnull final LineIndexedText text, final long modified, final long size, @Nonnull final Charset encoding) {
+      this.text = text;
+      this.modified = modified;
+      this.size = size;
+      this.encoding = encoding;
+      this.weight = text.getWeight();
+    }
+
+    private boolean isValid(final long modified, final long size, @Nonnull final Charset encoding) {
+      return this.modified == modified && this.size == size && this.encoding.equals(encoding);
+    }
+  }
+}
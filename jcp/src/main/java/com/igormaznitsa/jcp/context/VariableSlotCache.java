@@ -0,0 +1,111 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.context;
+
+import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.Variable;
+import com.igormaznitsa.jcp.expression.VariableSlotRegistry;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Cache of found local and global variable values indexed by variable slots, it allows to find value of an expression variable
+ * by array access. Only variables which slots are provided by the registry of the cache are cached. The cache tracks versions of variable tables
+ * and the special variable processor table, it is cleared if a table is changed by anything except methods of the context which clear slots
+ * of changed variables, so that a cached value is never returned for a name which got special variable processor.
+ * The cache is not thread safe and every context has own one.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @see Variable#getSlot()
+ * @since 7.0.3
+ */
+final class VariableSlotCache {
+
+  private final VariableSlotRegistry registry;
+  private final CopyOnWriteMap<String, Value> globalTable;
+  private final CopyOnWriteMap<String, Value> localTable;
+  private final CopyOnWriteMap<String, ?> specialProcessorTable;
+  private Value[] values = new Value[0];
+  private int tableVersions;
+
+  VariableSlotCache(@Nonnull final VariableSlotRegistry registry, @Nonnull final CopyOnWriteMap<String, Value> globalTable, @Nonnull final CopyOnWriteMap<String, Value> localTable, @Nonnull final CopyOnWriteMap<String, ?> specialProcessorTable) {
+    this.registry = registry;
+    this.globalTable = globalTable;
+    this.localTable = localTable;
+    this.specialProcessorTable = specialProcessorTable;
+    this.tableVersions = this.currentTableVersions();
+  }
+
+  private int currentTableVersions() {
+    return this.globalTable.getVersion() + this.localTable.getVersion() + this.specialProcessorTable.getVersion();
+  }
+
+  private boolean isCacheable(@Nonnull final Variable variable) {
+    return variable.getSlotRegistry() == this.registry && variable.getSlot() >= 0;
+  }
+
+  @Nullable
+  Value get(@Nonnull final Variable variable) {
+    if (this.tableVersions != this.currentTableVersions()) {
+      this.clear();
+      return null;
+    }
+    final int slot = variable.getSlot();
+    return isCacheable(variable) && slot < this.values.length ? this.values[slot] : null;
+  }
+
+  void put(@Nonnull final Variable variable, @Nonnull final Value value) {
+    if (isCacheable(variable)) {
+      final int slot = variable.getSlot();
+      if (slot >= this.values.length) {
+        this.values = Arrays.copyOf(this.values, Math.max(slot + 1, this.values.length * 2));
+      }
+      this.values[slot] = value;
+    }
+  }
+
+  /**
+   * Notify the cache that a variable has been changed by single change of a variable table.
+   *
+   * @param normalizedName normalized name of the changed variable, must not be null
+   */
+  void changed(@Nonnull final String normalizedName) {
+    final int versions = this.currentTableVersions();
+    if (versions - this.tableVersions > 1) {
+      this.clear();
+    } else {
+      final int slot = this.registry.findSlot(normalizedName);
+      if (slot >= 0 && slot < this.values.length) {
+        this.values[slot] = null;
+      }
+      this.tableVersions = versions;
+    }
+  }
+
+  void clear() {
+    Arrays.fill(this.values, null);
+    this.tableVersions = this.currentTableVersions();
+  }
+}
@@ -60,6 +60,11 @@ public abstract class AbstractDirectiveHandler {
    */
   private static volatile AbstractDirectiveHandler[] allDirectives;
 
+  /**
+   * Prefix tree of all directives of the preprocessor
+   */
+  private static volatile DirectiveHandlerTrie directiveTrie;
+
   @Nonnull
   @MustNotContainNull
   public static AbstractDirectiveHandler[] getAllDirectives() {
@@ -107,6 +112,22 @@ public abstract class AbstractDirectiveHandler {
     return allDirectives;
   }
 
+  /**
+   * Get prefix tree made for all directives of the preprocessor, it allows to find handler of a directive string without iteration
+   * over all directives.
+   *
+   * @return the prefix tree of all directives, must not be null
+   * @see #getAllDirectives()
+   * @since 7.0.3
+   */
+  @Nonnull
+  public static DirectiveHandlerTrie getDirectiveTrie() {
+    if (directiveTrie == null) {
+      directiveTrie = new DirectiveHandlerTrie(getAllDirectives());
+    }
+    return directiveTrie;
+  }
+
   /**
    * Get the name of the directive without prefix
    *
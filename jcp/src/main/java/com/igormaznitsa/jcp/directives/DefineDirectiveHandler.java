@@ -31,7 +31,6 @@ import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.expression.Variable;
 
 import javax.annotation.Nonnull;
-import java.io.IOException;
 
 import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
 
@@ -70,44 +69,40 @@ public class DefineDirectiveHandler extends AbstractDirectiveHandler {
   @Override
   @Nonnull
   public AfterDirectiveProcessingBehaviour execute(@Nonnull final String rawTail, @Nonnull final PreprocessorContext context) {
-    try {
-      final String trimmedTail = rawTail.trim();
-      final int spaceIndex = trimmedTail.indexOf(' ');
-      final String name;
-      final String expression;
-      if (spaceIndex > 0) {
-        name = trimmedTail.substring(0, spaceIndex).trim();
-        final String trimmed = trimmedTail.substring(spaceIndex).trim();
-        expression = trimmed.isEmpty() || trimmed.startsWith("//") || trimmed.startsWith("/*") ? null : trimmed;
-      } else {
-        name = trimmedTail;
-        expression = null;
-      }
-
-      final ExpressionTree nameTree = ExpressionParser.getInstance().parse(name, context);
-
-      if (nameTree.isEmpty()) {
-        throw context.makeException("Var name is empty", null);
-      }
-
-      final ExpressionItem item = assertNotNull(nameTree.getRoot().getItem());
-      if (item.getExpressionItemType() != ExpressionItemType.VARIABLE) {
-        throw context.makeException("Can't recognize variable name [" + name + ']', null);
-      }
-
-      final Value value;
-
-      if (expression != null) {
-        value = Expression.evalExpression(expression, context);
-      } else {
-        value = Value.valueOf(Boolean.TRUE);
-      }
-
-      process(context, ((Variable) item).getName(), value, context.findVariableForName(name, true) != null);
-    } catch (IOException ex) {
-      throw context.makeException("Unexpected exception", ex);
+    final String trimmedTail = rawTail.trim();
+    final int spaceIndex = trimmedTail.indexOf(' ');
+    final String name;
+    final String expression;
+    if (spaceIndex > 0) {
+      name = trimmedTail.substring(0, spaceIndex).trim();
+      final String trimmed = trimmedTail.substring(spaceIndex).trim();
+      expression = trimmed.isEmpty() || trimmed.startsWith("//") || trimmed.startsWith("/*") ? null : trimmed;
+    } else {
+      name = trimmedTail;
+      expression = null;
     }
 
+    final ExpressionTree nameTree = ExpressionParser.getInstance().parse(name, context);
+
+    if (nameTree.isEmpty()) {
+      throw context.makeException("Var name is empty", null);
+    }
+
+    final ExpressionItem item = assertNotNull(nameTree.getRoot().getItem());
+    if (item.getExpressionItemType() != ExpressionItemType.VARIABLE) {
+      throw context.makeException("Can't recognize variable name [" + name + ']', null);
+    }
+
+    final Value value;
+
+    if (expression != null) {
+      value = Expression.evalExpression(expression, context);
+    } else {
+      value = Value.valueOf(Boolean.TRUE);
+    }
+
+    process(context, ((Variable) item).getName(), value, context.findVariableForName(name, true) != null);
+
     return AfterDirectiveProcessingBehaviour.PROCESSED;
   }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.directives;
+
+import com.igormaznitsa.meta.annotation.MustNotContainNull;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Prefix tree of directive handlers built by their names, it allows to find handler of a directive string by single pass
+ * through its chars. If several handler names are prefixes of a directive string then the handler with the longest name is selected,
+ * so that result doesn't depend on order of handlers. If several handlers have the same name then the first one is used.
+ * The tree is immutable and can be shared between threads.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @see AbstractDirectiveHandler#getDirectiveTrie()
+ * @since 7.0.3
+ */
+public final class DirectiveHandlerTrie {
+
+  private final Node root;
+
+  /**
+   * Constructor.
+   *
+   * @param handlers directive handlers to be placed into the tree, must not be null
+   */
+  public DirectiveHandlerTrie(@Nonnull @MustNotContainNull final AbstractDirectiveHandler... handlers) {
+    final Node rootNode = new Node();
+    for (final AbstractDirectiveHandler handler : handlers) {
+      Node node = rootNode;
+      final String name = handler.getName();
+      for (int i = 0; i < name.length(); i++) {
+        node = node.makeChild(name.charAt(i));
+      }
+      if (node.handler == null) {
+        node.handler = handler;
+      }
+    }
+    this.root = rootNode;
+  }
+
+  /**
+   * Find handler which name is the longest prefix of a directive string.
+   *
+   * @param directiveString directive string without the directive prefix, must not be null
+   * @return found handler or null if there is no handler for the string
+   */
+  @Nullable
+  public AbstractDirectiveHandler find(@Nonnull final String directiveString) {
+    AbstractDirectiveHandler result = null;
+    Node node = this.root;
+    for (int i = 0; i < directiveString.length() && node != null; i++) {
+      node = node.findChild(directiveString.charAt(i));
+      if (node != null && node.handler != null) {
+        result = node.handler;
+      }
+    }
+    return result;
+  }
+
+  private static final class Node {
+
+    private char[] chars = new char[0];
+    private Node[] children = new Node[0];
+    private AbstractDirectiveHandler handler;
+
+    @Nullable
+    Node findChild(final char chr) {
+      final char[] keys = this.chars;
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == chr) {
+          return this.children[i];
+        }
+      }
+      return null;
+    }
+
+    @Nonnull
+    Node makeChild(final char chr) {
+      Node result = this.findChild(chr);
+      if (result == null) {
+        result = new Node();
+        this.chars = Arrays.copyOf(this.chars, this.chars.length + 1);
+        this.children = Arrays.copyOf(this.children, this.children.length + 1);
+        this.chars[this.chars.length - 1] = chr;
+        this.children[this.children.length - 1] = result;
+      }
+      return result;
+    }
+  }
+}
@@ -80,7 +80,7 @@ public class GlobalIfDirectiveHandler extends AbstractDirectiveHandler {
         throw context.makeException("Non boolean argument", null);
       }
       state.pushIf(true);
-      if (!expressionResult.asBoolean()) {
+      if (!expressionResult.booleanValue()) {
         state.getPreprocessingFlags().add(PreprocessingFlag.IF_CONDITION_FALSE);
       }
     } else {
@@ -70,7 +70,7 @@ public class IfDirectiveHandler extends AbstractDirectiveHandler {
         throw context.makeException("Non boolean flag", null);
       }
       state.pushIf(true);
-      if (!expressionResult.asBoolean()) {
+      if (!expressionResult.booleanValue()) {
         state.getPreprocessingFlags().add(PreprocessingFlag.IF_CONDITION_FALSE);
       }
     } else {
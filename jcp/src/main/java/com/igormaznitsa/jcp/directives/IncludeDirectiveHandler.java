@@ -65,6 +65,7 @@ public class IncludeDirectiveHandler extends AbstractDirectiveHandler {
 
     try {
       final File theFile = context.findFileInSources(filePath);
+      context.registerDependency(theFile);
       if (context.isVerbose()) {
         context.logForVerbose("Including file '" + theFile.getCanonicalPath() + '\'');
       }
@@ -72,7 +72,7 @@ public class WhileDirectiveHandler extends AbstractDirectiveHandler {
       }
 
       state.pushWhile(true);
-      if (!condition.asBoolean()) {
+      if (!condition.booleanValue()) {
         state.getPreprocessingFlags().add(PreprocessingFlag.BREAK_COMMAND);
       }
     } else {
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.exceptions.PreprocessorException;
+import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
+import com.igormaznitsa.jcp.expression.functions.FunctionDefinedByUser;
+import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
+import com.igormaznitsa.meta.annotation.MustNotContainNull;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+
+/**
+ * Compiled form of a post-processed expression tree, it is a tree of evaluators which don't make any tree element during evaluation.
+ * Operators and functions are bound to their executing methods during compilation if types of their arguments are known,
+ * for other cases executors are selected by argument types during evaluation.
+ * Trees which can't be compiled are evaluated by the tree interpreter, a compiled expression reports evaluation errors itself
+ * with the same messages as the interpreter, so that any function is called only once. Compiled expressions are immutable and can be shared between threads.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @see Expression#evalTree(ExpressionTree, PreprocessorContext)
+ * @since 7.0.3
+ */
+public final class CompiledExpression {
+
+  private final Node root;
+
+  private CompiledExpression(@Nonnull final Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Compile an expression tree.
+   *
+   * @param tree post-processed expression tree, must not be null
+   * @return compiled expression or null if the tree contains either errors or user defined functions and must be processed by the interpreter
+   */
+  @Nullable
+  public static CompiledExpression compile(@Nonnull final ExpressionTree tree) {
+    if (tree.isEmpty()) {
+      return null;
+    }
+    final Node root = compileElement(tree.getRoot());
+    return root == null ? null : new CompiledExpression(root);
+  }
+
+  @Nullable
+  private static Node compileElement(@Nonnull final ExpressionTreeElement element) {
+    if (element.isEmptySlot()) {
+      return null;
+    }
+    final ExpressionItem item = element.getItem();
+    switch (item.getExpressionItemType()) {
+      case VALUE:
+        return new ConstNode((Value) item);
+      case VARIABLE:
+        return new VariableNode((Variable) item);
+      case OPERATOR: {
+        final AbstractOperator operator = (AbstractOperator) item;
+        final Node[] args = compileChildren(element, operator.getArity());
+        if (args == null) {
+          return null;
+        }
+        return operator.getArity() == 1
+            ? new UnaryOperatorNode(operator, args[0])
+            : new BinaryOperatorNode(operator, args[0], args[1], !(args[1] instanceof ConstNode) && element.getChildForIndex(1).isStaticBoolean());
+      }
+      case FUNCTION: {
+        if (item instanceof FunctionDefinedByUser) {
+          return null;
+        }
+        final AbstractFunction function = (AbstractFunction) item;
+        final Node[] args = compileChildren(element, function.getArity());
+        if (args == null) {
+          return null;
+        }
+        return new FunctionNode(function, args);
+      }
+      default:
+        return null;
+    }
+  }
+
+  @Nullable
+  @MustNotContainNull
+  private static Node[] compileChildren(@Nonnull final ExpressionTreeElement element, final int arity) {
+    if (arity != element.getArity()) {
+      return null;
+    }
+    final Node[] result = new Node[arity];
+    for (int i = 0; i < arity; i++) {
+      result[i] = compileElement(element.getChildForIndex(i));
+      if (result[i] == null) {
+        return null;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Evaluate the compiled expression.
+   *
+   * @param context preprocessor context to be used for variables and functions, must not be null
+   * @return result of evaluation, must not be null
+   * @throws PreprocessorException if the expression can't be evaluated for current values
+   */
+  @Nonnull
+  public Value eval(@Nonnull final PreprocessorContext context) {
+    return this.root.eval(context);
+  }
+
+  @Nonnull
+  private static Value invokeOperator(@Nonnull final AbstractOperator operator, @Nonnull final MethodHandle executor, @Nonnull final Value arg) {
+    try {
+      return ExecutorCalls.callOperator(executor, operator, arg);
+    } catch (ArithmeticException ex) {
+      throw ex;
+    } catch (Throwable thr) {
+      throw new RuntimeException("Invocation exception during \'" + operator.getKeyword() + "\' processing", thr);
+    }
+  }
+
+  @Nonnull
+  private static Value invokeOperator(@Nonnull final AbstractOperator operator, @Nonnull final MethodHandle executor, @Nonnull final Value left, @Nonnull final Value right) {
+    try {
+      return ExecutorCalls.callOperator(executor, operator, left, right);
+    } catch (ArithmeticException ex) {
+      throw ex;
+    } catch (Throwable thr) {
+      throw new RuntimeException("Invocation exception during \'" + operator.getKeyword() + "\' processing", thr);
+    }
+  }
+
+  private interface Node {
+
+    /**
+     * Evaluate the node.
+     *
+     * @param context preprocessor context, must not be null
+     * @return result, must not be null
+     */
+    @Nonnull
+    Value eval(@Nonnull PreprocessorContext context);
+
+    /**
+     * Check that all variables of the node are defined without evaluation of the node, it is used for not evaluated short-circuit arguments.
+     *
+     * @param context preprocessor context, must not be null
+     */
+    void checkVariables(@Nonnull PreprocessorContext context);
+
+    /**
+     * Get type of result if it is known before evaluation.
+     *
+     * @return type of result or null if it is not known
+     */
+    @Nullable
+    ValueType getStaticType();
+  }
+
+  private static final class ConstNode implements Node {
+
+    private final Value value;
+
+    ConstNode(@Nonnull final Value value) {
+      this.value = value;
+    }
+
+    @Override
+    @Nonnull
+    public Value eval(@Nonnull final PreprocessorContext context) {
+      return this.value;
+    }
+
+    @Override
+    public void checkVariables(@Nonnull final PreprocessorContext context) {
+    }
+
+    @Override
+    @Nonnull
+    public ValueType getStaticType() {
+      return this.value.getType();
+    }
+  }
+
+  private static final class VariableNode implements Node {
+
+    private final Variable variable;
+
+    VariableNode(@Nonnull final Variable variable) {
+      this.variable = variable;
+    }
+
+    @Override
+    @Nonnull
+    public Value eval(@Nonnull final PreprocessorContext context) {
+      final Value value = context.findVariable(this.variable, false);
+      if (value == null) {
+        throw new RuntimeException("Unknown variable [" + this.variable.getName() + ']');
+      }
+      return value;
+    }
+
+    @Override
+    public void checkVariables(@Nonnull final PreprocessorContext context) {
+      this.eval(context);
+    }
+
+    @Override
+    @Nullable
+    public ValueType getStaticType() {
+      return null;
+    }
+  }
+
+  private static final class UnaryOperatorNode implements Node {
+
+    private final AbstractOperator operator;
+    private final Node arg;
+    private final MethodHandle boundExecutor;
+
+    UnaryOperatorNode(@Nonnull final AbstractOperator operator, @Nonnull final Node arg) {
+      this.operator = operator;
+      this.arg = arg;
+      final ValueType argType = arg.getStaticType();
+      this.boundExecutor = argType == null ? null : operator.findExecutor(argType, ValueType.UNKNOWN);
+    }
+
+    @Override
+    @Nonnull
+    public Value eval(@Nonnull final PreprocessorContext context) {
+      final Value value = this.arg.eval(context);
+      final MethodHandle executor = this.boundExecutor == null ? this.operator.findExecutor(value.getType(), ValueType.UNKNOWN) : this.boundExecutor;
+      if (executor == null) {
+        throw context.makeException("[Expression]Unsupported arguments detected for operator \'" + this.operator.getKeyword() + "\' " + Arrays.toString(new Value[] {value}), null);
+      }
+      return invokeOperator(this.operator, executor, value);
+    }
+
+    @Override
+    public void checkVariables(@Nonnull final PreprocessorContext context) {
+      this.arg.checkVariables(context);
+    }
+
+    @Override
+    @Nullable
+    public ValueType getStaticType() {
+      return null;
+    }
+  }
+
+  private static final class BinaryOperatorNode implements Node {
+
+    private final AbstractOperator operator;
+    private final Node left;
+    private final Node right;
+    private final MethodHandle boundExecutor;
+    private final boolean shortCircuitAllowed;
+
+    BinaryOperatorNode(@Nonnull final AbstractOperator operator, @Nonnull final Node left, @Nonnull final Node right, final boolean shortCircuitAllowed) {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+      this.shortCircuitAllowed = shortCircuitAllowed;
+      final ValueType leftType = left.getStaticType();
+      final ValueType rightType = right.getStaticType();
+      this.boundExecutor = leftType == null || rightType == null ? null : operator.findExecutor(leftType, rightType);
+    }
+
+    @Override
+    @Nonnull
+    public Value eval(@Nonnull final PreprocessorContext context) {
+      final Value leftValue = this.left.eval(context);
+      if (this.shortCircuitAllowed) {
+        final Value shortCircuitResult = this.operator.shortCircuit(leftValue);
+        if (shortCircuitResult != null) {
+          this.right.checkVariables(context);
+          return shortCircuitResult;
+        }
+      }
+      final Value rightValue = this.right.eval(context);
+      final MethodHandle executor = this.boundExecutor == null ? this.operator.findExecutor(leftValue.getType(), rightValue.getType()) : this.boundExecutor;
+      if (executor == null) {
+        throw context.makeException("[Expression]Unsupported arguments detected for operator \'" + this.operator.getKeyword() + "\' " + Arrays.toString(new Value[] {leftValue, rightValue}), null);
+      }
+      return invokeOperator(this.operator, executor, leftValue, rightValue);
+    }
+
+    @Override
+    public void checkVariables(@Nonnull final PreprocessorContext context) {
+      this.left.checkVariables(context);
+      this.right.checkVariables(context);
+    }
+
+    @Override
+    @Nullable
+    public ValueType getStaticType() {
+      return null;
+    }
+  }
+
+  private static final class FunctionNode implements Node {
+
+    private final AbstractFunction function;
+    private final Node[] args;
+    private final int boundSignature;
+
+    FunctionNode(@Nonnull final AbstractFunction function, @Nonnull @MustNotContainNull final Node[] args) {
+      this.function = function;
+      this.args = args;
+
+      final ValueType[] types = new ValueType[args.length];
+      boolean allKnown = true;
+      for (int i = 0; i < args.length && allKnown; i++) {
+        types[i] = args[i].getStaticType();
+        allKnown = types[i] != null;
+      }
+      this.boundSignature = allKnown ? function.findAllowedSignature(types) : -1;
+    }
+
+    @Override
+    @Nonnull
+    public Value eval(@Nonnull final PreprocessorContext context) {
+      final Value[] values = new Value[this.args.length];
+      final ValueType[] types = this.boundSignature < 0 ? new ValueType[this.args.length] : null;
+      for (int i = 0; i < this.args.length; i++) {
+        values[i] = this.args[i].eval(context);
+        if (types != null) {
+          types[i] = values[i].getType();
+        }
+      }
+
+      final int signature = types == null ? this.boundSignature : this.function.findAllowedSignature(types);
+      if (signature < 0) {
+        throw context.makeException("[Expression]Unsupported argument detected for \'" + this.function.getName() + '\'', null);
+      }
+      final ValueType[] allowedSignature = this.function.getAllowedArgumentTypes()[signature];
+      final MethodHandle executor = this.function.findExecutor(signature);
+      if (executor == null) {
+        throw context.makeException("[Expression]Can't find a function method to process data [" + Expression.makeSignature(allowedSignature) + ']', null);
+      }
+
+      final FunctionResultCache resultCache = context.getFunctionResultCache();
+      final Value cached = resultCache == null ? null : resultCache.find(this.function, values);
+      if (cached != null) {
+        return cached;
+      }
+
+      final Value result;
+      try {
+        result = ExecutorCalls.callFunction(executor, this.function, context, values);
+      } catch (PreprocessorException ex) {
+        throw ex;
+      } catch (Throwable thr) {
+        throw context.makeException("[Expression]Can't execute a function method to process data [" + this.function.getClass().getName() + '.' + Expression.makeSignature(allowedSignature) + ']', thr);
+      }
+
+      if (!result.getType().isCompatible(this.function.getResultType())) {
+        throw context.makeException("[Expression]Unsupported function result detected [" + result.getType().getSignature() + ']', null);
+      }
+      if (resultCache != null) {
+        resultCache.put(this.function, values, result);
+      }
+      return result;
+    }
+
+    @Override
+    public void checkVariables(@Nonnull final PreprocessorContext context) {
+      for (final Node arg : this.args) {
+        arg.checkVariables(context);
+      }
+    }
+
+    @Override
+    @Nullable
+    public ValueType getStaticType() {
+      final ValueType type = this.function.getResultType();
+      return type == ValueType.ANY || type == ValueType.UNKNOWN ? null : type;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
+import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Auxiliary methods to call executors of operators and functions. All MethodHandle#invokeExact calls of the package are made
+ * here, so that only these methods are excluded from the check of used Java API.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @see AbstractOperator#findExecutor(ValueType, ValueType)
+ * @see AbstractFunction#findExecutor(int)
+ * @since 7.0.3
+ */
+final class ExecutorCalls {
+
+  private ExecutorCalls() {
+  }
+
+  /**
+   * Call executor of an unary operator.
+   *
+   * @param executor executor which type is AbstractOperator#EXECUTOR_TYPE_1, must not be null
+   * @param operator the operator, must not be null
+   * @param arg      the argument, must not be null
+   * @return result of the executor
+   * @throws Throwable any exception thrown by the executor
+   */
+  @IgnoreApiSignatureCheck
+  @Nonnull
+  static Value callOperator(@Nonnull final MethodHandle executor, @Nonnull final AbstractOperator operator, @Nonnull final Value arg) throws Throwable {
+    return (Value) executor.invokeExact(operator, arg);
+  }
+
+  /**
+   * Call executor of a binary operator.
+   *
+   * @param executor executor which type is AbstractOperator#EXECUTOR_TYPE_2, must not be null
+   * @param operator the operator, must not be null
+   * @param left     the left argument, must not be null
+   * @param right    the right argument, must not be null
+   * @return result of the executor
+   * @throws Throwable any exception thrown by the executor
+   */
+  @IgnoreApiSignatureCheck
+  @Nonnull
+  static Value callOperator(@Nonnull final MethodHandle executor, @Nonnull final AbstractOperator operator, @Nonnull final Value left, @Nonnull final Value right) throws Throwable {
+    return (Value) executor.invokeExact(operator, left, right);
+  }
+
+  /**
+   * Call executor of a function.
+   *
+   * @param executor  executor which type is AbstractFunction#EXECUTOR_TYPE, must not be null
+   * @param function  the function, must not be null
+   * @param context   the preprocessor context, must not be null
+   * @param arguments the function arguments, must not be null
+   * @return result of the executor
+   * @throws Throwable any exception thrown by the executor
+   */
+  @IgnoreApiSignatureCheck
+  @Nonnull
+  static Value callFunction(@Nonnull final MethodHandle executor, @Nonnull final AbstractFunction function, @Nonnull final PreprocessorContext context, @Nonnull final Value[] arguments) throws Throwable {
+    return (Value) executor.invokeExact(function, context, arguments);
+  }
+}
@@ -21,18 +21,15 @@
 
 package com.igormaznitsa.jcp.expression;
 
-import com.igormaznitsa.jcp.context.PreprocessingState;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
-import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
 import com.igormaznitsa.jcp.expression.functions.FunctionDefinedByUser;
 import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
 
 import javax.annotation.Nonnull;
-import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
 import java.util.Arrays;
 
 import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
@@ -44,16 +41,6 @@ import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
  */
 public class Expression {
 
-  /**
-   * Pre-created array for speed up operations
-   */
-  private static final Class<?>[] OPERATOR_SIGNATURE_1 = new Class<?>[] {Value.class};
-
-  /**
-   * Pre-created array for speed up operations
-   */
-  private static final Class<?>[] OPERATOR_SIGNATURE_2 = new Class<?>[] {Value.class, Value.class};
-
   /**
    * The variable contains the preprocessor context for the expression, it can be null
    */
@@ -81,16 +68,15 @@ public class Expression {
    */
   @Nonnull
   public static Value evalExpression(@Nonnull final String expression, @Nonnull final PreprocessorContext context) {
-    try {
-      final ExpressionTree tree = ExpressionParser.getInstance().parse(expression, context);
-      return evalTree(tree, context);
-    } catch (IOException unexpected) {
-      throw context.makeException("[Expression]Wrong expression format detected [" + expression + ']', unexpected);
-    }
+    final ExpressionTreeCache treeCache = context.getExpressionTreeCache();
+    final ExpressionTree tree = treeCache == null
+        ? ExpressionParser.getInstance().parse(expression, context)
+        : treeCache.parse(expression, context);
+    return evalTree(tree, context);
   }
 
   /**
-   * Evaluate an expression tree
+   * Evaluate an expression tree, compiled form of the tree is used if it is presented, otherwise the tree is processed by the interpreter
    *
    * @param tree    an expression tree, it must not be null
    * @param context a preprocessor context to be used for expression operations
@@ -98,35 +84,23 @@ public class Expression {
    */
   @Nonnull
   public static Value evalTree(@Nonnull final ExpressionTree tree, @Nonnull final PreprocessorContext context) {
+    final CompiledExpression compiled = tree.getCompiled();
+    if (compiled != null) {
+      return compiled.eval(context);
+    }
     final Expression exp = new Expression(context, tree);
-    return exp.eval(context.getPreprocessingState());
+    return exp.eval();
   }
 
   @Nonnull
-  private ExpressionTreeElement evalFunction(@Nonnull final ExpressionTreeElement functionElement, @Nonnull final PreprocessingState state) {
+  private Value evalFunction(@Nonnull final ExpressionTreeElement functionElement) {
     final AbstractFunction function = (AbstractFunction) functionElement.getItem();
 
     final int arity = function.getArity();
     final Value[] arguments = new Value[arity];
-    final Class<?>[] methodArguments = new Class<?>[arity + 1];
-    methodArguments[0] = PreprocessorContext.class;
-
-    final FilePositionInfo[] stack;
-    final String sources;
-
-    stack = state.makeIncludeStack();
-    sources = state.getLastReadString();
-
-    final StringBuilder signature = new StringBuilder(AbstractFunction.EXECUTION_PREFIX);
-
-    for (int i = 1; i <= arity; i++) {
-      methodArguments[i] = Value.class;
-    }
 
     for (int i = 0; i < arity; i++) {
-      final ExpressionTreeElement item = calculateTreeElement(functionElement.getChildForIndex(i), state);
-
-      final ExpressionItem itemValue = item.getItem();
+      final ExpressionItem itemValue = calculateItem(functionElement.getChildForIndex(i));
 
       if (itemValue instanceof Value) {
         arguments[i] = (Value) itemValue;
@@ -136,12 +110,12 @@ public class Expression {
     }
 
     final ValueType[][] allowedSignatures = function.getAllowedArgumentTypes();
-    ValueType[] allowed = null;
-    for (final ValueType[] current : allowedSignatures) {
+    int allowedIndex = -1;
+    for (int i = 0; i < allowedSignatures.length; i++) {
       boolean allCompatible = true;
 
       int thatIndex = 0;
-      for (final ValueType type : current) {
+      for (final ValueType type : allowedSignatures[i]) {
         if (!type.isCompatible(arguments[thatIndex].getType())) {
           allCompatible = false;
           break;
@@ -150,70 +124,71 @@ public class Expression {
       }
 
       if (allCompatible) {
-        allowed = current;
-        for (final ValueType type : allowed) {
-          signature.append(type.getSignature());
-        }
+        allowedIndex = i;
         break;
       }
     }
 
-    if (allowed == null) {
+    if (allowedIndex < 0) {
       throw this.context.makeException("[Expression]Unsupported argument detected for \'" + function.getName() + '\'', null);
     }
 
     if (function instanceof FunctionDefinedByUser) {
       final FunctionDefinedByUser userFunction = (FunctionDefinedByUser) function;
       try {
-        return new ExpressionTreeElement(userFunction.execute(context, arguments), stack, sources);
+        return userFunction.execute(context, arguments);
       } catch (Exception unexpected) {
         throw this.context.makeException("[Expression]Unexpected exception during a user function processing", unexpected);
       }
     } else {
-      try {
-        final Method method = function.getClass().getMethod(signature.toString(), methodArguments);
+      final MethodHandle executor = function.findExecutor(allowedIndex);
+      if (executor == null) {
+        throw this.context.makeException("[Expression]Can't find a function method to process data [" + makeSignature(allowedSignatures[allowedIndex]) + ']', null);
+      }
 
-        final Object[] callArgs = new Object[arity + 1];
-        callArgs[0] = context;
-        System.arraycopy(arguments, 0, callArgs, 1, arity);
+      final FunctionResultCache resultCache = this.context.getFunctionResultCache();
+      final Value cached = resultCache == null ? null : resultCache.find(function, arguments);
+      if (cached != null) {
+        return cached;
+      }
 
-        final Value result = (Value) method.invoke(function, callArgs);
+      final Value result;
+      try {
+        result = ExecutorCalls.callFunction(executor, function, context, arguments);
+      } catch (PreprocessorException ex) {
+        throw ex;
+      } catch (Throwable unexpected) {
+        throw this.context.makeException("[Expression]Can't execute a function method to process data [" + function.getClass().getName() + '.' + makeSignature(allowedSignatures[allowedIndex]) + ']', unexpected);
+      }
 
-        if (!result.getType().isCompatible(function.getResultType())) {
-          throw this.context.makeException("[Expression]Unsupported function result detected [" + result.getType().getSignature() + ']', null);
-        }
+      if (!result.getType().isCompatible(function.getResultType())) {
+        throw this.context.makeException("[Expression]Unsupported function result detected [" + result.getType().getSignature() + ']', null);
+      }
 
-        return new ExpressionTreeElement(result, stack, sources);
-      } catch (NoSuchMethodException unexpected) {
-        throw this.context.makeException("[Expression]Can't find a function method to process data [" + signature.toString() + ']', unexpected);
-      } catch (Exception unexpected) {
-        final Throwable cause = unexpected.getCause();
-        if (cause instanceof PreprocessorException) {
-          throw (PreprocessorException) cause;
-        }
-        throw this.context.makeException("[Expression]Can't execute a function method to process data [" + function.getClass().getName() + '.' + signature.toString() + ']', unexpected);
+      if (resultCache != null) {
+        resultCache.put(function, arguments, result);
       }
+
+      return result;
+    }
+  }
+
+  @Nonnull
+  static String makeSignature(@Nonnull final ValueType[] types) {
+    final StringBuilder signature = new StringBuilder(AbstractFunction.EXECUTION_PREFIX);
+    for (final ValueType type : types) {
+      signature.append(type.getSignature());
     }
+    return signature.toString();
   }
 
   @Nonnull
-  private ExpressionTreeElement evalOperator(@Nonnull final ExpressionTreeElement operatorElement, @Nonnull final PreprocessingState state) {
+  private Value evalOperator(@Nonnull final ExpressionTreeElement operatorElement) {
     final AbstractOperator operator = (AbstractOperator) operatorElement.getItem();
 
     final int arity = operator.getArity();
 
     final Value[] arguments = new Value[arity];
-    final Class<?>[] methodArguments = arity == 1 ? OPERATOR_SIGNATURE_1 : OPERATOR_SIGNATURE_2;
-
-    final StringBuilder signatureNormal = new StringBuilder(AbstractOperator.EXECUTION_PREFIX);
-    final StringBuilder signatureAnyLeft = new StringBuilder(AbstractOperator.EXECUTION_PREFIX);
-    final StringBuilder signatureAnyRight = new StringBuilder(AbstractOperator.EXECUTION_PREFIX);
-
-    final FilePositionInfo[] stack;
-    final String sources;
-
-    stack = state.makeIncludeStack();
-    sources = state.getLastReadString();
 
     for (int i = 0; i < arity; i++) {
       final ExpressionTreeElement arg = operatorElement.getChildForIndex(i);
@@ -221,9 +196,15 @@ public class Expression {
         throw this.context.makeException("[Expression]There is not needed argument for the operator [" + operator.getKeyword() + ']', null);
       }
 
-      final ExpressionTreeElement currentElement = calculateTreeElement(arg, state);
+      if (i > 0 && arg.getItem().getExpressionItemType() != ExpressionItemType.VALUE && arg.isStaticBoolean()) {
+        final Value shortCircuitResult = operator.shortCircuit(arguments[0]);
+        if (shortCircuitResult != null) {
+          checkVariables(arg);
+          return shortCircuitResult;
+        }
+      }
 
-      final ExpressionItem item = currentElement.getItem();
+      final ExpressionItem item = calculateItem(arg);
 
       if (item instanceof Value) {
         arguments[i] = (Value) item;
@@ -232,95 +213,71 @@ public class Expression {
       }
     }
 
-    int argIndex = 0;
-    for (final Value value : arguments) {
-      final String typeSignature = value.getType().getSignature();
-      signatureNormal.append(typeSignature);
-      if (argIndex == 0) {
-        signatureAnyLeft.append(ValueType.ANY.getSignature());
-      } else {
-        signatureAnyLeft.append(typeSignature);
-      }
-
-      if (argIndex == 1) {
-        signatureAnyRight.append(ValueType.ANY.getSignature());
-      } else {
-        signatureAnyRight.append(typeSignature);
-      }
-      argIndex++;
-    }
-
-    Method executeMethod = null;
+    final MethodHandle executor = operator.findExecutor(arguments[0].getType(), arity == 1 ? ValueType.UNKNOWN : arguments[1].getType());
 
-    try {
-      executeMethod = operator.getClass().getMethod(signatureNormal.toString(), methodArguments);
-    } catch (NoSuchMethodException ex) {
-      try {
-        executeMethod = operator.getClass().getMethod(signatureAnyLeft.toString(), methodArguments);
-      } catch (NoSuchMethodException ex2) {
-        try {
-          executeMethod = operator.getClass().getMethod(signatureAnyRight.toString(), methodArguments);
-        } catch (NoSuchMethodException ex3) {
-        }
-      }
-    }
-
-    if (executeMethod == null) {
+    if (executor == null) {
       throw this.context.makeException("[Expression]Unsupported arguments detected for operator \'" + operator.getKeyword() + "\' " + Arrays.toString(arguments), null);
     }
 
     try {
-      return new ExpressionTreeElement((Value) executeMethod.invoke(operator, (Object[]) arguments), stack, sources);
+      return arity == 1
+          ? ExecutorCalls.callOperator(executor, operator, arguments[0])
+          : ExecutorCalls.callOperator(executor, operator, arguments[0], arguments[1]);
     } catch (ArithmeticException arithEx) {
       throw arithEx;
-    } catch (InvocationTargetException ex) {
-      final Throwable thr = ex.getTargetException();
-      if (thr instanceof ArithmeticException) {
-        throw (ArithmeticException) thr;
-      }
+    } catch (Throwable thr) {
       throw new RuntimeException("Invocation exception during \'" + operator.getKeyword() + "\' processing", thr);
-    } catch (Exception unexpected) {
-      throw this.context.makeException("[Exception]Exception during \'" + operator.getKeyword() + "\' processing", unexpected);
     }
   }
 
-  @Nonnull
-  private ExpressionTreeElement calculateTreeElement(@Nonnull final ExpressionTreeElement element, @Nonnull final PreprocessingState state) {
-    ExpressionTreeElement treeElement = element;
+  /**
+   * Check that all variables of a not evaluated sub-tree are defined, so that short-circuit evaluation doesn't hide unknown variables.
+   *
+   * @param element the sub-tree root, must not be null
+   */
+  private void checkVariables(@Nonnull final ExpressionTreeElement element) {
+    if (element.isEmptySlot()) {
+      return;
+    }
+    if (element.getItem().getExpressionItemType() == ExpressionItemType.VARIABLE) {
+      calculateItem(element);
+    } else {
+      for (int i = 0; i < element.getArity(); i++) {
+        checkVariables(element.getChildForIndex(i));
+      }
+    }
+  }
 
-    switch (element.getItem().getExpressionItemType()) {
+  @Nullable
+  private ExpressionItem calculateItem(@Nonnull final ExpressionTreeElement element) {
+    final ExpressionItem item = element.getItem();
+
+    switch (item.getExpressionItemType()) {
       case VARIABLE: {
-        assertNotNull("[Expression]Variable can't be used without context [" + element.getItem().toString() + ']', context);
+        assertNotNull("[Expression]Variable can't be used without context [" + item.toString() + ']', context);
 
-        final Variable var = (Variable) element.getItem();
-        final String name = var.getName();
-        final Value value = context.findVariableForName(name, false);
+        final Variable variable = (Variable) item;
+        final Value value = context.findVariable(variable, false);
         if (value == null) {
-          throw new RuntimeException("Unknown variable [" + name + ']');
-        } else {
-          treeElement = new ExpressionTreeElement(value, state.makeIncludeStack(), state.getLastReadString());
+          throw new RuntimeException("Unknown variable [" + variable.getName() + ']');
         }
+        return value;
       }
-      break;
-      case OPERATOR: {
-        treeElement = evalOperator(element, state);
-      }
-      break;
-      case FUNCTION: {
-        treeElement = evalFunction(element, state);
-      }
-      break;
+      case OPERATOR:
+        return evalOperator(element);
+      case FUNCTION:
+        return evalFunction(element);
+      default:
+        return item;
     }
-    return treeElement;
   }
 
   @Nonnull
-  private Value eval(@Nonnull final PreprocessingState state) {
+  private Value eval() {
     if (expressionTree.isEmpty()) {
       throw this.context.makeException("[Expression]The expression is empty", null);
     }
-    final ExpressionTreeElement result = calculateTreeElement(expressionTree.getRoot(), state);
-    final ExpressionItem resultItem = result.getItem();
+    final ExpressionItem resultItem = calculateItem(expressionTree.getRoot());
 
     if (resultItem == null) {
       throw this.context.makeException("[Expression]Expression doesn't have result", null);
@@ -23,19 +23,15 @@ package com.igormaznitsa.jcp.expression;
 
 import com.igormaznitsa.jcp.context.PreprocessingState;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
-import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
+import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
 import com.igormaznitsa.jcp.expression.functions.FunctionDefinedByUser;
 import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
 import com.igormaznitsa.jcp.extension.PreprocessorExtension;
 import com.igormaznitsa.jcp.utils.PreprocessorUtils;
-import com.igormaznitsa.meta.annotation.MustNotContainNull;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.io.IOException;
-import java.io.PushbackReader;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -54,6 +50,48 @@ public final class ExpressionParser {
    */
   private static final ExpressionParser INSTANCE = new ExpressionParser();
 
+  /**
+   * Max number of decimal digits which can be accumulated in long without overflow check
+   */
+  private static final int MAX_SAFE_DECIMAL_DIGITS = 18;
+
+  /**
+   * Max number of hex digits which can be accumulated in long without overflow check
+   */
+  private static final int MAX_SAFE_HEX_DIGITS = 15;
+
+  /**
+   * Single char operators indexed by their char.
+   */
+  private static final AbstractOperator[] SINGLE_CHAR_OPERATORS = new AbstractOperator[128];
+
+  /**
+   * Two char operators indexed by their first char, all two char operators have different first chars.
+   */
+  private static final AbstractOperator[] TWO_CHAR_OPERATORS = new AbstractOperator[128];
+
+  static {
+    for (final AbstractOperator operator : AbstractOperator.getAllOperators()) {
+      final String keyword = operator.getKeyword();
+      final AbstractOperator[] table;
+      switch (keyword.length()) {
+        case 1:
+          table = SINGLE_CHAR_OPERATORS;
+          break;
+        case 2:
+          table = TWO_CHAR_OPERATORS;
+          break;
+        default:
+          throw new Error("Unsupported operator keyword length [" + keyword + ']');
+      }
+      final char first = keyword.charAt(0);
+      if (first >= table.length || !isOperatorChar(first) || table[first] != null) {
+        throw new Error("Operator can't be placed into operator table [" + keyword + ']');
+      }
+      table[first] = operator;
+    }
+  }
+
   @Nonnull
   public static ExpressionParser getInstance() {
     return INSTANCE;
@@ -94,62 +132,86 @@ public final class ExpressionParser {
     }
   }
 
+  private static boolean isHexDigit(final char chr) {
+    return Character.isDigit(chr) || (chr >= 'a' && chr <= 'f') || (chr >= 'A' && chr <= 'F');
+  }
+
   /**
    * To parse an expression represented as a string and get a tree
    *
    * @param expressionStr the expression string to be parsed, must not be null
    * @param context       a preprocessor context to be used to get variable values
    * @return a tree containing parsed expression
-   * @throws IOException it will be thrown if there is a problem to read the expression string
    */
   @Nonnull
-  public ExpressionTree parse(@Nonnull final String expressionStr, @Nonnull final PreprocessorContext context) throws IOException {
+  public ExpressionTree parse(@Nonnull final String expressionStr, @Nonnull final PreprocessorContext context) {
     assertNotNull("Expression is null", expressionStr);
 
-    final PushbackReader reader = new PushbackReader(new StringReader(expressionStr));
+    final ExpressionSource source = new ExpressionSource(expressionStr);
 
-    final ExpressionTree result;
-    final PreprocessingState state = context.getPreprocessingState();
-    result = new ExpressionTree(state.makeIncludeStack(), state.getLastReadString());
+    final ExpressionTree result = new ExpressionTree();
 
-    if (readExpression(reader, result, context, false, false) != null) {
+    if (readExpression(source, result, context, false, false) != null) {
       final String text = "Unexpected result during parsing [" + expressionStr + ']';
       throw context.makeException(text, null);
     }
 
-    result.postProcess();
+    try {
+      result.postProcess();
+    } catch (PreprocessorException ex) {
+      throw addSourcePosition(ex, context);
+    }
 
     return result;
   }
 
   /**
-   * It reads an expression from a reader and fill a tree
+   * It reads an expression from a source and fill a tree
    *
-   * @param reader        the reader to be used as the character source, must not be null
+   * @param source        the source to be used as the character source, must not be null
    * @param tree          the result tree to be filled by read items, must not be null
    * @param context       a preprocessor context to be used for variables
    * @param insideBracket the flag shows that the expression can be ended by a bracket
    * @param argument      the flag shows that the expression can be ended by a comma
    * @return the last read expression item (a comma or a bracket for instance), it can be null
-   * @throws IOException it will be thrown if there is a problem in reading from the reader
    */
   @Nullable
-  public ExpressionItem readExpression(@Nonnull final PushbackReader reader, @Nonnull final ExpressionTree tree, @Nonnull final PreprocessorContext context, final boolean insideBracket, final boolean argument) throws IOException {
-    boolean working = true;
+  public ExpressionItem readExpression(@Nonnull final ExpressionSource source, @Nonnull final ExpressionTree tree, @Nonnull final PreprocessorContext context, final boolean insideBracket, final boolean argument) {
+    try {
+      return readExpressionItems(source, tree, context, insideBracket, argument);
+    } catch (PreprocessorException ex) {
+      throw addSourcePosition(ex, context);
+    }
+  }
 
-    ExpressionItem result = null;
+  /**
+   * Tree elements throw exceptions without source position, the position is taken from the preprocessing state only if such exception is caught.
+   *
+   * @param ex      caught exception, must not be null
+   * @param context the preprocessor context, must not be null
+   * @return exception containing source position, must not be null
+   */
+  @Nonnull
+  private static PreprocessorException addSourcePosition(@Nonnull final PreprocessorException ex, @Nonnull final PreprocessorContext context) {
+    if (ex.getProcessingString() != null) {
+      return ex;
+    }
+    final PreprocessingState state = context.getPreprocessingState();
+    final PreprocessorException result = new PreprocessorException(ex.getMessage(), state.getLastReadString(), state.makeIncludeStack(), ex.getCause());
+    result.setStackTrace(ex.getStackTrace());
+    return result;
+  }
 
-    final FilePositionInfo[] stack;
-    final String sourceLine;
+  @Nullable
+  private ExpressionItem readExpressionItems(@Nonnull final ExpressionSource source, @Nonnull final ExpressionTree tree, @Nonnull final PreprocessorContext context, final boolean insideBracket, final boolean argument) {
+    boolean working = true;
 
-    final PreprocessingState state = context.getPreprocessingState();
-    stack = state.makeIncludeStack();
-    sourceLine = state.getLastReadString();
+    ExpressionItem result = null;
 
     ExpressionItem prev = null;
 
     while (working) {
-      final ExpressionItem nextItem = nextItem(reader, context);
+      final ExpressionItem nextItem = nextItem(source, context);
       if (nextItem == null) {
         working = false;
         result = null;
@@ -172,8 +234,8 @@ public final class ExpressionParser {
           }
 
           final ExpressionTree subExpression;
-          subExpression = new ExpressionTree(stack, sourceLine);
-          if (SpecialItem.BRACKET_CLOSING != readExpression(reader, subExpression, context, true, false)) {
+          subExpression = new ExpressionTree();
+          if (SpecialItem.BRACKET_CLOSING != readExpressionItems(source, subExpression, context, true, false)) {
             final String text = "Detected unclosed bracket";
             throw context.makeException(text, null);
           }
@@ -183,7 +245,7 @@ public final class ExpressionParser {
         }
       } else if (nextItem.getExpressionItemType() == ExpressionItemType.FUNCTION) {
         final AbstractFunction function = (AbstractFunction) nextItem;
-        ExpressionTree functionTree = readFunction(function, reader, context, stack, sourceLine);
+        ExpressionTree functionTree = readFunction(function, source, context);
         tree.addTree(functionTree);
       } else {
         tree.addItem(nextItem);
@@ -196,17 +258,14 @@ public final class ExpressionParser {
   /**
    * The auxiliary method allows to form a function and its arguments as a tree
    *
-   * @param function     the function which arguments will be read from the stream, must not be null
-   * @param reader       the reader to be used as the character source, must not be null
+   * @param function     the function which arguments will be read from the source, must not be null
+   * @param source       the source to be used as the character source, must not be null
    * @param context      a preprocessor context, it will be used for a user functions and variables
-   * @param includeStack the current file include stack, can be null
-   * @param sources      the current source line, can be null
    * @return an expression tree containing parsed function arguments
-   * @throws IOException it will be thrown if there is any problem to read chars
    */
   @Nonnull
-  private ExpressionTree readFunction(@Nonnull final AbstractFunction function, @Nonnull final PushbackReader reader, @Nonnull final PreprocessorContext context, @Nullable @MustNotContainNull final FilePositionInfo[] includeStack, @Nullable final String sources) throws IOException {
-    final ExpressionItem expectedBracket = nextItem(reader, context);
+  private ExpressionTree readFunction(@Nonnull final AbstractFunction function, @Nonnull final ExpressionSource source, @Nonnull final PreprocessorContext context) {
+    final ExpressionItem expectedBracket = nextItem(source, context);
     if (expectedBracket == null) {
       throw context.makeException("Detected function without params [" + function.getName() + ']', null);
     }
@@ -216,22 +275,22 @@ public final class ExpressionParser {
     ExpressionTree functionTree;
 
     if (arity == 0) {
-      final ExpressionTree subExpression = new ExpressionTree(includeStack, sources);
-      final ExpressionItem lastItem = readFunctionArgument(reader, subExpression, context, includeStack, sources);
+      final ExpressionTree subExpression = new ExpressionTree();
+      final ExpressionItem lastItem = readFunctionArgument(source, subExpression, context);
       if (SpecialItem.BRACKET_CLOSING != lastItem) {
         throw context.makeException("There is not closing bracket for function [" + function.getName() + ']', null);
       } else if (!subExpression.getRoot().isEmptySlot()) {
         throw context.makeException("The function \'" + function.getName() + "\' doesn't need arguments", null);
       } else {
-        functionTree = new ExpressionTree(includeStack, sources);
+        functionTree = new ExpressionTree();
         functionTree.addItem(function);
       }
     } else {
 
       final List<ExpressionTree> arguments = new ArrayList<>(arity);
       for (int i = 0; i < function.getArity(); i++) {
-        final ExpressionTree subExpression = new ExpressionTree(includeStack, sources);
-        final ExpressionItem lastItem = readFunctionArgument(reader, subExpression, context, includeStack, sources);
+        final ExpressionTree subExpression = new ExpressionTree();
+        final ExpressionItem lastItem = readFunctionArgument(source, subExpression, context);
 
         if (SpecialItem.BRACKET_CLOSING == lastItem) {
           arguments.add(subExpression);
@@ -243,7 +302,7 @@ public final class ExpressionParser {
         }
       }
 
-      functionTree = new ExpressionTree(includeStack, sources);
+      functionTree = new ExpressionTree();
       functionTree.addItem(function);
       ExpressionTreeElement functionTreeElement = functionTree.getRoot();
 
@@ -259,28 +318,25 @@ public final class ExpressionParser {
   /**
    * The auxiliary method allows to read a function argument
    *
-   * @param reader    a reader to be the character source, must not be null
+   * @param source    a source to be the character source, must not be null
    * @param tree      the result tree to be filled by read items, must not be null
    * @param context   a preprocessor context
-   * @param callStack the current file call stack, can be null
-   * @param source    the current source line, can be null
    * @return the last read expression item (a comma or a bracket)
-   * @throws IOException it will be thrown if there is any error during char reading from the reader
    */
   @Nullable
-  ExpressionItem readFunctionArgument(@Nonnull final PushbackReader reader, @Nonnull final ExpressionTree tree, @Nonnull final PreprocessorContext context, @Nullable @MustNotContainNull final FilePositionInfo[] callStack, @Nullable final String source) throws IOException {
+  ExpressionItem readFunctionArgument(@Nonnull final ExpressionSource source, @Nonnull final ExpressionTree tree, @Nonnull final PreprocessorContext context) {
     boolean working = true;
     ExpressionItem result = null;
     while (working) {
-      final ExpressionItem nextItem = nextItem(reader, context);
+      final ExpressionItem nextItem = nextItem(source, context);
       if (nextItem == null) {
         throw context.makeException("Non-closed function detected", null);
       } else if (SpecialItem.COMMA == nextItem) {
         result = nextItem;
         working = false;
       } else if (SpecialItem.BRACKET_OPENING == nextItem) {
-        final ExpressionTree subExpression = new ExpressionTree(callStack, source);
-        if (SpecialItem.BRACKET_CLOSING != readExpression(reader, subExpression, context, true, false)) {
+        final ExpressionTree subExpression = new ExpressionTree();
+        if (SpecialItem.BRACKET_CLOSING != readExpressionItems(source, subExpression, context, true, false)) {
           throw context.makeException("Non-closed bracket inside a function argument detected", null);
         }
         tree.addTree(subExpression);
@@ -289,7 +345,7 @@ public final class ExpressionParser {
         working = false;
       } else if (nextItem.getExpressionItemType() == ExpressionItemType.FUNCTION) {
         final AbstractFunction function = (AbstractFunction) nextItem;
-        ExpressionTree functionTree = readFunction(function, reader, context, callStack, source);
+        ExpressionTree functionTree = readFunction(function, source, context);
         tree.addTree(functionTree);
       } else {
         tree.addItem(nextItem);
@@ -298,12 +354,12 @@ public final class ExpressionParser {
     return result;
   }
 
-  private int hex2int(@Nonnull final PreprocessorContext context, final char chr) {
+  private static int hex2int(@Nonnull final PreprocessorContext context, final char chr) {
     final int result;
     if (Character.isDigit(chr)) {
       result = chr - '0';
     } else {
-      result = 10 + (chr - Character.toLowerCase(chr) - 'a');
+      result = 10 + (Character.toLowerCase(chr) - 'a');
       if (result < 10 || result > 15) {
         throw context.makeException("Unexpected hex digit detected: " + chr, null);
       }
@@ -311,312 +367,273 @@ public final class ExpressionParser {
     return result;
   }
 
+  private static boolean equalsIgnoreCase(@Nonnull final char[] chars, final int start, final int length, @Nonnull final String lowerCased) {
+    if (length != lowerCased.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (Character.toLowerCase(chars[start + i]) != lowerCased.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
-   * Read the next item from the reader
+   * Read the next item from the source
    *
-   * @param reader  a reader to be used as the char source, must not be null
+   * @param source  a source to be used as the char source, must not be null
    * @param context a preprocessor context
    * @return a read expression item, it can be null if the end is reached
-   * @throws IOException it will be thrown if there is any error during a char reading
    */
   @Nullable
-  ExpressionItem nextItem(@Nonnull final PushbackReader reader, @Nonnull final PreprocessorContext context) throws IOException {
-    assertNotNull("Reader is null", reader);
+  ExpressionItem nextItem(@Nonnull final ExpressionSource source, @Nonnull final PreprocessorContext context) {
+    assertNotNull("Source is null", source);
 
-    ParserState state = ParserState.WAIT;
-    final StringBuilder builder = new StringBuilder(12);
+    final char[] chars = source.chars;
+    int pos = source.position;
 
-    boolean found = false;
-    char unicodeChar = 0;
+    while (pos < chars.length && Character.isWhitespace(chars[pos])) {
+      pos++;
+    }
 
-    while (!found) {
-      final int data = reader.read();
+    if (pos == chars.length) {
+      source.position = pos;
+      return null;
+    }
 
-      if (data < 0) {
-        if (state != ParserState.WAIT) {
-          found = true;
+    final char chr = chars[pos];
+    source.position = pos + 1;
+
+    switch (chr) {
+      case ',':
+        return SpecialItem.COMMA;
+      case '(':
+        return SpecialItem.BRACKET_OPENING;
+      case ')':
+        return SpecialItem.BRACKET_CLOSING;
+      case '\"':
+        return readString(source, context);
+      case '.':
+        return readNumber(source, pos);
+      default: {
+        if (Character.isDigit(chr)) {
+          return readNumber(source, pos);
+        } else if (Character.isLetter(chr) || chr == '$' || chr == '_') {
+          return readIdentifier(source, pos, context);
+        } else if (isOperatorChar(chr)) {
+          return readOperator(source, pos, context);
+        } else {
+          throw context.makeException("Unsupported token character detected \'" + chr + '\'', null);
         }
-        break;
       }
+    }
+  }
 
-      final char chr = (char) data;
-
-      switch (state) {
-        case WAIT: {
-          if (Character.isWhitespace(chr)) {
-            // do nothing
-          } else if (chr == ',') {
-            return SpecialItem.COMMA;
-          } else if (chr == '(') {
-            return SpecialItem.BRACKET_OPENING;
-          } else if (chr == ')') {
-            return SpecialItem.BRACKET_CLOSING;
-          } else if (Character.isDigit(chr)) {
-            builder.append(chr);
-            if (chr == '0') {
-              state = ParserState.HEX_NUMBER;
-            } else {
-              state = ParserState.NUMBER;
-            }
-          } else if (chr == '.') {
-            builder.append('.');
-            state = ParserState.FLOAT_NUMBER;
-          } else if (Character.isLetter(chr) || chr == '$' || chr == '_') {
-            builder.append(chr);
-            state = ParserState.VALUE_OR_FUNCTION;
-          } else if (chr == '\"') {
-            state = ParserState.STRING;
-          } else if (isOperatorChar(chr)) {
-            builder.append(chr);
-            state = ParserState.OPERATOR;
-          } else {
-            throw context.makeException("Unsupported token character detected \'" + chr + '\'', null);
-          }
-        }
-        break;
-        case OPERATOR: {
-          if (!isOperatorChar(chr) || isDelimiter(chr)) {
-            reader.unread(data);
-            found = true;
-          } else {
-            builder.append(chr);
-          }
-        }
-        break;
-        case FLOAT_NUMBER: {
-          if (Character.isDigit(chr)) {
-            builder.append(chr);
-          } else {
-            found = true;
-            reader.unread(data);
-          }
-        }
-        break;
-        case HEX_NUMBER: {
-          if (builder.length() == 1) {
-            if (chr == 'X' || chr == 'x') {
-              builder.append(chr);
-            } else if (chr == '.') {
-              builder.append(chr);
-              state = ParserState.FLOAT_NUMBER;
-            } else if (Character.isDigit(chr)) {
-              state = ParserState.NUMBER;
-            } else {
-              state = ParserState.NUMBER;
-              found = true;
-              reader.unread(data);
-            }
-          } else if (Character.isDigit(chr) || (chr >= 'a' && chr <= 'f') || (chr >= 'A' && chr <= 'F')) {
-            builder.append(chr);
-          } else {
-            found = true;
-            reader.unread(data);
-          }
-        }
-        break;
-        case UNICODE_DIGIT0:
-          unicodeChar = (char) (hex2int(context, chr) << 12);
-          state = ParserState.UNICODE_DIGIT1;
-          break;
-        case UNICODE_DIGIT1:
-          unicodeChar = (char) (unicodeChar | (hex2int(context, chr) << 8));
-          state = ParserState.UNICODE_DIGIT2;
-          break;
-        case UNICODE_DIGIT2:
-          unicodeChar = (char) (unicodeChar | (hex2int(context, chr) << 4));
-          state = ParserState.UNICODE_DIGIT3;
-          break;
-        case UNICODE_DIGIT3:
-          unicodeChar = (char) (unicodeChar | hex2int(context, chr));
-          state = ParserState.STRING;
-          builder.append(unicodeChar);
-          break;
-        case NUMBER: {
-          if (Character.isDigit(chr)) {
-            builder.append(chr);
-          } else if (chr == '.') {
-            builder.append(chr);
-            state = ParserState.FLOAT_NUMBER;
-          } else {
-            reader.unread(data);
-            found = true;
-          }
-        }
-        break;
-        case VALUE_OR_FUNCTION: {
-          if (Character.isWhitespace(chr) || isDelimiterOrOperatorChar(chr)) {
-            reader.unread(data);
-            found = true;
-          } else {
-            builder.append(chr);
-          }
-        }
-        break;
-        case SPECIAL_CHAR: {
-          switch (chr) {
-            case 'n':
-              builder.append('\n');
-              break;
-            case 't':
-              builder.append('\t');
-              break;
-            case 'b':
-              builder.append('\b');
-              break;
-            case 'f':
-              builder.append('\f');
-              break;
-            case 'r':
-              builder.append('\r');
-              break;
-            case '\\':
-              builder.append('\\');
-              break;
-            case '\"':
-              builder.append('\"');
-              break;
-            case '\'':
-              builder.append('\'');
-              break;
-            case 'u':
-              state = ParserState.UNICODE_DIGIT0;
-              break;
-            default: {
-              throw context.makeException("Unsupported special char detected \'\\" + chr + '\'', null);
-            }
-          }
-          state = state == ParserState.SPECIAL_CHAR ? ParserState.STRING : state;
-        }
+  @Nonnull
+  private static Value readNumber(@Nonnull final ExpressionSource source, final int start) {
+    final char[] chars = source.chars;
+    int pos = start;
+
+    if (chars[pos] == '0' && pos + 1 < chars.length && (chars[pos + 1] == 'x' || chars[pos + 1] == 'X')) {
+      pos += 2;
+      while (pos < chars.length && isHexDigit(chars[pos])) {
+        pos++;
+      }
+      source.position = pos;
+      return Value.valueOf(parseLong(chars, start + 2, pos, 16, MAX_SAFE_HEX_DIGITS));
+    }
+
+    while (pos < chars.length && Character.isDigit(chars[pos])) {
+      pos++;
+    }
+
+    if (pos < chars.length && chars[pos] == '.') {
+      pos++;
+      while (pos < chars.length && Character.isDigit(chars[pos])) {
+        pos++;
+      }
+      source.position = pos;
+      return Value.valueOf(Float.parseFloat(new String(chars, start, pos - start)));
+    }
+
+    source.position = pos;
+    return Value.valueOf(parseLong(chars, start, pos, 10, MAX_SAFE_DECIMAL_DIGITS));
+  }
+
+  private static long parseLong(@Nonnull final char[] chars, final int start, final int end, final int radix, final int maxSafeDigits) {
+    final int digits = end - start;
+    if (digits == 0 || digits > maxSafeDigits) {
+      // empty and too long numbers are processed by JDK to get the same error or overflow check
+      return Long.parseLong(new String(chars, start, digits), radix);
+    }
+    long result = 0L;
+    for (int i = start; i < end; i++) {
+      result = result * radix + Character.digit(chars[i], radix);
+    }
+    return result;
+  }
+
+  @Nonnull
+  private static Value readString(@Nonnull final ExpressionSource source, @Nonnull final PreprocessorContext context) {
+    final char[] chars = source.chars;
+    final int start = source.position;
+    int pos = start;
+
+    while (pos < chars.length) {
+      final char chr = chars[pos];
+      if (chr == '\"') {
+        source.position = pos + 1;
+        return Value.valueOf(new String(chars, start, pos - start));
+      } else if (chr == '\\') {
         break;
-        case STRING: {
-          switch (chr) {
-            case '\"': {
-              found = true;
-            }
+      }
+      pos++;
+    }
+
+    final StringBuilder builder = new StringBuilder(pos - start + 16);
+    builder.append(chars, start, pos - start);
+
+    while (pos < chars.length) {
+      final char chr = chars[pos++];
+      if (chr == '\"') {
+        source.position = pos;
+        return Value.valueOf(builder.toString());
+      } else if (chr != '\\') {
+        builder.append(chr);
+      } else if (pos < chars.length) {
+        final char special = chars[pos++];
+        switch (special) {
+          case 'n':
+            builder.append('\n');
             break;
-            case '\\': {
-              state = ParserState.SPECIAL_CHAR;
-            }
+          case 't':
+            builder.append('\t');
             break;
-            default: {
-              builder.append(chr);
-            }
+          case 'b':
+            builder.append('\b');
+            break;
+          case 'f':
+            builder.append('\f');
+            break;
+          case 'r':
+            builder.append('\r');
+            break;
+          case '\\':
+            builder.append('\\');
             break;
+          case '\"':
+            builder.append('\"');
+            break;
+          case '\'':
+            builder.append('\'');
+            break;
+          case 'u': {
+            int unicodeChar = 0;
+            for (int i = 0; i < 4; i++) {
+              if (pos == chars.length) {
+                throw context.makeException("Non-completed unicode char has been detected", null);
+              }
+              unicodeChar = (unicodeChar << 4) | hex2int(context, chars[pos++]);
+            }
+            builder.append((char) unicodeChar);
+          }
+          break;
+          default: {
+            throw context.makeException("Unsupported special char detected \'\\" + special + '\'', null);
           }
         }
-        break;
-        default:
-          throw new Error("Unsupported parser state [" + state.name() + ']');
       }
     }
+    throw context.makeException("Non-closed string has been detected", null);
+  }
 
-    if (!found) {
-      switch (state) {
-        case UNICODE_DIGIT0:
-        case UNICODE_DIGIT1:
-        case UNICODE_DIGIT2: {
-          throw context.makeException("Non-completed unicode char has been detected", null);
-        }
-        case SPECIAL_CHAR:
-        case STRING: {
-          throw context.makeException("Non-closed string has been detected", null);
-        }
-        default:
-          return null;
-      }
-    } else {
-      ExpressionItem result = null;
-      switch (state) {
-        case FLOAT_NUMBER: {
-          result = Value.valueOf(Float.parseFloat(builder.toString()));
-        }
-        break;
-        case HEX_NUMBER: {
-          final String text = builder.toString();
-          if ("0".equals(text)) {
-            result = Value.INT_ZERO;
-          } else {
-            final String str = PreprocessorUtils.extractTail("0x", text);
-            result = Value.valueOf(Long.parseLong(str, 16));
-          }
-        }
-        break;
-        case NUMBER: {
-          result = Value.valueOf(Long.parseLong(builder.toString()));
-        }
+  @Nonnull
+  private static ExpressionItem readIdentifier(@Nonnull final ExpressionSource source, final int start, @Nonnull final PreprocessorContext context) {
+    final char[] chars = source.chars;
+    int pos = start;
+    boolean lowerCased = true;
+
+    while (pos < chars.length) {
+      final char chr = chars[pos];
+      if (Character.isWhitespace(chr) || isDelimiterOrOperatorChar(chr)) {
         break;
-        case OPERATOR: {
-          final String operatorLC = builder.toString().toLowerCase(Locale.ENGLISH);
-          for (final AbstractOperator operator : AbstractOperator.getAllOperators()) {
-            if (operator.getKeyword().equals(operatorLC)) {
-              result = operator;
-              break;
-            }
-          }
+      }
+      lowerCased &= Character.toLowerCase(chr) == chr;
+      pos++;
+    }
+    source.position = pos;
 
-          if (result == null) {
-            throw context.makeException("Unknown operator detected \'" + operatorLC + '\'', null);
-          }
-        }
-        break;
-        case STRING: {
-          result = Value.valueOf(builder.toString());
-        }
-        break;
-        case VALUE_OR_FUNCTION: {
-          final String str = builder.toString().toLowerCase();
-          if (str.charAt(0) == '$') {
+    final int length = pos - start;
 
-            assertNotNull("There is not a preprocessor context to define a user function [" + str + ']', context);
+    if (chars[start] == '$') {
+      final PreprocessorExtension extension = context.getPreprocessorExtension();
+      final String userFunctionName = makeName(chars, start + 1, length - 1, lowerCased);
+      if (extension == null) {
+        throw context.makeException("There is not any defined preprocessor extension to get data about user functions [$" + userFunctionName + ']', null);
+      }
+      // user defined
+      return new FunctionDefinedByUser(userFunctionName, extension.getUserFunctionArity(userFunctionName), context);
+    } else if (equalsIgnoreCase(chars, start, length, "true")) {
+      return Value.BOOLEAN_TRUE;
+    } else if (equalsIgnoreCase(chars, start, length, "false")) {
+      return Value.BOOLEAN_FALSE;
+    } else {
+      final String name = makeName(chars, start, length, lowerCased);
+      final AbstractFunction function = AbstractFunction.getFunctionNameMap().get(name);
+      return function == null ? new Variable(name, context.getVariableSlotRegistry()) : function;
+    }
+  }
 
-            final PreprocessorExtension extension = context.getPreprocessorExtension();
-            if (extension == null) {
-              throw context.makeException("There is not any defined preprocessor extension to get data about user functions [" + str + ']', null);
-            }
+  @Nonnull
+  private static String makeName(@Nonnull final char[] chars, final int start, final int length, final boolean lowerCased) {
+    final String name = new String(chars, start, length);
+    return lowerCased ? name : name.toLowerCase(Locale.ENGLISH);
+  }
 
-            final String userFunctionName = PreprocessorUtils.extractTail("$", str);
+  @Nonnull
+  private static AbstractOperator readOperator(@Nonnull final ExpressionSource source, final int start, @Nonnull final PreprocessorContext context) {
+    final char[] chars = source.chars;
+    int pos = start + 1;
+    while (pos < chars.length && isOperatorChar(chars[pos])) {
+      pos++;
+    }
+    source.position = pos;
 
-            // user defined
-            result = new FunctionDefinedByUser(userFunctionName, extension.getUserFunctionArity(userFunctionName), context);
-          } else if ("true".equals(str)) {
-            result = Value.BOOLEAN_TRUE;
-          } else if ("false".equals(str)) {
-            result = Value.BOOLEAN_FALSE;
-          } else {
-            final AbstractFunction function = AbstractFunction.findForName(str);
-            if (function == null) {
-              result = new Variable(str);
-            } else {
-              result = function;
-            }
-          }
-        }
-        break;
-        default: {
-          throw new Error("Unsupported final parser state detected [" + state.name() + ']');
+    AbstractOperator result = null;
+    switch (pos - start) {
+      case 1: {
+        result = SINGLE_CHAR_OPERATORS[chars[start]];
+      }
+      break;
+      case 2: {
+        final AbstractOperator operator = TWO_CHAR_OPERATORS[chars[start]];
+        if (operator != null && operator.getKeyword().charAt(1) == chars[start + 1]) {
+          result = operator;
         }
       }
-      return result;
+      break;
+    }
+
+    if (result == null) {
+      throw context.makeException("Unknown operator detected \'" + new String(chars, start, pos - start) + '\'', null);
     }
+    return result;
   }
 
   /**
-   * Internal parser states.
+   * Chars of a parsed expression and current read position, it is used by the parser instead of a reader to avoid any IO.
+   *
+   * @since 7.0.3
    */
-  private enum ParserState {
-
-    WAIT,
-    NUMBER,
-    HEX_NUMBER,
-    FLOAT_NUMBER,
-    STRING,
-    SPECIAL_CHAR,
-    UNICODE_DIGIT0,
-    UNICODE_DIGIT1,
-    UNICODE_DIGIT2,
-    UNICODE_DIGIT3,
-    VALUE_OR_FUNCTION,
-    OPERATOR
+  public static final class ExpressionSource {
+
+    private final char[] chars;
+    private int position;
+
+    public ExpressionSource(@Nonnull final String text) {
+      this.chars = assertNotNull("Text is null", text).toCharArray();
+    }
   }
 
   /**
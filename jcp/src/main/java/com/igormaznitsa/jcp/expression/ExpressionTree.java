@@ -21,7 +21,7 @@
 
 package com.igormaznitsa.jcp.expression;
 
-import com.igormaznitsa.jcp.context.PreprocessingState;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.meta.annotation.MustNotContainNull;
@@ -38,17 +38,22 @@ import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
  */
 public class ExpressionTree {
 
-  private final FilePositionInfo[] includeStack;
-  private final String sources;
   private ExpressionTreeElement last = ExpressionTreeElement.EMPTY_SLOT;
+  private volatile CompiledExpression compiled;
 
   public ExpressionTree() {
-    this(null, null);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param callStack ignored, the tree doesn't keep source position
+   * @param sources   ignored, the tree doesn't keep source position
+   * @deprecated source position is added by the expression parser only when an error is detected, use {@link #ExpressionTree()}
+   */
+  @Deprecated
   public ExpressionTree(@Nullable @MustNotContainNull final FilePositionInfo[] callStack, @Nullable final String sources) {
-    this.includeStack = callStack == null ? PreprocessingState.EMPTY_STACK : callStack;
-    this.sources = sources == null ? "" : sources;
+    this();
   }
 
   /**
@@ -67,13 +72,13 @@ public class ExpressionTree {
    */
   public void addItem(@Nonnull final ExpressionItem item) {
     if (item == null) {
-      throw new PreprocessorException("[Expression]Item is null", this.sources, this.includeStack, null);
+      throw new PreprocessorException("[Expression]Item is null", null, null, null);
     }
 
     if (last.isEmptySlot()) {
-      last = new ExpressionTreeElement(item, this.includeStack, this.sources);
+      last = new ExpressionTreeElement(item);
     } else {
-      last = last.addTreeElement(new ExpressionTreeElement(item, this.includeStack, this.sources));
+      last = last.addTreeElement(new ExpressionTreeElement(item));
     }
   }
 
@@ -118,6 +123,49 @@ public class ExpressionTree {
     return ExpressionTreeElement.EMPTY_SLOT;
   }
 
+  /**
+   * Replace constant sub-trees by their values, operators and pure functions with constant arguments are calculated.
+   * It should be called only for completely formed and post-processed trees.
+   *
+   * @param context a preprocessor context to be provided to functions, must not be null
+   * @see ExpressionTreeElement#foldConstants(PreprocessorContext)
+   * @since 7.0.3
+   */
+  public void foldConstants(@Nonnull final PreprocessorContext context) {
+    final ExpressionTreeElement root = getRoot();
+    if (!root.isEmptySlot()) {
+      root.foldConstants(context);
+    }
+  }
+
+  /**
+   * Get compiled form of the tree if it has been made.
+   *
+   * @return compiled form or null if the tree has not been compiled
+   * @see #compile()
+   * @since 7.0.3
+   */
+  @Nullable
+  public CompiledExpression getCompiled() {
+    return this.compiled;
+  }
+
+  /**
+   * Make compiled form of the tree, it should be called only for completely formed and post-processed trees which are not changed anymore.
+   *
+   * @return compiled form or null if the tree can't be compiled
+   * @since 7.0.3
+   */
+  @Nullable
+  public CompiledExpression compile() {
+    CompiledExpression result = this.compiled;
+    if (result == null) {
+      result = CompiledExpression.compile(this);
+      this.compiled = result;
+    }
+    return result;
+  }
+
   /**
    * It can be called after the tree has been formed to optimize inside structures
    */
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.functions.FunctionDefinedByUser;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
+
+/**
+ * Bounded cache of parsed expression trees identified by trimmed expression text, the least recently used trees are removed when the number of cached trees exceeds the limit.
+ * Cached trees are not changed during evaluation and they are shared, include stack and source line for evaluation are taken from the current preprocessing state.
+ * Constant sub-trees are folded and trees are compiled before caching because cached trees are expected to be evaluated many times.
+ * Trees which contain user defined functions are not cached because their arity is provided by preprocessor extension. The class is thread-safe.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.0.3
+ */
+public final class ExpressionTreeCache {
+
+  public static final int DEFAULT_MAX_SIZE = 4096;
+
+  private final int maxSize;
+  private final Map<String, ExpressionTree> trees = new LinkedHashMap<>(256, 0.75f, true);
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public ExpressionTreeCache() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param maxSize max number of cached trees, zero or negative value disables caching
+   */
+  public ExpressionTreeCache(final int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  private static boolean hasUserFunction(@Nonnull final ExpressionTreeElement element) {
+    if (element.isEmptySlot()) {
+      return false;
+    }
+    if (element.getItem() instanceof FunctionDefinedByUser) {
+      return true;
+    }
+    for (int i = 0; i < element.getArity(); i++) {
+      if (hasUserFunction(element.getChildForIndex(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Get parsed tree for an expression, the expression is parsed only if there is not cached tree for it.
+   *
+   * @param expression the expression text, must not be null
+   * @param context    the preprocessor context to be used for parsing, must not be null
+   * @return the parsed tree, must not be null and must not be changed
+   * @see ExpressionParser#parse(String, PreprocessorContext)
+   */
+  @Nonnull
+  public ExpressionTree parse(@Nonnull final String expression, @Nonnull final PreprocessorContext context) {
+    assertNotNull("Expression is null", expression);
+
+    if (this.maxSize <= 0) {
+      this.misses.incrementAndGet();
+      return ExpressionParser.getInstance().parse(expression, context);
+    }
+
+    final String key = expression.trim();
+    final ExpressionTree cached = find(key);
+    if (cached != null) {
+      this.hits.incrementAndGet();
+      return cached;
+    }
+
+    this.misses.incrementAndGet();
+
+    final ExpressionTree tree = ExpressionParser.getInstance().parse(expression, context);
+    if (!hasUserFunction(tree.getRoot())) {
+      tree.foldConstants(context);
+      tree.compile();
+      synchronized (this.trees) {
+        this.trees.put(key, tree);
+        final Iterator<ExpressionTree> iterator = this.trees.values().iterator();
+        while (this.trees.size() > this.maxSize && iterator.hasNext()) {
+          iterator.next();
+          iterator.remove();
+        }
+      }
+    }
+    return tree;
+  }
+
+  @Nullable
+  private ExpressionTree find(@Nonnull final String key) {
+    synchronized (this.trees) {
+      return this.trees.get(key);
+    }
+  }
+
+  /**
+   * Remove all cached trees.
+   */
+  public void clear() {
+    synchronized (this.trees) {
+      this.trees.clear();
+    }
+  }
+
+  /**
+   * Get number of cached trees.
+   *
+   * @return number of cached trees
+   */
+  public int size() {
+    synchronized (this.trees) {
+      return this.trees.size();
+    }
+  }
+
+  public long getHits() {
+    return this.hits.get();
+  }
+
+  public long getMisses() {
+    return this.misses.get();
+  }
+}
@@ -21,15 +21,25 @@
 
 package com.igormaznitsa.jcp.expression;
 
-import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
 import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
+import com.igormaznitsa.jcp.expression.operators.OperatorAND;
+import com.igormaznitsa.jcp.expression.operators.OperatorEQU;
+import com.igormaznitsa.jcp.expression.operators.OperatorGREAT;
+import com.igormaznitsa.jcp.expression.operators.OperatorGREATEQU;
+import com.igormaznitsa.jcp.expression.operators.OperatorLESS;
+import com.igormaznitsa.jcp.expression.operators.OperatorLESSEQU;
+import com.igormaznitsa.jcp.expression.operators.OperatorNOT;
+import com.igormaznitsa.jcp.expression.operators.OperatorNOTEQU;
+import com.igormaznitsa.jcp.expression.operators.OperatorOR;
 import com.igormaznitsa.jcp.expression.operators.OperatorSUB;
 import com.igormaznitsa.meta.annotation.MustNotContainNull;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
 import java.util.Arrays;
 import java.util.List;
 
@@ -51,14 +61,6 @@ public class ExpressionTreeElement {
    * Empty array to avoid unnecessary operations
    */
   private static final ExpressionTreeElement[] EMPTY = new ExpressionTreeElement[0];
-  /**
-   * Contains the source string for the expression.
-   */
-  private final String sourceString;
-  /**
-   * Current include stack of the preprocessor to the source string.
-   */
-  private final FilePositionInfo[] includeStack;
   /**
    * The variable contains the wrapped expression item
    */
@@ -81,23 +83,17 @@ public class ExpressionTreeElement {
   private int nextChildSlot = 0;
 
   private ExpressionTreeElement() {
-    this.sourceString = "";
-    this.includeStack = new FilePositionInfo[0];
   }
 
   /**
-   * The constructor
+   * The constructor. Elements don't keep source position, errors are thrown as exceptions without processing string and include stack,
+   * the position is added by the expression parser only if an error has been thrown.
    *
-   * @param item         an expression item to be wrapped
-   * @param callStack    current call stack
-   * @param sourceString source string for the expression
+   * @param item an expression item to be wrapped
    */
-  ExpressionTreeElement(@Nonnull final ExpressionItem item, @Nonnull @MustNotContainNull final FilePositionInfo[] callStack, @Nullable final String sourceString) {
-    this.sourceString = sourceString;
-    this.includeStack = callStack;
-
+  ExpressionTreeElement(@Nonnull final ExpressionItem item) {
     if (item == null) {
-      throw new PreprocessorException("[Expression]The item is null", this.sourceString, this.includeStack, null);
+      throw new PreprocessorException("[Expression]The item is null", null, null, null);
     }
 
     int arity = 0;
@@ -201,11 +197,11 @@ public class ExpressionTreeElement {
     assertNotEmptySlot();
 
     if (oldOne == null) {
-      throw new PreprocessorException("[Expression]The old element is null", this.sourceString, this.includeStack, null);
+      throw new PreprocessorException("[Expression]The old element is null", null, null, null);
     }
 
     if (newOne == null) {
-      throw new PreprocessorException("[Expression]The new element is null", this.sourceString, this.includeStack, null);
+      throw new PreprocessorException("[Expression]The new element is null", null, null, null);
     }
 
     boolean result = false;
@@ -269,7 +265,7 @@ public class ExpressionTreeElement {
         parentTreeElement.replaceElement(this, element);
       }
       if (element.nextChildSlot >= element.childElements.length) {
-        throw new PreprocessorException("[Expression]Can't process expression item, may be wrong number of arguments", this.sourceString, this.includeStack, null);
+        throw new PreprocessorException("[Expression]Can't process expression item, may be wrong number of arguments", null, null, null);
       }
       element.childElements[element.nextChildSlot] = this;
       element.nextChildSlot++;
@@ -311,26 +307,26 @@ public class ExpressionTreeElement {
     assertNotEmptySlot();
 
     if (arguments == null) {
-      throw new PreprocessorException("[Expression]Argument list is null", this.sourceString, this.includeStack, null);
+      throw new PreprocessorException("[Expression]Argument list is null", null, null, null);
     }
 
     if (childElements.length != arguments.size()) {
-      throw new PreprocessorException("Wrong argument list size", this.sourceString, this.includeStack, null);
+      throw new PreprocessorException("Wrong argument list size", null, null, null);
     }
 
     int i = 0;
     for (ExpressionTree arg : arguments) {
       if (arg == null) {
-        throw new PreprocessorException("[Expression]Argument [" + (i + 1) + "] is null", this.sourceString, this.includeStack, null);
+        throw new PreprocessorException("[Expression]Argument [" + (i + 1) + "] is null", null, null, null);
       }
 
       if (!childElements[i].isEmptySlot()) {
-        throw new PreprocessorException("[Expression]Non-empty slot detected, it is possible that there is a program error, contact a developer please", this.sourceString, this.includeStack, null);
+        throw new PreprocessorException("[Expression]Non-empty slot detected, it is possible that there is a program error, contact a developer please", null, null, null);
       }
 
       final ExpressionTreeElement root = arg.getRoot();
       if (root.isEmptySlot()) {
-        throw new PreprocessorException("[Expression]Empty argument [" + (i + 1) + "] detected", this.sourceString, this.includeStack, null);
+        throw new PreprocessorException("[Expression]Empty argument [" + (i + 1) + "] detected", null, null, null);
       }
       childElements[i] = root;
       root.parentTreeElement = this;
@@ -346,13 +342,13 @@ public class ExpressionTreeElement {
    */
   private void addElementToNextFreeSlot(@Nonnull final ExpressionTreeElement element) {
     if (element == null) {
-      throw new PreprocessorException("[Expression]Element is null", this.sourceString, this.includeStack, null);
+      throw new PreprocessorException("[Expression]Element is null", null, null, null);
     }
 
     if (childElements.length == 0) {
-      throw new PreprocessorException("[Expression]Unexpected element, may be unknown function [" + savedItem.toString() + ']', this.sourceString, this.includeStack, null);
+      throw new PreprocessorException("[Expression]Unexpected element, may be unknown function [" + savedItem.toString() + ']', null, null, null);
     } else if (isFull()) {
-      throw new PreprocessorException("[Expression]There is not any possibility to add new argument [" + savedItem.toString() + ']', this.sourceString, this.includeStack, null);
+      throw new PreprocessorException("[Expression]There is not any possibility to add new argument [" + savedItem.toString() + ']', null, null, null);
     } else {
       childElements[nextChildSlot++] = element;
     }
@@ -376,13 +372,13 @@ public class ExpressionTreeElement {
                 switch (val.getType()) {
                   case INT: {
                     childElements = EMPTY;
-                    savedItem = Value.valueOf(0 - val.asLong());
+                    savedItem = Value.valueOf(-val.longValue());
                     makeMaxPriority();
                   }
                   break;
                   case FLOAT: {
                     childElements = EMPTY;
-                    savedItem = Value.valueOf(0.0f - val.asFloat());
+                    savedItem = Value.valueOf(-val.floatValue());
                     makeMaxPriority();
                   }
                   break;
@@ -421,4 +417,174 @@ public class ExpressionTreeElement {
       }
     }
   }
+
+  /**
+   * Replace operators and pure functions which have only constant arguments by their results, children are processed before the element.
+   * If calculation of an element can't be made then the element is kept without changes, so that the error will be reported
+   * during evaluation for the original source position.
+   *
+   * @param context a preprocessor context to be provided to pure functions, must not be null
+   * @see AbstractFunction#isPure()
+   * @since 7.0.3
+   */
+  public void foldConstants(@Nonnull final PreprocessorContext context) {
+    if (this.isEmptySlot()) {
+      return;
+    }
+
+    for (final ExpressionTreeElement element : childElements) {
+      element.foldConstants(context);
+    }
+
+    final Value folded;
+    switch (savedItem.getExpressionItemType()) {
+      case OPERATOR: {
+        folded = foldOperator((AbstractOperator) savedItem);
+      }
+      break;
+      case FUNCTION: {
+        final AbstractFunction function = (AbstractFunction) savedItem;
+        folded = function.isPure() ? foldFunction(function, context) : null;
+      }
+      break;
+      default: {
+        folded = null;
+      }
+      break;
+    }
+
+    if (folded != null) {
+      childElements = EMPTY;
+      savedItem = folded;
+      makeMaxPriority();
+    }
+  }
+
+  /**
+   * Check that the element or any its child is a variable.
+   *
+   * @return true if there is any variable in the sub-tree, false otherwise
+   * @since 7.0.3
+   */
+  boolean hasVariables() {
+    if (this.isEmptySlot()) {
+      return false;
+    }
+    if (this.savedItem.getExpressionItemType() == ExpressionItemType.VARIABLE) {
+      return true;
+    }
+    for (final ExpressionTreeElement element : this.childElements) {
+      if (element.hasVariables()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check that the element result is boolean before evaluation: boolean literal, comparison, function with boolean result
+   * or logical operator with boolean arguments. Only such argument can be skipped by short-circuit operators without change of the result.
+   *
+   * @return true if the element result is always boolean, false otherwise
+   * @since 7.0.3
+   */
+  boolean isStaticBoolean() {
+    if (this.isEmptySlot()) {
+      return false;
+    }
+    switch (this.savedItem.getExpressionItemType()) {
+      case VALUE:
+        return ((Value) this.savedItem).getType() == ValueType.BOOLEAN;
+      case FUNCTION:
+        return ((AbstractFunction) this.savedItem).getResultType() == ValueType.BOOLEAN;
+      case OPERATOR: {
+        final ExpressionItem operator = this.savedItem;
+        if (operator instanceof OperatorEQU || operator instanceof OperatorNOTEQU
+            || operator instanceof OperatorLESS || operator instanceof OperatorLESSEQU
+            || operator instanceof OperatorGREAT || operator instanceof OperatorGREATEQU) {
+          return true;
+        }
+        if (operator instanceof OperatorNOT || operator instanceof OperatorAND || operator instanceof OperatorOR) {
+          if (this.childElements.length != ((AbstractOperator) operator).getArity()) {
+            return false;
+          }
+          for (final ExpressionTreeElement element : this.childElements) {
+            if (!element.isStaticBoolean()) {
+              return false;
+            }
+          }
+          return true;
+        }
+        return false;
+      }
+      default:
+        return false;
+    }
+  }
+
+  @Nullable
+  @MustNotContainNull
+  private Value[] getConstantArguments(final int arity) {
+    if (arity != childElements.length) {
+      return null;
+    }
+    final Value[] result = new Value[arity];
+    for (int i = 0; i < arity; i++) {
+      final ExpressionTreeElement element = childElements[i];
+      if (element.isEmptySlot() || element.savedItem.getExpressionItemType() != ExpressionItemType.VALUE) {
+        return null;
+      }
+      result[i] = (Value) element.savedItem;
+    }
+    return result;
+  }
+
+  @Nullable
+  private Value foldOperator(@Nonnull final AbstractOperator operator) {
+    final int arity = operator.getArity();
+    if (arity == 2 && childElements.length == 2 && !childElements[1].isEmptySlot()
+        && childElements[0].savedItem.getExpressionItemType() == ExpressionItemType.VALUE
+        && childElements[1].savedItem.getExpressionItemType() != ExpressionItemType.VALUE) {
+      // unknown variables and type errors of the second argument must be reported during evaluation
+      return childElements[1].hasVariables() || !childElements[1].isStaticBoolean() ? null : operator.shortCircuit((Value) childElements[0].savedItem);
+    }
+    final Value[] arguments = getConstantArguments(arity);
+    if (arguments == null) {
+      return null;
+    }
+    final MethodHandle executor = operator.findExecutor(arguments[0].getType(), arity == 1 ? ValueType.UNKNOWN : arguments[1].getType());
+    if (executor == null) {
+      return null;
+    }
+    try {
+      return arity == 1
+          ? ExecutorCalls.callOperator(executor, operator, arguments[0])
+          : ExecutorCalls.callOperator(executor, operator, arguments[0], arguments[1]);
+    } catch (Throwable thr) {
+      return null;
+    }
+  }
+
+  @Nullable
+  private Value foldFunction(@Nonnull final AbstractFunction function, @Nonnull final PreprocessorContext context) {
+    final Value[] arguments = getConstantArguments(function.getArity());
+    if (arguments == null) {
+      return null;
+    }
+    final ValueType[] types = new ValueType[arguments.length];
+    for (int i = 0; i < arguments.length; i++) {
+      types[i] = arguments[i].getType();
+    }
+    final int signature = function.findAllowedSignature(types);
+    final MethodHandle executor = signature < 0 ? null : function.findExecutor(signature);
+    if (executor == null) {
+      return null;
+    }
+    try {
+      final Value result = ExecutorCalls.callFunction(executor, function, context, arguments);
+      return result.getType().isCompatible(function.getResultType()) ? result : null;
+    } catch (Throwable thr) {
+      return null;
+    }
+  }
 }
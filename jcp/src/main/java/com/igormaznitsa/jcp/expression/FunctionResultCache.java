@@ -0,0 +1,229 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
+import com.igormaznitsa.meta.annotation.MustNotContainNull;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of results of pure functions called with string arguments, entries are identified by function and argument values.
+ * Weight of an entry is number of chars in its argument and result strings, the least recently used entries are removed when the total weight exceeds the limit.
+ * Calls without string arguments are not cached because their execution is cheaper than search in the cache. The class is thread-safe.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @see AbstractFunction#isPure()
+ * @since 7.0.3
+ */
+public final class FunctionResultCache {
+
+  public static final long DEFAULT_MAX_WEIGHT = 8L * 1024L * 1024L;
+
+  /**
+   * Weight added to every entry to take into account size of the entry itself.
+   */
+  private static final long ENTRY_WEIGHT = 32L;
+
+  private final long maxWeight;
+  private final Map<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private long weight;
+
+  public FunctionResultCache() {
+    this(DEFAULT_MAX_WEIGHT);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param maxWeight max total weight of cached entries, zero or negative value disables caching
+   */
+  public FunctionResultCache(final long maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  private static boolean hasStringArgument(@Nonnull @MustNotContainNull final Value[] arguments) {
+    for (final Value value : arguments) {
+      if (value.getType() == ValueType.STRING) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long weightOf(@Nonnull final Value value) {
+    return value.getType() == ValueType.STRING ? value.asString().length() : 0L;
+  }
+
+  /**
+   * Find cached result of a function call.
+   *
+   * @param function  the function, must not be null
+   * @param arguments the call arguments, must not be null
+   * @return cached result or null if the call is not cached
+   */
+  @Nullable
+  public Value find(@Nonnull final AbstractFunction function, @Nonnull @MustNotContainNull final Value[] arguments) {
+    if (this.maxWeight <= 0L || !function.isPure() || !hasStringArgument(arguments)) {
+      return null;
+    }
+
+    final Entry found;
+    synchronized (this.entries) {
+      found = this.entries.get(new Key(function, arguments));
+    }
+
+    if (found == null) {
+      this.misses.incrementAndGet();
+      return null;
+    } else {
+      this.hits.incrementAndGet();
+      return found.result;
+    }
+  }
+
+  /**
+   * Save result of a function call, it is ignored if the call can't be cached.
+   *
+   * @param function  the function, must not be null
+   * @param arguments the call arguments, must not be null and must not be changed after call
+   * @param result    the result of the call, must not be null
+   */
+  public void put(@Nonnull final AbstractFunction function, @Nonnull @MustNotContainNull final Value[] arguments, @Nonnull final Value result) {
+    if (this.maxWeight <= 0L || !function.isPure() || !hasStringArgument(arguments)) {
+      return;
+    }
+
+    long entryWeight = ENTRY_WEIGHT + weightOf(result);
+    for (final Value value : arguments) {
+      entryWeight += weightOf(value);
+    }
+
+    if (entryWeight > this.maxWeight) {
+      return;
+    }
+
+    synchronized (this.entries) {
+      final Entry replaced = this.entries.put(new Key(function, arguments), new Entry(result, entryWeight));
+      if (replaced != null) {
+        this.weight -= replaced.weight;
+      }
+      this.weight += entryWeight;
+
+      final Iterator<Entry> iterator = this.entries.values().iterator();
+      while (this.weight > this.maxWeight && iterator.hasNext()) {
+        this.weight -= iterator.next().weight;
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Remove all cached results.
+   */
+  public void clear() {
+    synchronized (this.entries) {
+      this.entries.clear();
+      this.weight = 0L;
+    }
+  }
+
+  /**
+   * Get number of cached results.
+   *
+   * @return number of cached results
+   */
+  public int size() {
+    synchronized (this.entries) {
+      return this.entries.size();
+    }
+  }
+
+  /**
+   * Get total weight of cached results.
+   *
+   * @return total weight, number of chars in cached strings plus fixed weight of every entry
+   */
+  public long getWeight() {
+    synchronized (this.entries) {
+      return this.weight;
+    }
+  }
+
+  public long getHits() {
+    return this.hits.get();
+  }
+
+  public long getMisses() {
+    return this.misses.get();
+  }
+
+  private static final class Key {
+
+    private final AbstractFunction function;
+    private final Value[] arguments;
+    private final int hash;
+
+    Key(@Nonnull final AbstractFunction function, @Nonnull @MustNotContainNull final Value[] arguments) {
+      this.function = function;
+      this.arguments = arguments;
+      this.hash = System.identityHashCode(function) * 31 + Arrays.hashCode(arguments);
+    }
+
+    @Override
+    public boolean equals(@Nullable final Object that) {
+      if (this == that) {
+        return true;
+      }
+      if (that instanceof Key) {
+        final Key thatKey = (Key) that;
+        return this.hash == thatKey.hash && this.function == thatKey.function && Arrays.equals(this.arguments, thatKey.arguments);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+
+  private static final class Entry {
+
+    private final Value result;
+    private final long weight;
+
+    Entry(@Nonnull final Value result, final long weight) {
+      this.result = result;
+      this.weight = weight;
+    }
+  }
+}
@@ -36,41 +36,82 @@ import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
  */
 public final class Value implements ExpressionItem {
 
-  public static final Value BOOLEAN_TRUE = new Value(Boolean.TRUE);
-  public static final Value BOOLEAN_FALSE = new Value(Boolean.FALSE);
+  public static final Value BOOLEAN_TRUE = new Value(true);
+  public static final Value BOOLEAN_FALSE = new Value(false);
+
+  /**
+   * Range of cached integer values, values in the range are not allocated by valueOf
+   */
+  private static final int INT_CACHE_LOW = -128;
+  private static final int INT_CACHE_HIGH = 1024;
+  private static final Value[] INT_CACHE = new Value[INT_CACHE_HIGH - INT_CACHE_LOW + 1];
+
+  static {
+    for (int i = 0; i < INT_CACHE.length; i++) {
+      INT_CACHE[i] = new Value((long) (i + INT_CACHE_LOW));
+    }
+  }
 
-  public static final Value INT_ZERO = new Value(0L);
-  public static final Value INT_ONE = new Value(1L);
-  public static final Value INT_TWO = new Value(2L);
-  public static final Value INT_THREE = new Value(3L);
-  public static final Value INT_FOUR = new Value(4L);
-  public static final Value INT_FIVE = new Value(5L);
+  public static final Value INT_ZERO = valueOf(0L);
+  public static final Value INT_ONE = valueOf(1L);
+  public static final Value INT_TWO = valueOf(2L);
+  public static final Value INT_THREE = valueOf(3L);
+  public static final Value INT_FOUR = valueOf(4L);
+  public static final Value INT_FIVE = valueOf(5L);
 
-  private final Object value;
   private final ValueType type;
+  /**
+   * Value of INT type and numeric representation of BOOLEAN type
+   */
+  private final long longValue;
+  private final float floatValue;
+  private final String stringValue;
 
   private Value(@Nullable final String val) {
-    value = val == null ? "null" : val;
-    type = ValueType.STRING;
+    this.stringValue = val == null ? "null" : val;
+    this.longValue = 0L;
+    this.floatValue = 0.0f;
+    this.type = ValueType.STRING;
   }
 
-  private Value(@Nonnull final Long val) {
-    value = val;
-    type = ValueType.INT;
+  private Value(final long val) {
+    this.longValue = val;
+    this.floatValue = 0.0f;
+    this.stringValue = null;
+    this.type = ValueType.INT;
   }
 
-  private Value(@Nonnull final Float val) {
-    value = val;
-    type = ValueType.FLOAT;
+  private Value(final float val) {
+    this.floatValue = val;
+    this.longValue = 0L;
+    this.stringValue = null;
+    this.type = ValueType.FLOAT;
   }
 
-  private Value(@Nonnull final Boolean val) {
-    value = val;
-    type = ValueType.BOOLEAN;
+  private Value(final boolean val) {
+    this.longValue = val ? 1L : 0L;
+    this.floatValue = 0.0f;
+    this.stringValue = null;
+    this.type = ValueType.BOOLEAN;
   }
 
   @Nonnull
   public static Value valueOf(@Nonnull final Long val) {
+    return valueOf(val.longValue());
+  }
+
+  /**
+   * Get integer value, small values are taken from cache.
+   *
+   * @param val the value
+   * @return value object, must not be null
+   * @since 7.0.3
+   */
+  @Nonnull
+  public static Value valueOf(final long val) {
+    if (val >= INT_CACHE_LOW && val <= INT_CACHE_HIGH) {
+      return INT_CACHE[(int) val - INT_CACHE_LOW];
+    }
     return new Value(val);
   }
 
@@ -79,8 +120,32 @@ public final class Value implements ExpressionItem {
     return val ? BOOLEAN_TRUE : BOOLEAN_FALSE;
   }
 
+  /**
+   * Get boolean value.
+   *
+   * @param val the value
+   * @return either BOOLEAN_TRUE or BOOLEAN_FALSE
+   * @since 7.0.3
+   */
+  @Nonnull
+  public static Value valueOf(final boolean val) {
+    return val ? BOOLEAN_TRUE : BOOLEAN_FALSE;
+  }
+
   @Nonnull
   public static Value valueOf(@Nonnull final Float val) {
+    return new Value(val.floatValue());
+  }
+
+  /**
+   * Get float value.
+   *
+   * @param val the value
+   * @return value object, must not be null
+   * @since 7.0.3
+   */
+  @Nonnull
+  public static Value valueOf(final float val) {
     return new Value(val);
   }
 
@@ -102,12 +167,12 @@ public final class Value implements ExpressionItem {
     }
 
     try {
-      return new Value(Long.parseLong(str));
+      return valueOf(Long.parseLong(str));
     } catch (NumberFormatException ex) {
     }
 
     try {
-      return new Value(Float.parseFloat(str));
+      return valueOf(Float.parseFloat(str));
     } catch (NumberFormatException ex) {
     }
 
@@ -126,11 +191,11 @@ public final class Value implements ExpressionItem {
       }
       break;
       case INT: {
-        result = new Value((Long) getValue(str, ValueType.INT));
+        result = valueOf((Long) getValue(str, ValueType.INT));
       }
       break;
       case FLOAT: {
-        result = new Value((Float) getValue(str, ValueType.FLOAT));
+        result = valueOf((Float) getValue(str, ValueType.FLOAT));
       }
       break;
       case STRING: {
@@ -213,23 +278,54 @@ public final class Value implements ExpressionItem {
 
   @Nonnull
   public Object getValue() {
-    return value;
+    switch (type) {
+      case INT:
+        return this.longValue;
+      case FLOAT:
+        return this.floatValue;
+      case BOOLEAN:
+        return this.longValue != 0L;
+      default:
+        return this.stringValue;
+    }
   }
 
   @Nonnull
   public Long asLong() {
+    return longValue();
+  }
+
+  /**
+   * Get integer value without boxing.
+   *
+   * @return the integer value
+   * @throws IllegalStateException if the value is not integer
+   * @since 7.0.3
+   */
+  public long longValue() {
     if (type != ValueType.INT) {
       throw new IllegalStateException("Value is not integer");
     }
-    return (Long) value;
+    return this.longValue;
   }
 
   @Nonnull
   public Float asFloat() {
+    return floatValue();
+  }
+
+  /**
+   * Get float value without boxing.
+   *
+   * @return the float value
+   * @throws IllegalStateException if the value is not float
+   * @since 7.0.3
+   */
+  public float floatValue() {
     if (type != ValueType.FLOAT) {
       throw new IllegalStateException("Value is not float");
     }
-    return (Float) value;
+    return this.floatValue;
   }
 
   @Nonnull
@@ -237,34 +333,45 @@ public final class Value implements ExpressionItem {
     if (type != ValueType.STRING) {
       throw new IllegalStateException("Value is not string");
     }
-    return (String) value;
+    return this.stringValue;
   }
 
   @Nonnull
   public Boolean asBoolean() {
+    return booleanValue();
+  }
+
+  /**
+   * Get boolean value without boxing.
+   *
+   * @return the boolean value
+   * @throws IllegalStateException if the value is not boolean
+   * @since 7.0.3
+   */
+  public boolean booleanValue() {
     if (type != ValueType.BOOLEAN) {
       throw new IllegalStateException("Value is not boolean");
     }
-    return (Boolean) value;
+    return this.longValue != 0L;
   }
 
   @Nonnull
   public String toStringDetail() {
     switch (type) {
       case BOOLEAN: {
-        return "Boolean : " + value;
+        return "Boolean : " + booleanValue();
       }
       case INT: {
-        return "Integer : " + value;
+        return "Integer : " + this.longValue;
       }
       case UNKNOWN: {
         return "Unknown : -";
       }
       case FLOAT: {
-        return "Float : " + value;
+        return "Float : " + this.floatValue;
       }
       case STRING: {
-        return "String : " + value;
+        return "String : " + this.stringValue;
       }
     }
     return "!!! ERROR , UNSUPPORTED TYPE [" + type + "]";
@@ -275,15 +382,15 @@ public final class Value implements ExpressionItem {
   public String toString() {
     switch (type) {
       case BOOLEAN:
-        return asBoolean().toString();
+        return Boolean.toString(booleanValue());
       case INT:
-        return asLong().toString();
+        return Long.toString(this.longValue);
       case UNKNOWN:
         return "<UNKNOWN>";
       case FLOAT:
-        return asFloat().toString();
+        return Float.toString(this.floatValue);
       case STRING:
-        return asString();
+        return this.stringValue;
       default:
         return "!!! ERROR , UNSUPPORTED TYPE [" + type + "]";
     }
@@ -309,15 +416,34 @@ public final class Value implements ExpressionItem {
 
     if (var instanceof Value) {
       final Value thatValue = (Value) var;
-
-      return this.type == thatValue.type && this.value.equals(thatValue.value);
+      if (this.type != thatValue.type) {
+        return false;
+      }
+      switch (this.type) {
+        case INT:
+        case BOOLEAN:
+          return this.longValue == thatValue.longValue;
+        case FLOAT:
+          return Float.floatToIntBits(this.floatValue) == Float.floatToIntBits(thatValue.floatValue);
+        default:
+          return this.stringValue.equals(thatValue.stringValue);
+      }
     }
     return false;
   }
 
   @Override
   public int hashCode() {
-    return this.value.hashCode();
+    switch (this.type) {
+      case INT:
+        return Long.hashCode(this.longValue);
+      case BOOLEAN:
+        return Boolean.hashCode(this.longValue != 0L);
+      case FLOAT:
+        return Float.hashCode(this.floatValue);
+      default:
+        return this.stringValue.hashCode();
+    }
   }
 
 }
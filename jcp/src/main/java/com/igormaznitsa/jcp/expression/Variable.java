@@ -21,7 +21,10 @@
 
 package com.igormaznitsa.jcp.expression;
 
+import com.igormaznitsa.jcp.utils.PreprocessorUtils;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
 
@@ -37,26 +40,71 @@ public final class Variable implements ExpressionItem {
    */
   private final String variableName;
 
+  /**
+   * Registry which provided the slot, it can be null
+   */
+  private final VariableSlotRegistry slotRegistry;
+
+  /**
+   * Slot for the variable name, -1 if there is no slot
+   */
+  private final int slot;
+
   /**
    * The constructor
    *
-   * @param varName the variable name, it must not be null
+   * @param varName the variable name, it must not be null, it will be normalized
    */
   public Variable(@Nonnull final String varName) {
+    this(varName, null);
+  }
+
+  /**
+   * The constructor
+   *
+   * @param varName      the variable name, it must not be null, it will be normalized
+   * @param slotRegistry registry to get slot for the variable, it can be null
+   * @since 7.0.3
+   */
+  public Variable(@Nonnull final String varName, @Nullable final VariableSlotRegistry slotRegistry) {
     assertNotNull("Var name is null", varName);
-    this.variableName = varName;
+    this.variableName = PreprocessorUtils.normalizeVariableName(varName);
+    this.slot = slotRegistry == null ? -1 : slotRegistry.register(this.variableName);
+    this.slotRegistry = this.slot < 0 ? null : slotRegistry;
   }
 
   /**
    * Get the variable name
    *
-   * @return the name saved by the object
+   * @return the normalized name saved by the object
    */
   @Nonnull
   public String getName() {
     return this.variableName;
   }
 
+  /**
+   * Get slot of the variable, all variables with the same name and registry have the same slot.
+   *
+   * @return the slot or -1 if the variable doesn't have slot
+   * @see #getSlotRegistry()
+   * @since 7.0.3
+   */
+  public int getSlot() {
+    return this.slot;
+  }
+
+  /**
+   * Get registry which provided the slot of the variable.
+   *
+   * @return the registry or null if the variable doesn't have slot
+   * @since 7.0.3
+   */
+  @Nullable
+  public VariableSlotRegistry getSlotRegistry() {
+    return this.slotRegistry;
+  }
+
   /**
    * Get the expression item type
    *
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of slots for normalized variable names, a slot is an index in variable slot caches of preprocessor contexts.
+ * Every root preprocessor context has own registry shared with its clones and forks, so that slots live as long as the context.
+ * Number of slots is limited and variables registered after the limit don't have slot and are always searched in variable tables.
+ * The class is thread-safe.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @see Variable#getSlot()
+ * @since 7.0.3
+ */
+public final class VariableSlotRegistry {
+
+  public static final int DEFAULT_MAX_SLOTS = 4096;
+
+  private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+  private final int maxSlots;
+
+  public VariableSlotRegistry() {
+    this(DEFAULT_MAX_SLOTS);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param maxSlots max number of registered names, zero or negative value disables slots
+   */
+  public VariableSlotRegistry(final int maxSlots) {
+    this.maxSlots = maxSlots;
+  }
+
+  /**
+   * Get slot for a normalized variable name, new slot is registered if the name doesn't have one.
+   *
+   * @param normalizedName normalized variable name, must not be null
+   * @return slot for the name or -1 if the limit of slots is reached
+   */
+  public int register(@Nonnull final String normalizedName) {
+    final Integer result = this.slots.get(normalizedName);
+    if (result != null) {
+      return result;
+    }
+    synchronized (this.slots) {
+      final int size = this.slots.size();
+      if (size >= this.maxSlots) {
+        return -1;
+      }
+      return this.slots.computeIfAbsent(normalizedName, k -> size);
+    }
+  }
+
+  /**
+   * Find registered slot for a normalized variable name.
+   *
+   * @param normalizedName normalized variable name, must not be null
+   * @return slot for the name or -1 if the name is not registered
+   */
+  public int findSlot(@Nonnull final String normalizedName) {
+    final Integer result = this.slots.get(normalizedName);
+    return result == null ? -1 : result;
+  }
+
+  /**
+   * Get number of registered slots.
+   *
+   * @return number of slots, zero or greater
+   */
+  public int size() {
+    return this.slots.size();
+  }
+}
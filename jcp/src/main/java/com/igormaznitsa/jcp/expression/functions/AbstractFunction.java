@@ -21,9 +21,11 @@
 
 package com.igormaznitsa.jcp.expression.functions;
 
+import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.expression.ExpressionItem;
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.ExpressionItemType;
+import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.jcp.expression.ValueType;
 import com.igormaznitsa.jcp.expression.functions.xml.FunctionXML_ATTR;
 import com.igormaznitsa.jcp.expression.functions.xml.FunctionXML_GET;
@@ -39,6 +41,10 @@ import com.igormaznitsa.meta.annotation.MustNotContainNull;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -55,6 +61,10 @@ public abstract class AbstractFunction implements ExpressionItem {
    * The string contains the prefix for all executing methods of functions
    */
   public static final String EXECUTION_PREFIX = "execute";
+  /**
+   * Type of executor handle, arguments are provided as an array
+   */
+  public static final MethodType EXECUTOR_TYPE = MethodType.methodType(Value.class, AbstractFunction.class, PreprocessorContext.class, Value[].class);
   /**
    * Inside counter to generate UID for some cases
    */
@@ -64,6 +74,10 @@ public abstract class AbstractFunction implements ExpressionItem {
    */
   private static volatile AbstractFunction[] allFunctions;
   private static volatile Map<String, AbstractFunction> functionNameMap;
+  /**
+   * Executors of the function indexed by allowed argument type combinations, it is filled once during the first call.
+   */
+  private volatile MethodHandle[] executors;
 
   @Nonnull
   @MustNotContainNull
@@ -184,6 +198,17 @@ public abstract class AbstractFunction implements ExpressionItem {
   @Nonnull
   public abstract ValueType getResultType();
 
+  /**
+   * Check that the function result depends only on its arguments, such functions don't use context and don't have side effects
+   * so that their calls with constant arguments can be replaced by results before evaluation.
+   *
+   * @return true if the function is pure, false otherwise
+   * @since 7.0.3
+   */
+  public boolean isPure() {
+    return false;
+  }
+
   /**
    * Get the priority of the function in the expression tree
    *
@@ -207,6 +232,77 @@ public abstract class AbstractFunction implements ExpressionItem {
     return ExpressionItemType.FUNCTION;
   }
 
+  /**
+   * Find executor of the function for an allowed argument type combination. Executing methods are searched only once for function instance.
+   *
+   * @param signatureIndex index of the combination in the array returned by {@link #getAllowedArgumentTypes()}
+   * @return executor which type is EXECUTOR_TYPE, null if there is not any method for the combination
+   * @throws IllegalStateException if an executing method exists but can't be accessed, the table is not cached in the case
+   * @see #EXECUTOR_TYPE
+   * @since 7.0.3
+   */
+  @Nullable
+  public MethodHandle findExecutor(final int signatureIndex) {
+    MethodHandle[] table = this.executors;
+    if (table == null) {
+      table = makeExecutorTable();
+      this.executors = table;
+    }
+    return table[signatureIndex];
+  }
+
+  /**
+   * Find the first allowed argument type combination compatible with argument types.
+   *
+   * @param types types of arguments, must not be null
+   * @return index of the combination in the array returned by {@link #getAllowedArgumentTypes()} or -1 if not found
+   * @since 7.0.3
+   */
+  public int findAllowedSignature(@Nonnull @MustNotContainNull final ValueType[] types) {
+    final ValueType[][] allowedSignatures = getAllowedArgumentTypes();
+    for (int i = 0; i < allowedSignatures.length; i++) {
+      boolean allCompatible = true;
+      int thatIndex = 0;
+      for (final ValueType type : allowedSignatures[i]) {
+        if (!type.isCompatible(types[thatIndex])) {
+          allCompatible = false;
+          break;
+        }
+        thatIndex++;
+      }
+      if (allCompatible) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Nonnull
+  private MethodHandle[] makeExecutorTable() {
+    final ValueType[][] allowedSignatures = getAllowedArgumentTypes();
+    final MethodHandle[] result = new MethodHandle[allowedSignatures.length];
+    for (int i = 0; i < allowedSignatures.length; i++) {
+      final ValueType[] types = allowedSignatures[i];
+      final StringBuilder name = new StringBuilder(EXECUTION_PREFIX);
+      for (final ValueType type : types) {
+        name.append(type.getSignature());
+      }
+      final Class<?>[] valueArgs = new Class<?>[types.length];
+      Arrays.fill(valueArgs, Value.class);
+      try {
+        result[i] = MethodHandles.lookup()
+            .findVirtual(this.getClass(), name.toString(), MethodType.methodType(Value.class, PreprocessorContext.class, valueArgs))
+            .asSpreader(Value[].class, types.length)
+            .asType(EXECUTOR_TYPE);
+      } catch (NoSuchMethodException ex) {
+        result[i] = null;
+      } catch (IllegalAccessException ex) {
+        throw new IllegalStateException("Can't get access to executing method '" + name + "' of " + this.getClass().getName(), ex);
+      }
+    }
+    return result;
+  }
+
   @Override
   @Nullable
   public String toString() {
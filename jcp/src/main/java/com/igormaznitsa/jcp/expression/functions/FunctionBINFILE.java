@@ -201,6 +201,7 @@ public class FunctionBINFILE extends AbstractFunction {
     } catch (IOException ex) {
       throw context.makeException("Can't find bin file '" + filePath + '\'', null);
     }
+    context.registerDependency(theFile);
 
     if (context.isVerbose()) {
       context.logForVerbose("Loading content of bin file '" + theFile + '\'');
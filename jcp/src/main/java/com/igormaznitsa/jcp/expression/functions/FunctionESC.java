@@ -113,4 +113,9 @@ public final class FunctionESC extends AbstractFunction {
     return ValueType.STRING;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
 }
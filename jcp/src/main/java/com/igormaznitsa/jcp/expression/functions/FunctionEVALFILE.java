@@ -95,6 +95,7 @@ public class FunctionEVALFILE extends AbstractFunction {
     } catch (IOException ex) {
       throw context.makeException("Can't get get source file '" + filePath + '\'', null);
     }
+    context.registerDependency(theFile);
 
     if (context.isVerbose()) {
       context.logForVerbose("Eval file '" + theFile + '\'');
@@ -74,4 +74,9 @@ public final class FunctionISSUBSTR extends AbstractFunction {
     return ValueType.BOOLEAN;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
 }
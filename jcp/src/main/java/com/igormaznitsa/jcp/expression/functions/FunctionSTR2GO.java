@@ -163,4 +163,9 @@ public final class FunctionSTR2GO extends AbstractFunction {
     return ValueType.STRING;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
 }
@@ -98,4 +98,9 @@ public final class FunctionSTR2JAVA extends AbstractFunction {
     return ValueType.STRING;
   }
 
+  @Override
+  public boolean isPure() {
+    return true;
+  }
+
 }
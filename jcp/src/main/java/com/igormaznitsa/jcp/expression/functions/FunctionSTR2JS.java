@@ -60,4 +60,9 @@ public final class FunctionSTR2JS extends AbstractStrConverter {
   public ValueType getResultType() {
     return ValueType.STRING;
   }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
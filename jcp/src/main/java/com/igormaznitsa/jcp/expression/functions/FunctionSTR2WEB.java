@@ -71,4 +71,9 @@ public final class FunctionSTR2WEB extends AbstractStrConverter {
   public ValueType getResultType() {
     return ValueType.STRING;
   }
+
+  @Override
+  public boolean isPure() {
+    return true;
+  }
 }
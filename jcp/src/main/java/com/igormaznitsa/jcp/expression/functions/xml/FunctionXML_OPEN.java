@@ -59,15 +59,16 @@ public final class FunctionXML_OPEN extends AbstractXMLFunction {
     final String documentId = makeDocumentId(name);
     final String documentIdRoot = makeDocumentRootId(documentId);
 
+    File file;
+    try {
+      file = context.findFileInSources(name);
+    } catch (IOException unexpected) {
+      throw context.makeException("Can't read \'" + name + '\'', null);
+    }
+    context.registerDependency(file);
+
     NodeContainer docContainer = (NodeContainer) context.getSharedResource(documentId);
     if (docContainer == null) {
-      File file;
-      try {
-        file = context.findFileInSources(name);
-      } catch (IOException unexpected) {
-        throw context.makeException("Can't read \'" + name + '\'', null);
-      }
-
       final Document document = openFileAndParse(context, file);
       docContainer = new NodeContainer(UID_COUNTER.getAndIncrement(), document);
       context.setSharedResource(documentId, docContainer);
@@ -23,10 +23,15 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItem;
 import com.igormaznitsa.jcp.expression.ExpressionItemType;
+import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 import com.igormaznitsa.meta.annotation.MustNotContainNull;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 
 /**
  * The class is the base for all operator handlers
@@ -45,6 +50,23 @@ public abstract class AbstractOperator implements ExpressionItem {
    */
   private static AbstractOperator[] allOperators;
 
+  private static final ValueType[] VALUE_TYPES = ValueType.values();
+
+  /**
+   * Type of executor handle for unary operators
+   */
+  public static final MethodType EXECUTOR_TYPE_1 = MethodType.methodType(Value.class, AbstractOperator.class, Value.class);
+
+  /**
+   * Type of executor handle for binary operators
+   */
+  public static final MethodType EXECUTOR_TYPE_2 = MethodType.methodType(Value.class, AbstractOperator.class, Value.class, Value.class);
+
+  /**
+   * Executors of the operator indexed by argument types, it is filled once during the first call.
+   */
+  private volatile MethodHandle[] executors;
+
   @Nonnull
   @MustNotContainNull
   public static AbstractOperator[] getAllOperators() {
@@ -120,6 +142,81 @@ public abstract class AbstractOperator implements ExpressionItem {
   @Nonnull
   public abstract String getReference();
 
+  /**
+   * Get result of the operator which is defined only by the first argument, in such case the second argument is not evaluated.
+   * The second argument is skipped only if its result is boolean before evaluation (comparison, function with boolean result
+   * or logical operator over boolean literals and such expressions), so that type errors are always reported. Variables of not evaluated argument are checked to be defined.
+   *
+   * @param left the first argument value, must not be null
+   * @return the result if it is defined by the first argument, null otherwise
+   * @since 7.0.3
+   */
+  @Nullable
+  public Value shortCircuit(@Nonnull final Value left) {
+    return null;
+  }
+
+  /**
+   * Find executor of the operator for argument types. Executing methods are searched only once for operator instance,
+   * order of search is the same as for names: exact types, ANY as the first argument type, ANY as the second argument type.
+   *
+   * @param left  type of the first argument, must not be null
+   * @param right type of the second argument, ignored for unary operators, must not be null
+   * @return executor which type is either EXECUTOR_TYPE_1 or EXECUTOR_TYPE_2, null if arguments are not supported
+   * @throws IllegalStateException if an executing method exists but can't be accessed, the table is not cached in the case
+   * @see #EXECUTOR_TYPE_1
+   * @see #EXECUTOR_TYPE_2
+   * @since 7.0.3
+   */
+  @Nullable
+  public MethodHandle findExecutor(@Nonnull final ValueType left, @Nonnull final ValueType right) {
+    MethodHandle[] table = this.executors;
+    if (table == null) {
+      table = makeExecutorTable();
+      this.executors = table;
+    }
+    return getArity() == 1 ? table[left.ordinal()] : table[left.ordinal() * VALUE_TYPES.length + right.ordinal()];
+  }
+
+  @Nonnull
+  private MethodHandle[] makeExecutorTable() {
+    final String any = ValueType.ANY.getSignature();
+    if (getArity() == 1) {
+      final MethodHandle[] result = new MethodHandle[VALUE_TYPES.length];
+      for (final ValueType type : VALUE_TYPES) {
+        final String signature = type.getSignature();
+        result[type.ordinal()] = findExecuteMethod(EXECUTOR_TYPE_1, signature, any);
+      }
+      return result;
+    } else {
+      final MethodHandle[] result = new MethodHandle[VALUE_TYPES.length * VALUE_TYPES.length];
+      for (final ValueType left : VALUE_TYPES) {
+        for (final ValueType right : VALUE_TYPES) {
+          final String leftSignature = left.getSignature();
+          final String rightSignature = right.getSignature();
+          result[left.ordinal() * VALUE_TYPES.length + right.ordinal()] = findExecuteMethod(EXECUTOR_TYPE_2,
+              leftSignature + rightSignature, any + rightSignature, leftSignature + any);
+        }
+      }
+      return result;
+    }
+  }
+
+  @Nullable
+  private MethodHandle findExecuteMethod(@Nonnull final MethodType executorType, @Nonnull @MustNotContainNull final String... signatures) {
+    final MethodType methodType = executorType.dropParameterTypes(0, 1);
+    for (final String signature : signatures) {
+      try {
+        return MethodHandles.lookup().findVirtual(this.getClass(), EXECUTION_PREFIX + signature, methodType).asType(executorType);
+      } catch (NoSuchMethodException ex) {
+        // try next signature
+      } catch (IllegalAccessException ex) {
+        throw new IllegalStateException("Can't get access to executing method '" + EXECUTION_PREFIX + signature + "' of " + this.getClass().getName(), ex);
+      }
+    }
+    return null;
+  }
+
   @Override
   @Nonnull
   public String toString() {
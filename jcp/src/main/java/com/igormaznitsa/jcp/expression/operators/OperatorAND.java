@@ -23,8 +23,10 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * The class implements the AND operator handler
@@ -41,7 +43,7 @@ public final class OperatorAND extends AbstractOperator {
   @Override
   @Nonnull
   public String getReference() {
-    return "conditional-AND and bitwise-AND";
+    return "conditional-AND and bitwise-AND, if the first argument is boolean FALSE then the second one is not evaluated if it is surely boolean (its variables must be defined)";
   }
 
   @Override
@@ -50,14 +52,24 @@ public final class OperatorAND extends AbstractOperator {
     return "&&";
   }
 
+  /**
+   * Boolean FALSE as the first argument defines the result so that the second argument is not evaluated, it is not applied to integer arguments.
+   * Note that user functions in the second argument are not called in such case but its variables must be defined.
+   */
+  @Override
+  @Nullable
+  public Value shortCircuit(@Nonnull final Value left) {
+    return left.getType() == ValueType.BOOLEAN && !left.booleanValue() ? Value.BOOLEAN_FALSE : null;
+  }
+
   @Nonnull
   public Value executeIntInt(@Nonnull final Value arg1, @Nonnull final Value arg2) {
-    return Value.valueOf(arg1.asLong() & arg2.asLong());
+    return Value.valueOf(arg1.longValue() & arg2.longValue());
   }
 
   @Nonnull
   public Value executeBoolBool(@Nonnull final Value arg1, @Nonnull final Value arg2) {
-    return Value.valueOf(arg1.asBoolean() && arg2.asBoolean());
+    return Value.valueOf(arg1.booleanValue() && arg2.booleanValue());
   }
 
   @Override
@@ -52,22 +52,22 @@ public final class OperatorNOTEQU extends AbstractOperator {
 
   @Nonnull
   public Value executeIntInt(@Nonnull final Value arg1, @Nonnull final Value arg2) {
-    return Value.valueOf(arg1.asLong() != arg2.asLong().longValue());
+    return Value.valueOf(arg1.longValue() != arg2.longValue());
   }
 
   @Nonnull
   public Value executeFloatInt(@Nonnull final Value arg1, @Nonnull final Value arg2) {
-    return Value.valueOf(Float.compare(arg1.asFloat(), arg2.asLong().floatValue()) != 0);
+    return Value.valueOf(Float.compare(arg1.floatValue(), (float) arg2.longValue()) != 0);
   }
 
   @Nonnull
   public Value executeIntFloat(@Nonnull final Value arg1, @Nonnull final Value arg2) {
-    return Value.valueOf(Float.compare(arg1.asLong().floatValue(), arg2.asFloat()) != 0);
+    return Value.valueOf(Float.compare((float) arg1.longValue(), arg2.floatValue()) != 0);
   }
 
   @Nonnull
   public Value executeFloatFloat(@Nonnull final Value arg1, @Nonnull final Value arg2) {
-    return Value.valueOf(Float.compare(arg1.asFloat(), arg2.asFloat()) != 0);
+    return Value.valueOf(Float.compare(arg1.floatValue(), arg2.floatValue()) != 0);
   }
 
   @Nonnull
@@ -77,7 +77,7 @@ public final class OperatorNOTEQU extends AbstractOperator {
 
   @Nonnull
   public Value executeBoolBool(@Nonnull final Value arg1, @Nonnull final Value arg2) {
-    return Value.valueOf(arg1.asBoolean() != arg2.asBoolean().booleanValue());
+    return Value.valueOf(arg1.booleanValue() != arg2.booleanValue());
   }
 
   @Override
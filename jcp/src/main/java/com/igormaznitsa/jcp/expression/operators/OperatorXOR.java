@@ -52,12 +52,12 @@ public class OperatorXOR extends AbstractOperator {
 
   @Nonnull
   public Value executeIntInt(@Nonnull final Value arg1, @Nonnull final Value arg2) {
-    return Value.valueOf(arg1.asLong() ^ arg2.asLong());
+    return Value.valueOf(arg1.longValue() ^ arg2.longValue());
   }
 
   @Nonnull
   public Value executeBoolBool(@Nonnull final Value arg1, @Nonnull final Value arg2) {
-    return Value.valueOf(arg1.asBoolean() ^ arg2.asBoolean());
+    return Value.valueOf(arg1.booleanValue() ^ arg2.booleanValue());
   }
 
   @Override
@@ -142,6 +142,24 @@ public class JcpTask extends DefaultTask {
    * new result content.
    */
   private final Property<Boolean> dontOverwriteSameContent;
+  /**
+   * Preprocess files in parallel threads, every file gets own copy of variables
+   * so that local definitions made by a file are not visible in other files.
+   * Global variables changed by a file are visible in next files as in sequential mode.
+   */
+  private final Property<Boolean> parallel;
+  /**
+   * Skip preprocessing of files which sources, used files, global variables
+   * and options are not changed since previous session, information is kept
+   * in manifest file in the target folder.
+   */
+  private final Property<Boolean> incremental;
+  /**
+   * Make hard links instead of copies for files which are not preprocessed,
+   * if source and target are on the same file system. A file is copied
+   * if a link can't be made.
+   */
+  private final Property<Boolean> hardLinkCopy;
 
   @Inject
   public JcpTask(ProviderFactory providerFactory) {
@@ -152,6 +170,9 @@ public class JcpTask extends DefaultTask {
     this.careForLastEol = factory.property(Boolean.class).convention(false);
     this.clearTarget = factory.property(Boolean.class).convention(false);
     this.dontOverwriteSameContent = factory.property(Boolean.class).convention(false);
+    this.parallel = factory.property(Boolean.class).convention(false);
+    this.incremental = factory.property(Boolean.class).convention(false);
+    this.hardLinkCopy = factory.property(Boolean.class).convention(false);
     this.dryRun = factory.property(Boolean.class).convention(false);
     this.ignoreMissingSources = factory.property(Boolean.class).convention(false);
     this.keepAttributes = factory.property(Boolean.class).convention(false);
@@ -294,6 +315,21 @@ public class JcpTask extends DefaultTask {
     return dontOverwriteSameContent;
   }
 
+  @Input
+  public Property<Boolean> getParallel() {
+    return parallel;
+  }
+
+  @Input
+  public Property<Boolean> getIncremental() {
+    return incremental;
+  }
+
+  @Input
+  public Property<Boolean> getHardLinkCopy() {
+    return hardLinkCopy;
+  }
+
   @TaskAction
   public void preprocessTask() throws IOException {
     final Logger logger = getProject().getLogger();
@@ -380,6 +416,9 @@ public class JcpTask extends DefaultTask {
     preprocessorContext.setTargetEncoding(Charset.forName(this.targetEncoding.get()));
     preprocessorContext.setUnknownVariableAsFalse(this.unknownVarAsFalse.get());
     preprocessorContext.setVerbose(this.verbose.get());
+    preprocessorContext.setParallel(this.parallel.get());
+    preprocessorContext.setIncremental(this.incremental.get());
+    preprocessorContext.setHardLinkCopy(this.hardLinkCopy.get());
 
     this.vars.getOrElse(emptyMap()).forEach((key, value) -> {
       logger.debug(String.format("Registering global variable: %s=%s", key, value));
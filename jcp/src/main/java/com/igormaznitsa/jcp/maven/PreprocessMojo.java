@@ -292,6 +292,32 @@ public class PreprocessMojo extends AbstractMojo implements PreprocessorLogger {
   @Parameter(alias = "dontOverwriteSameContent", defaultValue = "false")
   private boolean dontOverwriteSameContent = false;
 
+  /**
+   * Preprocess files in parallel threads, every file gets own copy of variables so that local definitions made by a file are not visible in other files.
+   * Global variables changed by a file are visible in next files as in sequential mode.
+   *
+   * @since 7.0.3
+   */
+  @Parameter(alias = "parallel", defaultValue = "false")
+  private boolean parallel = false;
+
+  /**
+   * Skip preprocessing of files which sources, used files, global variables and options are not changed since previous session, information is kept in manifest file in the target folder.
+   *
+   * @since 7.0.3
+   */
+  @Parameter(alias = "incremental", defaultValue = "false")
+  private boolean incremental = false;
+
+  /**
+   * Make hard links instead of copies for files which are not preprocessed, if source and target are on the same file system. A file is copied if a link can't be made.
+   * <b>Changes made in a linked file are visible in its source.</b>
+   *
+   * @since 7.0.3
+   */
+  @Parameter(alias = "hardLinkCopy", defaultValue = "false")
+  private boolean hardLinkCopy = false;
+
   @Nonnull
   @MustNotContainNull
   private List<String> formSourceRootList() {
@@ -375,6 +401,9 @@ public class PreprocessMojo extends AbstractMojo implements PreprocessorLogger {
 
     context.setUnknownVariableAsFalse(this.isUnknownVarAsFalse());
     context.setDontOverwriteSameContent(this.isDontOverwriteSameContent());
+    context.setParallel(this.isParallel());
+    context.setIncremental(this.isIncremental());
+    context.setHardLinkCopy(this.isHardLinkCopy());
     context.setClearTarget(this.isClearTarget());
     context.setCareForLastEol(this.isCareForLastEol());
     context.setKeepComments(this.isKeepComments());
@@ -22,6 +22,7 @@
 package com.igormaznitsa.jcp.utils;
 
 
+import com.igormaznitsa.jcp.containers.LineIndexedText;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.exceptions.FilePositionInfo;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
@@ -42,12 +43,14 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
 
@@ -58,8 +61,6 @@ import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
  */
 public final class PreprocessorUtils {
 
-  private static final Pattern PATTERN_MACROS_WITH_SPACES = Pattern.compile("\\/\\*\\s*\\$(.*?)\\$\\s*\\*\\/");
-
   private PreprocessorUtils() {
   }
 
@@ -116,6 +117,105 @@ public final class PreprocessorUtils {
     return value.substring(prefix.length());
   }
 
+  /**
+   * Find tail of a directive which can have whitespaces before and after comment start, like {@code   //  #if}.
+   * Regular expression whitespaces (space, tab, line feed, vertical tab, form feed and carriage return) are allowed before and after {@code //},
+   * the tail must not contain line terminators. The line is checked by single scan without regular expression engine.
+   *
+   * @param line   the line to be checked, must not be null
+   * @param marker the directive marker after comment, for instance "#" or "$$", must not be null
+   * @return index of the first tail char or -1 if the line doesn't contain such directive
+   * @since 7.0.3
+   */
+  public static int findSpaceTolerantDirectiveTail(@Nonnull final String line, @Nonnull final String marker) {
+    int pos = skipRegexSpaces(line, 0);
+    if (!line.startsWith("//", pos)) {
+      return -1;
+    }
+    pos = skipRegexSpaces(line, pos + 2);
+    if (!line.startsWith(marker, pos)) {
+      return -1;
+    }
+    final int tailStart = pos + marker.length();
+    for (int i = tailStart; i < line.length(); i++) {
+      if (isLineTerminator(line.charAt(i))) {
+        return -1;
+      }
+    }
+    return tailStart;
+  }
+
+  /**
+   * Find tail remover which can contain regular expression whitespaces around its minus char, like {@code /* - *}{@code /}.
+   *
+   * @param line the line to be checked, must not be null
+   * @return index of the tail remover start or -1 if not found
+   * @since 7.0.3
+   */
+  public static int findSpaceTolerantTailRemover(@Nonnull final String line) {
+    int start = line.indexOf("/*");
+    while (start >= 0) {
+      int pos = skipRegexSpaces(line, start + 2);
+      if (pos < line.length() && line.charAt(pos) == '-') {
+        pos = skipRegexSpaces(line, pos + 1);
+        if (line.startsWith("*/", pos)) {
+          return start;
+        }
+      }
+      start = line.indexOf("/*", start + 1);
+    }
+    return -1;
+  }
+
+  /**
+   * Find macros which can contain regular expression whitespaces around its body, like {@code /* $expression$ *}{@code /},
+   * the shortest body without line terminators is selected.
+   *
+   * @param line   the line to be processed, must not be null
+   * @param from   start position of search
+   * @param bounds array to get bounds of found macros: start, body start, body end and end, must have at least 4 elements
+   * @return true if macros has been found, false otherwise
+   */
+  private static boolean findSpaceTolerantMacros(@Nonnull final String line, final int from, @Nonnull final int[] bounds) {
+    int start = line.indexOf("/*", from);
+    while (start >= 0) {
+      final int dollar = skipRegexSpaces(line, start + 2);
+      if (dollar < line.length() && line.charAt(dollar) == '$') {
+        for (int i = dollar + 1; i < line.length() && !isLineTerminator(line.charAt(i)); i++) {
+          if (line.charAt(i) == '$') {
+            final int end = skipRegexSpaces(line, i + 1);
+            if (line.startsWith("*/", end)) {
+              bounds[0] = start;
+              bounds[1] = dollar + 1;
+              bounds[2] = i;
+              bounds[3] = end + 2;
+              return true;
+            }
+          }
+        }
+      }
+      start = line.indexOf("/*", start + 1);
+    }
+    return false;
+  }
+
+  private static int skipRegexSpaces(@Nonnull final String line, final int from) {
+    int pos = from;
+    while (pos < line.length()) {
+      final char chr = line.charAt(pos);
+      if (chr == ' ' || chr == '\t' || chr == '\n' || chr == '\u000B' || chr == '\f' || chr == '\r') {
+        pos++;
+      } else {
+        break;
+      }
+    }
+    return pos;
+  }
+
+  private static boolean isLineTerminator(final char chr) {
+    return chr == '\n' || chr == '\r' || chr == '\u0085' || chr == '\u2028' || chr == '\u2029';
+  }
+
   public static void copyFile(@Nonnull final File source, @Nonnull final File dest, final boolean copyFileAttributes) throws IOException {
     assertNotNull("Source is null", source);
     assertNotNull("Destination file is null", dest);
@@ -124,13 +224,48 @@ public final class PreprocessorUtils {
       throw new IllegalArgumentException("Source file is directory");
     }
 
-    if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs()) {
+    if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs() && !dest.getParentFile().isDirectory()) {
       throw new IOException("Can't make directory [" + getFilePath(dest.getParentFile()) + ']');
     }
 
-    FileUtils.copyFile(source, dest);
     if (copyFileAttributes) {
-      copyFileAttributes(source, dest);
+      Files.copy(source.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    } else {
+      Files.copy(source.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      Files.setLastModifiedTime(dest.toPath(), Files.getLastModifiedTime(source.toPath()));
+    }
+  }
+
+  /**
+   * Make hard link to a source file, the file is copied if the link can't be made (for instance source and destination are on different file systems).
+   *
+   * @param source             the source file, must not be null
+   * @param dest               the destination file, must not be null, existing file will be replaced
+   * @param copyFileAttributes copy file attributes if the file is copied
+   * @return true if hard link has been made, false if the file has been copied
+   * @throws IOException it will be thrown for IO errors
+   * @since 7.0.3
+   */
+  public static boolean linkFile(@Nonnull final File source, @Nonnull final File dest, final boolean copyFileAttributes) throws IOException {
+    assertNotNull("Source is null", source);
+    assertNotNull("Destination file is null", dest);
+
+    if (!dest.getParentFile().exists() && !dest.getParentFile().mkdirs() && !dest.getParentFile().isDirectory()) {
+      throw new IOException("Can't make directory [" + getFilePath(dest.getParentFile()) + ']');
+    }
+
+    final Path destPath = dest.toPath();
+    if (Files.exists(destPath, LinkOption.NOFOLLOW_LINKS) && Files.isSameFile(source.toPath(), destPath)) {
+      return true;
+    }
+
+    try {
+      Files.deleteIfExists(destPath);
+      Files.createLink(destPath, source.toPath());
+      return true;
+    } catch (IOException | UnsupportedOperationException ex) {
+      copyFile(source, dest, copyFileAttributes);
+      return false;
     }
   }
 
@@ -173,22 +308,20 @@ public final class PreprocessorUtils {
     String result = processingString;
 
     if (context.isAllowWhitespaces()) {
-      final Matcher matcher = PATTERN_MACROS_WITH_SPACES.matcher(processingString);
-      final StringBuilder buffer = new StringBuilder();
-      int end = 0;
-      while (matcher.find()) {
-        final int start = matcher.start();
-        final int prevEnd = end;
-        end = matcher.end();
-        final String macrosBody = matcher.group(1);
-        final Value value = Expression.evalExpression(macrosBody, context);
-        buffer.append(processingString, prevEnd, start);
-        buffer.append(value.toString());
-      }
-      if (end < processingString.length()) {
-        buffer.append(processingString.substring(end));
+      final int[] bounds = new int[4];
+      if (findSpaceTolerantMacros(processingString, 0, bounds)) {
+        final StringBuilder buffer = new StringBuilder();
+        int end = 0;
+        do {
+          final String macrosBody = processingString.substring(bounds[1], bounds[2]);
+          final Value value = Expression.evalExpression(macrosBody, context);
+          buffer.append(processingString, end, bounds[0]);
+          buffer.append(value.toString());
+          end = bounds[3];
+        } while (findSpaceTolerantMacros(processingString, end, bounds));
+        buffer.append(processingString, end, processingString.length());
+        result = buffer.toString();
       }
-      result = buffer.toString();
     } else {
       while (!Thread.currentThread().isInterrupted()) {
         position = result.indexOf("/*$");
@@ -223,6 +356,21 @@ public final class PreprocessorUtils {
     }
   }
 
+  /**
+   * Read whole text file into packed line indexed form.
+   *
+   * @param file     the file to be read, must not be null
+   * @param encoding the file encoding, if null then UTF-8
+   * @return the read text, must not be null
+   * @throws IOException it will be thrown for IO errors or if the file doesn't exist
+   * @since 7.0.3
+   */
+  @Nonnull
+  public static LineIndexedText readWholeText(@Nonnull final File file, @Nullable final Charset encoding) throws IOException {
+    checkFile(file);
+    return LineIndexedText.read(file, encoding == null ? StandardCharsets.UTF_8 : encoding);
+  }
+
   @Nonnull
   @MustNotContainNull
   public static String[] readWholeTextFileIntoArray(@Nonnull final File file, @Nullable final Charset encoding, @Nullable final AtomicBoolean endedByNextLine) throws IOException {
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.meta.annotation.MustNotContainNull;
+import lombok.Data;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+import static com.igormaznitsa.meta.common.utils.Assertions.assertNotNull;
+
+/**
+ * Scanner of source folder trees. Attributes of every entry are read only once, excluded folder patterns are compiled into single matcher,
+ * sub-folders can be scanned in parallel. Found files are returned in stable order sorted by name inside every folder.
+ *
+ * @author Igor Maznitsa (igor.maznitsa@igormaznitsa.com)
+ * @since 7.0.3
+ */
+public final class SourceTreeScanner {
+
+  private final PreprocessorContext context;
+  private final List<String> excludedFolderPatterns;
+  private final Pattern excludedFolderMatcher;
+  private final boolean parallel;
+
+  /**
+   * Constructor.
+   *
+   * @param context                the preprocessor context to be used for logging, must not be null
+   * @param excludedFolderPatterns ANT path patterns of folders to be excluded, they are matched against folder paths relative to source root, must not be null
+   * @param parallel               if true then sub-folders are scanned in a thread pool
+   */
+  public SourceTreeScanner(@Nonnull final PreprocessorContext context, @Nonnull @MustNotContainNull final List<String> excludedFolderPatterns, final boolean parallel) {
+    this.context = assertNotNull(context);
+    this.excludedFolderPatterns = new ArrayList<>(assertNotNull(excludedFolderPatterns));
+    this.excludedFolderMatcher = compileAntPatterns(this.excludedFolderPatterns);
+    this.parallel = parallel;
+  }
+
+  /**
+   * Compile ANT path patterns into one regular expression. Supported wildcards are '?' (a char), '*' (zero or more chars inside path segment) and '**' (zero or more path segments).
+   * Both slash and back slash are recognized as separators.
+   *
+   * @param patterns ANT patterns, must not be null
+   * @return compiled pattern or null if the list is empty
+   */
+  @Nullable
+  static Pattern compileAntPatterns(@Nonnull @MustNotContainNull final List<String> patterns) {
+    if (patterns.isEmpty()) {
+      return null;
+    }
+    final StringBuilder buffer = new StringBuilder();
+    for (final String pattern : patterns) {
+      if (buffer.length() > 0) {
+        buffer.append('|');
+      }
+      buffer.append("(?:").append(antPatternToRegex(pattern)).append(')');
+    }
+    return Pattern.compile(buffer.toString());
+  }
+
+  @Nonnull
+  private static String antPatternToRegex(@Nonnull final String pattern) {
+    final String[] segments = pattern.replace('\\', '/').split("/", -1);
+    final StringBuilder result = new StringBuilder();
+    for (int i = 0; i < segments.length; i++) {
+      final String segment = segments[i];
+      final boolean last = i == segments.length - 1;
+      if ("**".equals(segment)) {
+        if (last) {
+          if (result.length() > 0 && result.charAt(result.length() - 1) == '/') {
+            // remove the separator added after previous segment to match the folder itself
+            result.setLength(result.length() - 1);
+            result.append("(?:/.*)?");
+          } else {
+            result.append(".*");
+          }
+        } else {
+          result.append("(?:[^/]*/)*");
+        }
+      } else {
+        for (final char c : segment.toCharArray()) {
+          switch (c) {
+            case '*':
+              result.append("[^/]*");
+              break;
+            case '?':
+              result.append("[^/]");
+              break;
+            default:
+              result.append(Pattern.quote(String.valueOf(c)));
+              break;
+          }
+        }
+        if (!last) {
+          result.append('/');
+        }
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Scan a source root folder.
+   *
+   * @param root the source root folder, must not be null
+   * @return list of found regular files, must not be null
+   * @throws IOException it will be thrown for IO errors
+   */
+  @Nonnull
+  @MustNotContainNull
+  public List<FoundFile> scan(@Nonnull final File root) throws IOException {
+    final Path rootPath = root.toPath();
+    if (!Files.isDirectory(rootPath)) {
+      this.context.logWarning("Can't find files in folder: " + root);
+      return Collections.emptyList();
+    }
+
+    final Set<Object> visitedFolders = ConcurrentHashMap.newKeySet();
+    visitedFolders.add(makeFolderKey(rootPath, Files.readAttributes(rootPath, BasicFileAttributes.class)));
+
+    final FolderTask task = new FolderTask(rootPath, rootPath, visitedFolders);
+    try {
+      if (this.parallel) {
+        final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+          return pool.invoke(task);
+        } finally {
+          pool.shutdownNow();
+        }
+      } else {
+        return task.compute();
+      }
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  @Nonnull
+  private static Object makeFolderKey(@Nonnull final Path folder, @Nonnull final BasicFileAttributes attributes) throws IOException {
+    final Object key = attributes.fileKey();
+    return key == null ? folder.toRealPath() : key;
+  }
+
+  private boolean isExcludedFolder(@Nonnull final String relativePath) {
+    return this.excludedFolderMatcher != null && this.excludedFolderMatcher.matcher(relativePath.replace('\\', '/')).matches();
+  }
+
+  @Nonnull
+  private String findExcludingPattern(@Nonnull final String relativePath) {
+    final String normalized = relativePath.replace('\\', '/');
+    for (final String pattern : this.excludedFolderPatterns) {
+      if (Pattern.matches(antPatternToRegex(pattern), normalized)) {
+        return pattern;
+      }
+    }
+    return "";
+  }
+
+  /**
+   * Found regular file.
+   */
+  @Data
+  public static final class FoundFile {
+    /**
+     * The file.
+     */
+    private final File file;
+    /**
+     * Path of the file relative to its source root, it uses system separator.
+     */
+    private final String relativePath;
+    /**
+     * Size of the file in bytes.
+     */
+    private final long size;
+  }
+
+  private final class FolderTask extends RecursiveTask<List<FoundFile>> {
+
+    private static final long serialVersionUID = 5718213874210021123L;
+
+    private final transient Path root;
+    private final transient Path folder;
+    private final transient Set<Object> visitedFolders;
+
+    private FolderTask(@Nonnull final Path root, @Nonnull final Path folder, @Nonnull final Set<Object> visitedFolders) {
+      this.root = root;
+      this.folder = folder;
+      this.visitedFolders = visitedFolders;
+    }
+
+    @Override
+    @Nonnull
+    @MustNotContainNull
+    protected List<FoundFile> compute() {
+      context.logDebug("Looking for files in folder: " + this.folder);
+
+      final List<Path> entries = new ArrayList<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.folder)) {
+        stream.forEach(entries::add);
+      } catch (IOException ex) {
+        context.logWarning("Can't find files in folder: " + this.folder);
+        return Collections.emptyList();
+      }
+      entries.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+
+      final List<Object> parts = new ArrayList<>(entries.size());
+      for (final Path entry : entries) {
+        final BasicFileAttributes attributes;
+        try {
+          attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+        } catch (IOException ex) {
+          context.logWarning("Can't read attributes: " + entry);
+          continue;
+        }
+
+        final String relativePath = this.root.relativize(entry).toString();
+        if (attributes.isDirectory()) {
+          if (isExcludedFolder(relativePath)) {
+            context.logForVerbose(String.format("Folder '%s' excluded by '%s'", entry, findExcludingPattern(relativePath)));
+          } else {
+            final boolean notVisited;
+            try {
+              notVisited = this.visitedFolders.add(makeFolderKey(entry, attributes));
+            } catch (IOException ex) {
+              throw new UncheckedIOException(ex);
+            }
+            if (notVisited) {
+              final FolderTask task = new FolderTask(this.root, entry, this.visitedFolders);
+              if (parallel) {
+                task.fork();
+              }
+              parts.add(task);
+            }
+          }
+        } else if (attributes.isRegularFile()) {
+          parts.add(new FoundFile(entry.toFile(), relativePath, attributes.size()));
+        }
+      }
+
+      final List<FoundFile> result = new ArrayList<>();
+      for (final Object part : parts) {
+        if (part instanceof FolderTask) {
+          final FolderTask task = (FolderTask) part;
+          result.addAll(parallel ? task.join() : task.compute());
+        } else {
+          result.add((FoundFile) part);
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -22,11 +22,15 @@
 package com.igormaznitsa.jcp;
 
 import com.igormaznitsa.jcp.cmdline.CommandLineHandler;
+import com.igormaznitsa.jcp.context.DependencyGraph;
+import com.igormaznitsa.jcp.context.IncrementalManifest;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
 import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.expression.Value;
 import com.igormaznitsa.meta.common.utils.Deferrers;
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -35,7 +39,10 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.igormaznitsa.meta.common.utils.Deferrers.defer;
 import static org.junit.Assert.*;
@@ -131,6 +138,237 @@ public final class JCPreprocessorTest {
     }
   }
 
+  private static PreprocessorContext executeForGlobalPhase(final File sourceFolder, final File targetFolder, final boolean parallel) throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+    context.setSources(Collections.singletonList(sourceFolder.getCanonicalPath()));
+    context.setTarget(targetFolder);
+    context.setDryRun(true);
+    context.setParallel(parallel);
+
+    final JcpPreprocessor.Statistics stat = new JcpPreprocessor(context).execute();
+    assertEquals(3, stat.getPreprocessed());
+    assertEquals(1, stat.getExcluded());
+    return context;
+  }
+
+  @Test
+  public void testParallelGlobalPhaseSameAsSequential() throws Exception {
+    final TemporaryFolder folder = new TemporaryFolder();
+    folder.create();
+    try {
+      final File src = folder.newFolder("src");
+      for (int i = 0; i < 4; i++) {
+        FileUtils.write(new File(src, "file" + i + ".txt"), "text\n//#_if true\n//#global shared=" + i + "\n//#global own" + i + "=\"" + i + "\"\n//#_else\n//#global shared=-1\n//#_endif\n//#excludeif own" + i + "==\"2\"\n", StandardCharsets.UTF_8);
+      }
+
+      final PreprocessorContext sequential = executeForGlobalPhase(src, folder.newFolder("seq"), false);
+      final PreprocessorContext parallel = executeForGlobalPhase(src, folder.newFolder("par"), true);
+
+      assertEquals(sequential.getGlobalVarTable(), parallel.getGlobalVarTable());
+      assertEquals(5, parallel.getGlobalVarTable().size());
+    } finally {
+      folder.delete();
+    }
+  }
+
+  private static JcpPreprocessor.Statistics executeIncremental(final File sourceFolder, final File targetFolder, final String globalValue) throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+    context.setSources(Collections.singletonList(sourceFolder.getCanonicalPath()));
+    context.setTarget(targetFolder);
+    context.setIncremental(true);
+    context.setGlobalVariable("value", Value.valueOf(globalValue));
+    return new JcpPreprocessor(context).execute();
+  }
+
+  @Test
+  public void testIncrementalMode() throws Exception {
+    final TemporaryFolder folder = new TemporaryFolder();
+    folder.create();
+    try {
+      final File src = folder.newFolder("src");
+      final File target = folder.newFolder("target");
+      final File included = new File(src, "part.inc");
+
+      FileUtils.write(new File(src, "main.txt"), "//#include \"part.inc\"\nmain\n", StandardCharsets.UTF_8);
+      FileUtils.write(new File(src, "other.txt"), "/*$value$*/\n", StandardCharsets.UTF_8);
+      FileUtils.write(included, "part\n", StandardCharsets.UTF_8);
+
+      JcpPreprocessor.Statistics stat = executeIncremental(src, target, "one");
+      assertEquals(2, stat.getPreprocessed());
+      assertEquals(0, stat.getSkipped());
+      assertTrue(new File(target, IncrementalManifest.FILE_NAME).isFile());
+      assertEquals(Collections.singletonList(new File(src, "main.txt").getCanonicalFile()), DependencyGraph.load(new File(target, DependencyGraph.FILE_NAME)).findDependents(included));
+
+      stat = executeIncremental(src, target, "one");
+      assertEquals(0, stat.getPreprocessed());
+      assertEquals(2, stat.getSkipped());
+
+      FileUtils.write(included, "changed part\n", StandardCharsets.UTF_8);
+      stat = executeIncremental(src, target, "one");
+      assertEquals(1, stat.getPreprocessed());
+      assertEquals(1, stat.getSkipped());
+      assertEquals("changed part\nmain\n", FileUtils.readFileToString(new File(target, "main.txt"), StandardCharsets.UTF_8).replace("\r", ""));
+
+      stat = executeIncremental(src, target, "two");
+      assertEquals(2, stat.getPreprocessed());
+      assertEquals(0, stat.getSkipped());
+      assertEquals("two\n", FileUtils.readFileToString(new File(target, "other.txt"), StandardCharsets.UTF_8).replace("\r", ""));
+
+      assertTrue(new File(target, "other.txt").delete());
+      stat = executeIncremental(src, target, "two");
+      assertEquals(1, stat.getPreprocessed());
+      assertEquals(1, stat.getSkipped());
+    } finally {
+      folder.delete();
+    }
+  }
+
+  @Test
+  public void testIncrementalMode_VolatileVariablesAndParallel() throws Exception {
+    final TemporaryFolder folder = new TemporaryFolder();
+    folder.create();
+    try {
+      final File src = folder.newFolder("src");
+      final File target = folder.newFolder("target");
+
+      FileUtils.write(new File(src, "time.txt"), "/*$__time__$*/\n", StandardCharsets.UTF_8);
+      FileUtils.write(new File(src, "env.txt"), "/*$env.java.version$*/\n", StandardCharsets.UTF_8);
+      FileUtils.write(new File(src, "static.txt"), "/*$__filename__$*/\n", StandardCharsets.UTF_8);
+
+      JcpPreprocessor.Statistics stat = executeIncremental(src, target, "one");
+      assertEquals(3, stat.getPreprocessed());
+      assertEquals(0, stat.getSkipped());
+
+      stat = executeIncremental(src, target, "one");
+      assertEquals(2, stat.getPreprocessed());
+      assertEquals(1, stat.getSkipped());
+
+      final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+      context.setSources(Collections.singletonList(src.getCanonicalPath()));
+      context.setTarget(target);
+      context.setIncremental(true);
+      context.setParallel(true);
+      context.setGlobalVariable("value", Value.valueOf("one"));
+      stat = new JcpPreprocessor(context).execute();
+      assertEquals(2, stat.getPreprocessed());
+      assertEquals(1, stat.getSkipped());
+    } finally {
+      folder.delete();
+    }
+  }
+
+  private static void waitForTargetText(final File file, final String expected) throws Exception {
+    final long deadline = System.currentTimeMillis() + 20000L;
+    while (System.currentTimeMillis() < deadline) {
+      if (file.isFile() && expected.equals(FileUtils.readFileToString(file, StandardCharsets.UTF_8).replace("\r", ""))) {
+        return;
+      }
+      Thread.sleep(50L);
+    }
+    fail("Can't get expected text in " + file);
+  }
+
+  @Test(timeout = 60000L)
+  public void testWatchMode() throws Exception {
+    final TemporaryFolder folder = new TemporaryFolder();
+    folder.create();
+    try {
+      final File src = folder.newFolder("src");
+      final File target = folder.newFolder("target");
+      final File included = new File(src, "part.inc");
+      final File other = new File(src, "other.txt");
+
+      FileUtils.write(new File(src, "main.txt"), "//#include \"part.inc\"\nmain\n", StandardCharsets.UTF_8);
+      FileUtils.write(other, "/*$value$*/\n", StandardCharsets.UTF_8);
+      FileUtils.write(included, "part\n", StandardCharsets.UTF_8);
+
+      final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+      context.setSources(Collections.singletonList(src.getCanonicalPath()));
+      context.setTarget(target);
+      context.setWatch(true);
+      context.setGlobalVariable("value", Value.valueOf("one"));
+
+      final AtomicReference<Throwable> error = new AtomicReference<>();
+      final Thread watcher = new Thread(() -> {
+        try {
+          new JcpPreprocessor(context).watch();
+        } catch (Throwable ex) {
+          error.set(ex);
+        }
+      }, "jcp-watch-test");
+      watcher.setDaemon(true);
+      watcher.start();
+      try {
+        waitForTargetText(new File(target, "main.txt"), "part\nmain\n");
+        waitForTargetText(new File(target, "other.txt"), "one\n");
+
+        // only files depending on the changed file must be preprocessed
+        FileUtils.write(new File(target, "other.txt"), "untouched\n", StandardCharsets.UTF_8);
+        FileUtils.write(included, "changed part\n", StandardCharsets.UTF_8);
+        waitForTargetText(new File(target, "main.txt"), "changed part\nmain\n");
+        assertEquals("untouched\n", FileUtils.readFileToString(new File(target, "other.txt"), StandardCharsets.UTF_8));
+
+        // global directive makes full global phase and preprocessing of all files
+        FileUtils.write(other, "//#global value=\"two\"\n/*$value$*/\n", StandardCharsets.UTF_8);
+        waitForTargetText(new File(target, "other.txt"), "two\n");
+      } finally {
+        watcher.interrupt();
+        watcher.join(10000L);
+      }
+      assertFalse(watcher.isAlive());
+      assertNull(error.get());
+    } finally {
+      folder.delete();
+    }
+  }
+
+  @Test
+  public void testParallelDefineSameAsSequential() throws Exception {
+    final TemporaryFolder folder = new TemporaryFolder();
+    folder.create();
+    try {
+      // every file is placed in own source folder to keep the file order
+      final List<String> sources = new ArrayList<>();
+      final File[] files = new File[8];
+      for (int i = 0; i < files.length; i++) {
+        final File src = folder.newFolder("src" + i);
+        sources.add(src.getCanonicalPath());
+        files[i] = new File(src, "file" + i + ".txt");
+      }
+      FileUtils.write(new File(files[2].getParentFile(), "defs.inc"), "//#define included shared+1\n", StandardCharsets.UTF_8);
+      FileUtils.write(files[0], "//#define shared 10\n//#define gone true\n", StandardCharsets.UTF_8);
+      FileUtils.write(files[1], "value=/*$shared$*/\n", StandardCharsets.UTF_8);
+      FileUtils.write(files[2], "//#include \"defs.inc\"\nincluded=/*$included$*/\n", StandardCharsets.UTF_8);
+      FileUtils.write(files[3], "//#undef gone\n//#define shared included*2\n", StandardCharsets.UTF_8);
+      for (int i = 4; i < files.length; i++) {
+        FileUtils.write(files[i], "value=/*$shared$*/,/*$included$*/,/*$own$*/\n//#ifdefined gone\ngone\n//#endif\n", StandardCharsets.UTF_8);
+      }
+
+      final File[] targets = new File[] {folder.newFolder("seq"), folder.newFolder("par")};
+      final List<Map<String, Value>> globals = new ArrayList<>();
+      for (int i = 0; i < targets.length; i++) {
+        final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+        context.setSources(sources);
+        context.setTarget(targets[i]);
+        context.setParallel(i > 0);
+        context.setGlobalVariable("own", Value.valueOf("own"));
+        assertEquals(files.length, new JcpPreprocessor(context).execute().getPreprocessed());
+        globals.add(new HashMap<>(context.getGlobalVarTable()));
+      }
+
+      assertEquals("value=10", FileUtils.readFileToString(new File(targets[0], "file1.txt"), StandardCharsets.UTF_8).trim());
+      assertEquals("included=11", FileUtils.readFileToString(new File(targets[0], "file2.txt"), StandardCharsets.UTF_8).trim());
+      assertEquals("value=22,11,own", FileUtils.readFileToString(new File(targets[0], "file7.txt"), StandardCharsets.UTF_8).trim());
+      for (final File file : files) {
+        final String name = file.getName();
+        assertEquals(name, FileUtils.readFileToString(new File(targets[0], name), StandardCharsets.UTF_8), FileUtils.readFileToString(new File(targets[1], name), StandardCharsets.UTF_8));
+      }
+      assertEquals(globals.get(0), globals.get(1));
+    } finally {
+      folder.delete();
+    }
+  }
+
   @Test
   public void testCLIHandlerNameConflicts() {
     final List<String> checked = new ArrayList<>();
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.containers;
+
+import com.igormaznitsa.jcp.utils.PreprocessorUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class LineIndexedTextTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private void assertSameAsReader(final String text, final Charset charset) throws Exception {
+    final File file = tempFolder.newFile();
+    FileUtils.write(file, text, charset);
+
+    final AtomicBoolean ended = new AtomicBoolean();
+    final String[] expected = PreprocessorUtils.readWholeTextFileIntoArray(file, charset, ended);
+    final LineIndexedText packed = LineIndexedText.read(file, charset);
+
+    assertArrayEquals(expected, packed.toArray());
+    assertEquals(expected.length, packed.size());
+    assertEquals(ended.get(), packed.isEndedByNextLine());
+  }
+
+  @Test
+  public void testLineSplitting() throws Exception {
+    final String[] texts = new String[] {"", "\n", "\r\n", "\r", "a", "a\n", "a\r\n", "a\r", "a\nb", "a\r\nb\r\n", "a\n\nb\n\n", "a\rb\r\n", "\n\na", "a\r\r\n"};
+    for (final String text : texts) {
+      assertSameAsReader(text, StandardCharsets.UTF_8);
+      assertSameAsReader(text, StandardCharsets.ISO_8859_1);
+    }
+  }
+
+  @Test
+  public void testNotAsciiContent() throws Exception {
+    assertSameAsReader("привет\r\nмир\n", StandardCharsets.UTF_8);
+    assertSameAsReader("café\nnaïve", StandardCharsets.ISO_8859_1);
+    assertSameAsReader("été\n", StandardCharsets.UTF_16);
+  }
+
+  @Test
+  public void testWrap() {
+    final String[] lines = new String[] {"a", "bc"};
+    final LineIndexedText text = LineIndexedText.wrap(lines, true);
+    assertEquals(2, text.size());
+    assertEquals("bc", text.getLine(1));
+    assertArrayEquals(lines, text.toArray());
+    assertNotSame(lines, text.toArray());
+    assertTrue(text.isEndedByNextLine());
+  }
+
+  @Test
+  public void testDirectivePrefixed() {
+    final String[] lines = new String[] {"//#if", "  \t//#_if", "// #global", "//\t $$x", "//", "//#", "#//#", "/ /#", "  text //#", "привет //#", "// x #"};
+    final boolean[] hashPrefixed = new boolean[] {true, true, true, false, false, true, false, false, false, false, false};
+
+    final StringBuilder buffer = new StringBuilder();
+    for (final String line : lines) {
+      buffer.append(line).append("\r\n");
+    }
+    final LineIndexedText[] texts = new LineIndexedText[] {
+        LineIndexedText.wrap(lines, false),
+        LineIndexedText.parse(buffer.toString().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8),
+        LineIndexedText.parse(buffer.toString().replace("привет", "hello").getBytes(StandardCharsets.US_ASCII), StandardCharsets.US_ASCII)
+    };
+
+    for (final LineIndexedText text : texts) {
+      assertEquals(lines.length, text.size());
+      for (int i = 0; i < lines.length; i++) {
+        assertEquals(lines[i], hashPrefixed[i], text.isDirectivePrefixed(i, '#'));
+      }
+      assertTrue(text.isDirectivePrefixed(3, '$'));
+    }
+  }
+
+  @Test
+  public void testWrongIndex() {
+    final LineIndexedText text = LineIndexedText.parse("a\nb".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    assertEquals("b", text.getLine(1));
+    try {
+      text.getLine(2);
+      fail("Must throw IOOBE");
+    } catch (IndexOutOfBoundsException ex) {
+      // expected
+    }
+  }
+}
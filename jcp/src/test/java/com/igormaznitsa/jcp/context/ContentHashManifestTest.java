@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ContentHashManifestTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static long hash(final String text) {
+    final byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+    return ContentHashManifest.hash(data, 0, data.length);
+  }
+
+  @Test
+  public void testHash() throws Exception {
+    assertEquals(0xEF46DB3751D8E999L, hash(""));
+    assertEquals(0xD24EC4F1A98C6E5BL, hash("a"));
+    assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+    assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"));
+
+    final byte[] data = new byte[200011];
+    new Random(12345L).nextBytes(data);
+    final File file = tempFolder.newFile("data.bin");
+    FileUtils.writeByteArrayToFile(file, data);
+    assertEquals(ContentHashManifest.hash(data, 0, data.length), ContentHashManifest.hash(file));
+    assertNotEquals(ContentHashManifest.hash(data, 0, data.length), ContentHashManifest.hash(data, 1, data.length - 1));
+  }
+
+  @Test
+  public void testCheckContentAndSaveLoad() throws Exception {
+    final File file = tempFolder.newFile("out.txt");
+    FileUtils.write(file, "hello", StandardCharsets.UTF_8);
+    final long hash = hash("hello");
+
+    final ContentHashManifest manifest = new ContentHashManifest();
+    assertNull(manifest.checkContent(file, 5L, hash));
+    assertEquals(Boolean.FALSE, manifest.checkContent(file, 4L, hash));
+    assertEquals(Boolean.FALSE, manifest.checkContent(new File(tempFolder.getRoot(), "unknown.txt"), 5L, hash));
+
+    manifest.register(file, hash);
+    assertEquals(Boolean.TRUE, manifest.checkContent(file, 5L, hash));
+    assertEquals(Boolean.FALSE, manifest.checkContent(file, 5L, hash("world")));
+
+    final File manifestFile = new File(tempFolder.getRoot(), ContentHashManifest.FILE_NAME);
+    manifest.save(manifestFile);
+    final ContentHashManifest loaded = ContentHashManifest.load(manifestFile);
+    assertEquals(1, loaded.size());
+    assertEquals(Boolean.TRUE, loaded.checkContent(file, 5L, hash));
+
+    // changed file must be checked by content
+    FileUtils.write(file, "world", StandardCharsets.UTF_8);
+    assertTrue(file.setLastModified(file.lastModified() + 10000L));
+    assertNull(loaded.checkContent(file, 5L, hash));
+
+    assertEquals(0, ContentHashManifest.load(new File(tempFolder.getRoot(), "unknown")).size());
+  }
+}
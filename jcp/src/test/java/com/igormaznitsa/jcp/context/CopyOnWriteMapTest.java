@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CopyOnWriteMapTest {
+
+  @Test
+  public void testFork_OnlyChangedEntriesAreKept() {
+    final CopyOnWriteMap<String, Integer> map = new CopyOnWriteMap<>();
+    for (int i = 0; i < 100; i++) {
+      map.put("key" + i, i);
+    }
+
+    final CopyOnWriteMap<String, Integer> fork = map.fork();
+    assertTrue(map.isShared());
+    assertTrue(fork.isShared());
+    assertEquals(map, fork);
+
+    fork.put("key1", 1000);
+    fork.put("new", 2000);
+    fork.remove("key2");
+    fork.remove("unknown");
+
+    assertEquals(3, fork.getDeltaSize());
+    assertEquals(100, fork.size());
+    assertEquals(Integer.valueOf(1000), fork.get("key1"));
+    assertEquals(Integer.valueOf(2000), fork.get("new"));
+    assertNull(fork.get("key2"));
+    assertFalse(fork.containsKey("key2"));
+
+    assertEquals(0, map.getDeltaSize());
+    assertEquals(100, map.size());
+    assertEquals(Integer.valueOf(1), map.get("key1"));
+    assertEquals(Integer.valueOf(2), map.get("key2"));
+    assertFalse(map.containsKey("new"));
+
+    final Map<String, Integer> etalon = new HashMap<>(map);
+    etalon.put("key1", 1000);
+    etalon.put("new", 2000);
+    etalon.remove("key2");
+    assertEquals(etalon, fork);
+    assertEquals(etalon, new HashMap<>(fork));
+  }
+
+  @Test
+  public void testFork_ChangedMapIsMergedForNextFork() {
+    final CopyOnWriteMap<String, Integer> map = new CopyOnWriteMap<>();
+    map.put("a", 1);
+    final CopyOnWriteMap<String, Integer> first = map.fork();
+    map.put("b", 2);
+    map.remove("a");
+    assertEquals(2, map.getDeltaSize());
+
+    final CopyOnWriteMap<String, Integer> second = map.fork();
+    assertEquals(0, map.getDeltaSize());
+    assertEquals(0, second.getDeltaSize());
+    assertEquals(1, second.size());
+    assertEquals(Integer.valueOf(2), second.get("b"));
+    assertEquals(1, first.size());
+    assertEquals(Integer.valueOf(1), first.get("a"));
+  }
+
+  @Test
+  public void testViews_ChangeMap() {
+    final CopyOnWriteMap<String, Integer> map = new CopyOnWriteMap<>();
+    map.put("a", 1);
+    map.put("b", 2);
+    map.put("c", 3);
+    final CopyOnWriteMap<String, Integer> fork = map.fork();
+
+    int version = fork.getVersion();
+    for (final Map.Entry<String, Integer> e : fork.entrySet()) {
+      if ("a".equals(e.getKey())) {
+        e.setValue(10);
+      }
+    }
+    assertTrue(fork.getVersion() > version);
+    assertEquals(Integer.valueOf(10), fork.get("a"));
+
+    version = fork.getVersion();
+    final Iterator<String> iterator = fork.keySet().iterator();
+    while (iterator.hasNext()) {
+      if ("b".equals(iterator.next())) {
+        iterator.remove();
+      }
+    }
+    assertTrue(fork.getVersion() > version);
+    assertFalse(fork.containsKey("b"));
+
+    assertTrue(fork.values().remove(3));
+    assertEquals(1, fork.size());
+    assertEquals(3, map.size());
+    assertEquals(Integer.valueOf(1), map.get("a"));
+
+    map.keySet().clear();
+    assertTrue(map.isEmpty());
+    assertEquals(1, fork.size());
+  }
+}
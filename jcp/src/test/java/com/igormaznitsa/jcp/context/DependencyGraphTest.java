@@ -0,0 +1,151 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class DependencyGraphTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testAddAndFind() throws Exception {
+    final File root1 = tempFolder.newFile("root1.txt");
+    final File root2 = tempFolder.newFile("root2.txt");
+    final File header = tempFolder.newFile("header.inc");
+    final File data = tempFolder.newFile("data.xml");
+
+    final DependencyGraph graph = new DependencyGraph();
+    assertTrue(graph.isEmpty());
+
+    graph.addDependencies(root2, Arrays.asList(header, data));
+    graph.addDependencies(root1, Collections.singletonList(header));
+
+    assertEquals(Arrays.asList(root1.getCanonicalFile(), root2.getCanonicalFile()), graph.findDependents(header));
+    assertEquals(Collections.singletonList(root2.getCanonicalFile()), graph.findDependents(new File(data.getParentFile(), "./data.xml")));
+    assertTrue(graph.findDependents(root1).isEmpty());
+    assertEquals(Arrays.asList(data.getCanonicalFile(), header.getCanonicalFile()), graph.getResources());
+  }
+
+  @Test
+  public void testConcurrentAddAndRemove() throws Exception {
+    final File header = tempFolder.newFile("header.inc");
+    final File stable = tempFolder.newFile("stable.txt");
+    final DependencyGraph graph = new DependencyGraph();
+
+    final ExecutorService service = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<?>> tasks = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        final File root = tempFolder.newFile("root" + t + ".txt");
+        tasks.add(service.submit(() -> {
+          for (int i = 0; i < 500; i++) {
+            graph.addDependencies(root, Collections.singletonList(header));
+            graph.removeDependencies(root);
+          }
+          return null;
+        }));
+      }
+      tasks.add(service.submit(() -> {
+        for (int i = 0; i < 500; i++) {
+          graph.addDependencies(stable, Collections.singletonList(header));
+        }
+        return null;
+      }));
+      for (final Future<?> task : tasks) {
+        task.get();
+      }
+    } finally {
+      service.shutdownNow();
+    }
+
+    assertEquals(Collections.singletonList(stable.getCanonicalFile()), graph.findDependents(header));
+  }
+
+  @Test
+  public void testSaveLoad() throws Exception {
+    final File root1 = tempFolder.newFile("root1.txt");
+    final File root2 = tempFolder.newFile("root2.txt");
+    final File header = tempFolder.newFile("header.inc");
+
+    final DependencyGraph graph = new DependencyGraph();
+    graph.addDependencies(root1, Collections.singletonList(header));
+    graph.addDependencies(root2, Arrays.asList(header, root1));
+
+    final File file = new File(tempFolder.getRoot(), DependencyGraph.FILE_NAME);
+    graph.save(file);
+
+    final DependencyGraph loaded = DependencyGraph.load(file);
+    assertEquals(graph.getResources(), loaded.getResources());
+    assertEquals(graph.findDependents(header), loaded.findDependents(header));
+    assertEquals(graph.findDependents(root1), loaded.findDependents(root1));
+
+    assertTrue(DependencyGraph.load(new File(tempFolder.getRoot(), "unknown")).isEmpty());
+  }
+
+  @Test
+  public void testMarkChangedDependentsInIncrementalManifest() throws Exception {
+    final File root1 = tempFolder.newFile("root1.txt");
+    final File root2 = tempFolder.newFile("root2.txt");
+    final File header = tempFolder.newFile("header.inc");
+    final File data = tempFolder.newFile("data.xml");
+    final File target = tempFolder.newFolder("target");
+    assertTrue(new File(target, "root1.txt").createNewFile());
+    assertTrue(new File(target, "root2.txt").createNewFile());
+    FileUtils.write(header, "header", StandardCharsets.UTF_8);
+
+    final DependencyGraph graph = new DependencyGraph();
+    graph.addDependencies(root1, Collections.singletonList(header));
+    graph.addDependencies(root2, Collections.singletonList(data));
+
+    final IncrementalManifest previous = new IncrementalManifest();
+    // the record doesn't keep its dependency so that only the graph can show the change
+    final IncrementalManifest.Record record1 = previous.makeRecord(root1, "root1.txt", Collections.emptyList(), "fp", false);
+    final IncrementalManifest.Record record2 = previous.makeRecord(root2, "root2.txt", Collections.singletonList(data), "fp", false);
+    previous.putRecord(previous.makeRecord(tempFolder.newFile("root3.txt"), "root3.txt", Collections.singletonList(header), "fp", false));
+    previous.putRecord(record1);
+    previous.putRecord(record2);
+
+    FileUtils.write(header, "changed header", StandardCharsets.UTF_8);
+
+    final IncrementalManifest manifest = new IncrementalManifest();
+    manifest.markChangedDependents(previous, graph);
+    assertNull(manifest.checkUpToDate(record1, "fp", target));
+    assertNotNull(manifest.checkUpToDate(record2, "fp", target));
+  }
+}
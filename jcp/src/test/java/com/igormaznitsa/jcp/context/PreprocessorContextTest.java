@@ -22,6 +22,8 @@
 package com.igormaznitsa.jcp.context;
 
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.Variable;
+import com.igormaznitsa.jcp.expression.VariableSlotRegistry;
 import com.igormaznitsa.jcp.extension.PreprocessorExtension;
 import com.igormaznitsa.jcp.logger.PreprocessorLogger;
 import org.junit.Test;
@@ -322,4 +324,147 @@ public class PreprocessorContextTest {
     }
   }
 
+  @Test
+  public void testFindVariable_SlotCacheInvalidation() throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+    final Variable variable = new Variable(" SlotVar ", context.getVariableSlotRegistry());
+    assertEquals("slotvar", variable.getName());
+    assertTrue(variable.getSlot() >= 0);
+    assertEquals(variable.getSlot(), new Variable("slotvar", context.getVariableSlotRegistry()).getSlot());
+    assertEquals(-1, new Variable("slotvar").getSlot());
+
+    assertNull(context.findVariable(variable, false));
+
+    context.setGlobalVariable("slotvar", Value.INT_ONE);
+    assertEquals(Value.INT_ONE, context.findVariable(variable, false));
+
+    context.setLocalVariable("slotvar2", Value.INT_THREE);
+    context.setGlobalVariable("SlotVar", Value.INT_TWO);
+    assertEquals(Value.INT_TWO, context.findVariable(variable, false));
+
+    context.removeGlobalVariable("slotvar");
+    assertNull(context.findVariable(variable, false));
+
+    context.setLocalVariable("slotvar", Value.INT_FOUR);
+    assertEquals(Value.INT_FOUR, context.findVariable(variable, false));
+    context.clearLocalVariables();
+    assertNull(context.findVariable(variable, false));
+
+    final Map<String, Value> globals = new HashMap<>();
+    globals.put("slotvar", Value.INT_FIVE);
+    context.replaceGlobalVariables(globals);
+    assertEquals(Value.INT_FIVE, context.findVariable(variable, false));
+
+    context.getGlobalVarTable().put("slotvar", Value.INT_ONE);
+    assertEquals(Value.INT_ONE, context.findVariable(variable, false));
+    context.getGlobalVarTable().remove("slotvar");
+    assertNull(context.findVariable(variable, false));
+
+    context.setUnknownVariableAsFalse(true);
+    assertEquals(Value.BOOLEAN_FALSE, context.findVariable(new Variable("unknown_slot_var"), false));
+    assertNull(context.findVariable(new Variable("unknown_slot_var"), true));
+  }
+
+  @Test
+  public void testFindVariable_SpecialVariableProcessorClearsSlotCache() throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+    final Variable variable = new Variable("specvar", context.getVariableSlotRegistry());
+    context.setGlobalVariable("specvar", Value.INT_ONE);
+    assertEquals(Value.INT_ONE, context.findVariable(variable, false));
+
+    context.getMapVariableNameToSpecialVarProcessor().put("specvar", new SpecialVariableProcessor() {
+      @Override
+      public String[] getVariableNames() {
+        return new String[] {"specvar"};
+      }
+
+      @Override
+      public Value getVariable(final String varName, final PreprocessorContext context) {
+        return Value.INT_TWO;
+      }
+
+      @Override
+      public void setVariable(final String varName, final Value value, final PreprocessorContext context) {
+      }
+    });
+    assertEquals(Value.INT_TWO, context.findVariable(variable, false));
+  }
+
+  @Test
+  public void testFindVariable_SlotsAreScopedToContext() throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+    final PreprocessorContext another = new PreprocessorContext(new File("some_impossible_folder_121212"));
+    assertNotSame(context.getVariableSlotRegistry(), another.getVariableSlotRegistry());
+    assertSame(context.getVariableSlotRegistry(), context.makeFork().getVariableSlotRegistry());
+
+    final Variable variable = new Variable("first", context.getVariableSlotRegistry());
+    final Variable alien = new Variable("second", another.getVariableSlotRegistry());
+    assertEquals(variable.getSlot(), alien.getSlot());
+
+    context.setGlobalVariable("first", Value.INT_ONE);
+    context.setGlobalVariable("second", Value.INT_TWO);
+    assertEquals(Value.INT_ONE, context.findVariable(variable, false));
+    assertEquals(Value.INT_TWO, context.findVariable(alien, false));
+
+    final VariableSlotRegistry limited = new VariableSlotRegistry(1);
+    assertEquals(0, limited.register("first"));
+    assertEquals(-1, limited.register("second"));
+    assertEquals(0, limited.register("first"));
+    assertEquals(1, limited.size());
+  }
+
+  @Test
+  public void testMakeFork_VariableTablesAreIsolated() throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+    context.setGlobalVariable("global1", Value.INT_ONE);
+    context.setLocalVariable("local1", Value.INT_TWO);
+
+    final PreprocessorContext fork = context.makeFork();
+    final PreprocessorContext clone = new PreprocessorContext(context);
+    assertEquals(context.getGlobalVarTable(), fork.getGlobalVarTable());
+    assertEquals(context.getLocalVarTable(), clone.getLocalVarTable());
+
+    fork.setGlobalVariable("global1", Value.INT_THREE);
+    fork.setGlobalVariable("global2", Value.INT_FOUR);
+    fork.removeLocalVariable("local1");
+    clone.setLocalVariable("local2", Value.INT_FIVE);
+
+    assertEquals(Value.INT_ONE, context.findVariableForName("global1", true));
+    assertNull(context.findVariableForName("global2", true));
+    assertEquals(Value.INT_TWO, context.getLocalVariable("local1"));
+    assertNull(context.getLocalVariable("local2"));
+
+    assertEquals(Value.INT_THREE, fork.findVariableForName("global1", true));
+    assertNull(fork.getLocalVariable("local1"));
+    assertEquals(Value.INT_ONE, clone.findVariableForName("global1", true));
+    assertEquals(Value.INT_FIVE, clone.getLocalVariable("local2"));
+
+    context.setGlobalVariable("global3", Value.INT_ZERO);
+    assertFalse(fork.containsGlobalVariable("global3"));
+    assertFalse(clone.containsGlobalVariable("global3"));
+  }
+
+  @Test
+  public void testMakeFork_ReadGlobalVariables() throws Exception {
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+    context.setGlobalVariable("global1", Value.INT_ONE);
+    assertNull(context.getReadGlobalVariables());
+
+    final PreprocessorContext fork = context.makeFork();
+    assertTrue(fork.getReadGlobalVariables().isEmpty());
+
+    fork.findVariableForName("Global1", true);
+    fork.containsGlobalVariable("unknown");
+    fork.setGlobalVariable("global2", Value.INT_TWO);
+    new PreprocessorContext(fork).removeGlobalVariable("global3");
+    fork.setLocalVariable("local1", Value.INT_THREE);
+    fork.findVariableForName("local1", true);
+    fork.findVariableForName("jcp.version", true);
+
+    assertEquals(new HashSet<>(Arrays.asList("global1", "unknown", "global2", "global3", "local1")), fork.getReadGlobalVariables());
+
+    fork.getGlobalVarTable();
+    assertNull(fork.getReadGlobalVariables());
+  }
+
 }
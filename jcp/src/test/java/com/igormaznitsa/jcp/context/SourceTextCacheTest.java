@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.context;
+
+import com.igormaznitsa.jcp.containers.LineIndexedText;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class SourceTextCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testReadText_CachedForSameFile() throws Exception {
+    final File file = tempFolder.newFile("test.txt");
+    FileUtils.write(file, "line1\nline2\n", StandardCharsets.UTF_8);
+
+    final SourceTextCache cache = new SourceTextCache();
+
+    final LineIndexedText first = cache.readText(file, StandardCharsets.UTF_8);
+    assertArrayEquals(new String[] {"line1", "line2"}, first.toArray());
+    assertTrue(first.isEndedByNextLine());
+
+    assertSame(first, cache.readText(new File(file.getParentFile(), "./test.txt"), StandardCharsets.UTF_8));
+
+    assertEquals(1L, cache.getHits());
+    assertEquals(1L, cache.getMisses());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testReadText_ChangedFileIsReread() throws Exception {
+    final File file = tempFolder.newFile("test.txt");
+    FileUtils.write(file, "line1", StandardCharsets.UTF_8);
+
+    final SourceTextCache cache = new SourceTextCache();
+    assertArrayEquals(new String[] {"line1"}, cache.readText(file, StandardCharsets.UTF_8).toArray());
+
+    FileUtils.write(file, "line1\nline2", StandardCharsets.UTF_8);
+    assertArrayEquals(new String[] {"line1", "line2"}, cache.readText(file, StandardCharsets.UTF_8).toArray());
+
+    assertEquals(0L, cache.getHits());
+    assertEquals(2L, cache.getMisses());
+  }
+
+  @Test
+  public void testReadText_EvictionByWeight() throws Exception {
+    final File file1 = tempFolder.newFile("test1.txt");
+    final File file2 = tempFolder.newFile("test2.txt");
+    FileUtils.write(file1, "1234567", StandardCharsets.UTF_8);
+    FileUtils.write(file2, "7654321", StandardCharsets.UTF_8);
+
+    final SourceTextCache cache = new SourceTextCache(10L);
+    cache.readText(file1, StandardCharsets.UTF_8);
+    cache.readText(file2, StandardCharsets.UTF_8);
+    assertEquals(1, cache.size());
+
+    cache.readText(file2, StandardCharsets.UTF_8);
+    assertEquals(1L, cache.getHits());
+  }
+
+  @Test
+  public void testReadText_DisabledCache() throws Exception {
+    final File file = tempFolder.newFile("test.txt");
+    FileUtils.write(file, "line1", StandardCharsets.UTF_8);
+
+    final SourceTextCache cache = new SourceTextCache(0L);
+    cache.readText(file, StandardCharsets.UTF_8);
+    cache.readText(file, StandardCharsets.UTF_8);
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.getHits());
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.directives;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class DirectiveHandlerTrieTest {
+
+  private static AbstractDirectiveHandler findByScan(final String directive) {
+    for (final AbstractDirectiveHandler handler : AbstractDirectiveHandler.getAllDirectives()) {
+      if (directive.startsWith(handler.getName())) {
+        return handler;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testSameResultAsOrderedScan() {
+    final DirectiveHandlerTrie trie = AbstractDirectiveHandler.getDirectiveTrie();
+    for (final AbstractDirectiveHandler handler : AbstractDirectiveHandler.getAllDirectives()) {
+      for (final String tail : asList("", " ", " a==b", "def x", "if true", "l x", "x")) {
+        final String directive = handler.getName() + tail;
+        assertSame(directive, findByScan(directive), trie.find(directive));
+      }
+    }
+  }
+
+  @Test
+  public void testLongestNameIndependentOfOrder() {
+    final List<AbstractDirectiveHandler> handlers = new ArrayList<>(asList(AbstractDirectiveHandler.getAllDirectives()));
+    Collections.reverse(handlers);
+    final DirectiveHandlerTrie trie = new DirectiveHandlerTrie(handlers.toArray(new AbstractDirectiveHandler[0]));
+
+    assertEquals(IfDirectiveHandler.class, trie.find("if a>b").getClass());
+    assertEquals(IfDefDirectiveHandler.class, trie.find("ifdef a").getClass());
+    assertEquals(IfDefinedDirectiveHandler.class, trie.find("ifdefined a").getClass());
+    assertEquals(EndDirectiveHandler.class, trie.find("end").getClass());
+    assertEquals(EndIfDirectiveHandler.class, trie.find("endif").getClass());
+    assertEquals(DefinelDirectiveHandler.class, trie.find("definel a").getClass());
+    assertEquals(ExitIfDirectiveHandler.class, trie.find("exitif true").getClass());
+  }
+
+  @Test
+  public void testUnknownDirective() {
+    final DirectiveHandlerTrie trie = AbstractDirectiveHandler.getDirectiveTrie();
+    assertNull(trie.find(""));
+    assertNull(trie.find("unknown"));
+    assertNull(trie.find("i"));
+    assertNull(new DirectiveHandlerTrie().find("if"));
+  }
+}
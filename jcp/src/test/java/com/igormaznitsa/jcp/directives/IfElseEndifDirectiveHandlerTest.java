@@ -48,6 +48,12 @@ public class IfElseEndifDirectiveHandlerTest extends AbstractDirectiveHandlerAcc
     assertPreprocessorException("\n\n\n   \n  //#if true\n//#if true\n//#endif\n", 5, null);
   }
 
+  @Test
+  public void testIf_ExceptionForUnknownDirectiveInInactiveBlock() throws Exception {
+    assertPreprocessorException("//#if false\n//#if true\n//#unknowndirective\n//#endif\n//#endif", 3, null);
+    assertPreprocessorException("//#if true\n//#else\n//#while true\n//#endif\n//#end\n//#endif\n//#endif", 6, null);
+  }
+
   @Test
   public void testElse_ExeptionWithoutIf() throws Exception {
     assertPreprocessorException("\n\n\n   \n  //#else  \ntest\n  //#endif", 5, null);
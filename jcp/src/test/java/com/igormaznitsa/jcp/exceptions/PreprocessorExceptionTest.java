@@ -65,6 +65,23 @@ public final class PreprocessorExceptionTest {
     }
   }
 
+  @Test
+  public void testExceptionStringIndex_WrongArguments() throws Exception {
+    final File file = new File(this.getClass().getResource("wrong_arguments.txt").toURI());
+
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+    context.setDryRun(true);
+
+    final FileInfoContainer container = new FileInfoContainer(file, "test", false);
+    try {
+      container.preprocessFile(null, context);
+      fail("Must throw PreprocessorException");
+    } catch (PreprocessorException expected) {
+      assertEquals("Expected correct line number", 7, expected.getLineNumber());
+      assertEquals("Expected source line", "//#local hello = strlen(\"a\") 3", expected.getProcessingString());
+    }
+  }
+
   @Test
   public void testExceptionStringIndex_WrongBracketInIncluded() throws Exception {
     final File file = new File(this.getClass().getResource("wrong_bracket_include.txt").toURI());
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.AbstractSpyPreprocessorContextTest;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.exceptions.PreprocessorException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompiledExpressionTest extends AbstractSpyPreprocessorContextTest {
+
+  private static CompiledExpression compile(final String expression, final PreprocessorContext context) throws Exception {
+    return ExpressionParser.getInstance().parse(expression, context).compile();
+  }
+
+  @Test
+  public void testConstantsAndOperators() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    assertEquals(Value.valueOf(7L), compile("1+2*3", context).eval(context));
+    assertEquals(Value.valueOf("a1"), compile("\"a\"+1", context).eval(context));
+    assertEquals(Value.BOOLEAN_TRUE, compile("!false && 3>2", context).eval(context));
+    assertEquals(Value.valueOf(-5L), compile("-5", context).eval(context));
+  }
+
+  @Test
+  public void testVariablesAndFunctions() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    final CompiledExpression compiled = compile("abs(some)+strlen(\"abc\")", context);
+
+    context.setLocalVariable("some", Value.valueOf(-2L));
+    assertEquals(Value.valueOf(5L), compiled.eval(context));
+    context.setLocalVariable("some", Value.valueOf(-2.5f));
+    assertEquals(Value.valueOf(5.5f), compiled.eval(context));
+  }
+
+  @Test
+  public void testErrorsForWrongTypes() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    try {
+      compile("1+true", context).eval(context);
+      fail("Must throw PE");
+    } catch (PreprocessorException ex) {
+      assertTrue(ex.getMessage().contains("Unsupported arguments detected for operator '+'"));
+    }
+
+    try {
+      compile("strlen(1)", context).eval(context);
+      fail("Must throw PE");
+    } catch (PreprocessorException ex) {
+      assertTrue(ex.getMessage().contains("Unsupported argument detected for 'strlen'"));
+    }
+
+    try {
+      compile("unknown_var+1", context).eval(context);
+      fail("Must throw RE");
+    } catch (RuntimeException ex) {
+      assertEquals("Unknown variable [unknown_var]", ex.getMessage());
+    }
+
+    final ExpressionTree tree = ExpressionParser.getInstance().parse("1+true", context);
+    tree.compile();
+    try {
+      Expression.evalTree(tree, context);
+      fail("Must throw PE");
+    } catch (PreprocessorException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testShortCircuitReportsUnknownVariables() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    for (final String expression : new String[] {"false && unknown_var", "true || strlen(unknown_var)==1", "false && (true || !unknown_var)"}) {
+      try {
+        compile(expression, context).eval(context);
+        fail("Must throw RE");
+      } catch (RuntimeException ex) {
+        assertEquals("Unknown variable [unknown_var]", ex.getMessage());
+      }
+
+      try {
+        Expression.evalTree(ExpressionParser.getInstance().parse(expression, context), context);
+        fail("Must throw RE");
+      } catch (RuntimeException ex) {
+        assertEquals("Unknown variable [unknown_var]", ex.getMessage());
+      }
+    }
+
+    context.setLocalVariable("some", Value.INT_ONE);
+    assertEquals(Value.BOOLEAN_FALSE, compile("false && some==1", context).eval(context));
+    assertEquals(Value.BOOLEAN_FALSE, Expression.evalTree(ExpressionParser.getInstance().parse("false && some==1", context), context));
+    try {
+      compile("false && some", context).eval(context);
+      fail("Must throw PE");
+    } catch (PreprocessorException ex) {
+      // expected
+    }
+    try {
+      Expression.evalTree(ExpressionParser.getInstance().parse("false && some", context), context);
+      fail("Must throw PE");
+    } catch (PreprocessorException ex) {
+      // expected
+    }
+    assertEquals(Value.BOOLEAN_FALSE, compile("false && strlen(1)==1", context).eval(context));
+  }
+
+  @Test
+  public void testArithmeticException() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    try {
+      compile("1/0", context).eval(context);
+      fail("Must throw AE");
+    } catch (ArithmeticException ex) {
+      // expected
+    }
+  }
+}
@@ -23,22 +23,22 @@ package com.igormaznitsa.jcp.expression;
 
 import com.igormaznitsa.jcp.AbstractMockPreprocessorContextTest;
 import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
 import com.igormaznitsa.jcp.expression.functions.FunctionABS;
 import com.igormaznitsa.jcp.expression.functions.xml.FunctionXML_ATTR;
 import com.igormaznitsa.jcp.expression.operators.AbstractOperator;
 import com.igormaznitsa.jcp.expression.operators.OperatorADD;
+import com.igormaznitsa.jcp.expression.operators.OperatorAND;
 import com.igormaznitsa.jcp.expression.operators.OperatorDIV;
 import com.igormaznitsa.jcp.expression.operators.OperatorEQU;
 import com.igormaznitsa.jcp.expression.operators.OperatorLESS;
+import com.igormaznitsa.jcp.expression.operators.OperatorLESSEQU;
 import com.igormaznitsa.jcp.expression.operators.OperatorMOD;
 import com.igormaznitsa.jcp.expression.operators.OperatorMUL;
 import com.igormaznitsa.jcp.expression.operators.OperatorSUB;
 import org.junit.Test;
 
-import java.io.PushbackReader;
-import java.io.StringReader;
-
 import static org.junit.Assert.*;
 
 public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
@@ -68,74 +68,133 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
   public void testNextItem_zero() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("0"));
-    assertEquals("Must be 0", Value.INT_ZERO, ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("0");
+    assertEquals("Must be 0", Value.INT_ZERO, ExpressionParser.getInstance().nextItem(source, context));
+    assertNull("Must be null", ExpressionParser.getInstance().nextItem(source, context));
   }
 
   @Test
   public void testNextItem_negativeNumber() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("-1"));
-    assertEquals("Must be SUB", AbstractOperator.findForClass(OperatorSUB.class), ExpressionParser.getInstance().nextItem(reader, context));
-    assertEquals("Must be 1", Value.INT_ONE, ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("-1");
+    assertEquals("Must be SUB", AbstractOperator.findForClass(OperatorSUB.class), ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals("Must be 1", Value.INT_ONE, ExpressionParser.getInstance().nextItem(source, context));
+    assertNull("Must be null", ExpressionParser.getInstance().nextItem(source, context));
   }
 
   @Test
   public void testNextItem_zeroLess() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("0<"));
-    assertEquals("Must be 0", Value.INT_ZERO, ExpressionParser.getInstance().nextItem(reader, context));
-    assertEquals("Must be LESS", AbstractOperator.findForClass(OperatorLESS.class), ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("0<");
+    assertEquals("Must be 0", Value.INT_ZERO, ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals("Must be LESS", AbstractOperator.findForClass(OperatorLESS.class), ExpressionParser.getInstance().nextItem(source, context));
+    assertNull("Must be null", ExpressionParser.getInstance().nextItem(source, context));
   }
 
   @Test
   public void testNextItem_oneValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("3"));
-    assertEquals("Must be 3", Value.INT_THREE, ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("3");
+    assertEquals("Must be 3", Value.INT_THREE, ExpressionParser.getInstance().nextItem(source, context));
+    assertNull("Must be null", ExpressionParser.getInstance().nextItem(source, context));
   }
 
   @Test
   public void testNextItem_oneHexValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("0xfF"));
-    assertEquals("Must be 255", Value.valueOf(255L), ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("0xfF");
+    assertEquals("Must be 255", Value.valueOf(255L), ExpressionParser.getInstance().nextItem(source, context));
+    assertNull("Must be null", ExpressionParser.getInstance().nextItem(source, context));
   }
 
   @Test
   public void testNextItem_oneBooleanTrueValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("true"));
-    assertEquals("Must be TRUE", Value.BOOLEAN_TRUE, ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("true");
+    assertEquals("Must be TRUE", Value.BOOLEAN_TRUE, ExpressionParser.getInstance().nextItem(source, context));
+    assertNull("Must be null", ExpressionParser.getInstance().nextItem(source, context));
   }
 
   @Test
   public void testNextItem_oneBooleanFalseValue() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("false"));
-    assertEquals("Must be FALSE", Value.BOOLEAN_FALSE, ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("false");
+    assertEquals("Must be FALSE", Value.BOOLEAN_FALSE, ExpressionParser.getInstance().nextItem(source, context));
+    assertNull("Must be null", ExpressionParser.getInstance().nextItem(source, context));
   }
 
   @Test
   public void testNextItem_oneOperator() throws Exception {
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("/"));
-    assertEquals("Must be DIV", AbstractOperator.findForClass(OperatorDIV.class), ExpressionParser.getInstance().nextItem(reader, context));
-    assertNull("Must be null", ExpressionParser.getInstance().nextItem(reader, context));
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("/");
+    assertEquals("Must be DIV", AbstractOperator.findForClass(OperatorDIV.class), ExpressionParser.getInstance().nextItem(source, context));
+    assertNull("Must be null", ExpressionParser.getInstance().nextItem(source, context));
+  }
+
+  @Test
+  public void testNextItem_twoCharOperators() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("1<=2&&3");
+    assertEquals(Value.INT_ONE, ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals(AbstractOperator.findForClass(OperatorLESSEQU.class), ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals(Value.INT_TWO, ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals(AbstractOperator.findForClass(OperatorAND.class), ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals(Value.INT_THREE, ExpressionParser.getInstance().nextItem(source, context));
+    assertNull(ExpressionParser.getInstance().nextItem(source, context));
+  }
+
+  @Test(expected = PreprocessorException.class)
+  public void testNextItem_unknownOperator() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+    ExpressionParser.getInstance().nextItem(new ExpressionParser.ExpressionSource("=<"), context);
+  }
+
+  @Test
+  public void testNextItem_caseInsensitiveIdentifiers() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("TRUE False ABS Some.Var");
+    assertEquals(Value.BOOLEAN_TRUE, ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals(Value.BOOLEAN_FALSE, ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals(AbstractFunction.findForClass(FunctionABS.class), ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals("some.var", ((Variable) ExpressionParser.getInstance().nextItem(source, context)).getName());
+    assertNull(ExpressionParser.getInstance().nextItem(source, context));
+  }
+
+  @Test
+  public void testNextItem_stringEscapes() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("\"a\\tb\\u00e9\\u0041\\\"\" \"\"");
+    assertEquals(Value.valueOf("a\tbéA\""), ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals(Value.valueOf(""), ExpressionParser.getInstance().nextItem(source, context));
+    assertNull(ExpressionParser.getInstance().nextItem(source, context));
+  }
+
+  @Test(expected = PreprocessorException.class)
+  public void testNextItem_nonClosedString() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+    ExpressionParser.getInstance().nextItem(new ExpressionParser.ExpressionSource("\"abc\\\""), context);
+  }
+
+  @Test
+  public void testNextItem_numbers() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("9223372036854775807 0x7FFFFFFFFFFFFFFF .5 12.");
+    assertEquals(Value.valueOf(Long.MAX_VALUE), ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals(Value.valueOf(Long.MAX_VALUE), ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals(Value.valueOf(0.5f), ExpressionParser.getInstance().nextItem(source, context));
+    assertEquals(Value.valueOf(12.0f), ExpressionParser.getInstance().nextItem(source, context));
+    assertNull(ExpressionParser.getInstance().nextItem(source, context));
   }
 
   @Test
@@ -143,7 +202,7 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
 
     final PreprocessorContext context = prepareMockContext();
 
-    final PushbackReader reader = new PushbackReader(new StringReader("xml_attr(1.3%abs(1+2)*3/4,\"hello\"==\"\nworld\t\")"));
+    final ExpressionParser.ExpressionSource source = new ExpressionParser.ExpressionSource("xml_attr(1.3%abs(1+2)*3/4,\"hello\"==\"\nworld\t\")");
 
     final ExpressionItem[] items = new ExpressionItem[] {
         AbstractFunction.findForClass(FunctionXML_ATTR.class),
@@ -169,10 +228,10 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
 
     int index = 0;
     for (final ExpressionItem item : items) {
-      assertEquals("Position " + index + " must be equal", item, ExpressionParser.getInstance().nextItem(reader, context));
+      assertEquals("Position " + index + " must be equal", item, ExpressionParser.getInstance().nextItem(source, context));
       index++;
     }
-    assertNull(ExpressionParser.getInstance().nextItem(reader, context));
+    assertNull(ExpressionParser.getInstance().nextItem(source, context));
   }
 
   @Test
@@ -302,4 +361,36 @@ public class ExpressionParserTest extends AbstractMockPreprocessorContextTest {
     final ExpressionTree tree = parser.parse("()", context);
     assertTrue("Must be empty", tree.getRoot().isEmptySlot());
   }
+
+  @Test
+  public void testFoldConstants() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+
+    final ExpressionTree tree = ExpressionParser.getInstance().parse("version>=3*256+2&&str2int(\"12\")==12", context);
+    tree.foldConstants(context);
+
+    final ExpressionTreeElement root = tree.getRoot();
+    assertEquals("Right must be folded", Value.BOOLEAN_TRUE, root.getChildForIndex(1).getItem());
+    final ExpressionTreeElement left = root.getChildForIndex(0);
+    assertEquals("Left-left must be variable", "version", left.getChildForIndex(0).getItem().toString());
+    assertEquals("Left-right must be folded", Value.valueOf(770L), left.getChildForIndex(1).getItem());
+  }
+
+  @Test
+  public void testFoldConstants_keepNotFoldable() throws Exception {
+    final PreprocessorContext context = prepareMockContext();
+
+    final ExpressionTree divByZero = ExpressionParser.getInstance().parse("1/0", context);
+    divByZero.foldConstants(context);
+    assertEquals(AbstractOperator.findForClass(OperatorDIV.class), divByZero.getRoot().getItem());
+
+    final ExpressionTree wrongTypes = ExpressionParser.getInstance().parse("abs(\"a\")+1", context);
+    wrongTypes.foldConstants(context);
+    assertEquals(AbstractOperator.findForClass(OperatorADD.class), wrongTypes.getRoot().getItem());
+    assertEquals(AbstractFunction.findForClass(FunctionABS.class), wrongTypes.getRoot().getChildForIndex(0).getItem());
+
+    final ExpressionTree notPure = ExpressionParser.getInstance().parse("xml_attr(\"first\",\"hello\")", context);
+    notPure.foldConstants(context);
+    assertEquals(AbstractFunction.findForClass(FunctionXML_ATTR.class), notPure.getRoot().getItem());
+  }
 }
@@ -22,9 +22,13 @@
 package com.igormaznitsa.jcp.expression;
 
 import com.igormaznitsa.jcp.AbstractSpyPreprocessorContextTest;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.exceptions.PreprocessorException;
 import org.junit.Test;
+import org.powermock.api.mockito.PowerMockito;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class ExpressionTest extends AbstractSpyPreprocessorContextTest {
 
@@ -32,4 +36,16 @@ public class ExpressionTest extends AbstractSpyPreprocessorContextTest {
   public void testSimpleExpression() throws Exception {
     assertEquals("Must be equal", Value.INT_TWO, Expression.evalExpression("40/4-2*4", preparePreprocessorContext(getCurrentTestFolder())));
   }
+
+  @Test
+  public void testTreeErrorContainsSourcePosition() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    PowerMockito.when(context.getPreprocessingState().getLastReadString()).thenReturn("//#if 1 2");
+    try {
+      Expression.evalExpression("1 2", context);
+      fail("Must throw PE");
+    } catch (PreprocessorException ex) {
+      assertEquals("Source line must be added by parser", "//#if 1 2", ex.getProcessingString());
+    }
+  }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.AbstractSpyPreprocessorContextTest;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.extension.PreprocessorExtension;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.powermock.api.mockito.PowerMockito.mock;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+public class ExpressionTreeCacheTest extends AbstractSpyPreprocessorContextTest {
+
+  @Test
+  public void testSameTreeForSameExpression() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    final ExpressionTreeCache cache = new ExpressionTreeCache();
+
+    final ExpressionTree tree = cache.parse("1+2*3", context);
+    assertSame(tree, cache.parse("  1+2*3 ", context));
+    assertNotSame(tree, cache.parse("1+2*4", context));
+
+    assertEquals(1L, cache.getHits());
+    assertEquals(2L, cache.getMisses());
+    assertEquals(2, cache.size());
+    assertEquals(Value.valueOf(7L), Expression.evalTree(tree, context));
+  }
+
+  @Test
+  public void testVariablesAreReadDuringEvaluation() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+
+    context.setLocalVariable("some", Value.valueOf(1L));
+    assertEquals(Value.valueOf(2L), Expression.evalExpression("some+1", context));
+    context.setLocalVariable("some", Value.valueOf(10L));
+    assertEquals(Value.valueOf(11L), Expression.evalExpression("some+1", context));
+
+    assertEquals(1L, context.getExpressionTreeCache().getHits());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedRemoved() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    final ExpressionTreeCache cache = new ExpressionTreeCache(2);
+
+    final ExpressionTree first = cache.parse("1", context);
+    cache.parse("2", context);
+    assertSame(first, cache.parse("1", context));
+    cache.parse("3", context);
+    assertEquals(2, cache.size());
+    assertSame(first, cache.parse("1", context));
+    cache.parse("2", context);
+
+    assertEquals(2L, cache.getHits());
+    assertEquals(4L, cache.getMisses());
+  }
+
+  @Test
+  public void testDisabledCache() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    final ExpressionTreeCache cache = new ExpressionTreeCache(0);
+
+    assertNotSame(cache.parse("1", context), cache.parse("1", context));
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.getHits());
+  }
+
+  @Test
+  public void testUserFunctionNotCached() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    final PreprocessorExtension extension = mock(PreprocessorExtension.class);
+    context.setPreprocessorExtension(extension);
+    when(extension.getUserFunctionArity(eq("test"))).thenReturn(1);
+    when(extension.processUserFunction(eq("test"), any(Value[].class))).thenReturn(Value.INT_ONE);
+
+    final ExpressionTreeCache cache = new ExpressionTreeCache();
+    cache.parse("1+$test(2)", context);
+    cache.parse("1+$test(2)", context);
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.getHits());
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.expression;
+
+import com.igormaznitsa.jcp.AbstractSpyPreprocessorContextTest;
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import com.igormaznitsa.jcp.expression.functions.AbstractFunction;
+import com.igormaznitsa.jcp.expression.functions.FunctionABS;
+import com.igormaznitsa.jcp.expression.functions.FunctionSTR2JAVA;
+import com.igormaznitsa.jcp.expression.functions.xml.FunctionXML_OPEN;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FunctionResultCacheTest extends AbstractSpyPreprocessorContextTest {
+
+  @Test
+  public void testPureFunctionWithStringArgumentCached() {
+    final FunctionResultCache cache = new FunctionResultCache();
+    final AbstractFunction function = AbstractFunction.findForClass(FunctionSTR2JAVA.class);
+
+    assertNull(cache.find(function, new Value[] {Value.valueOf("hello"), Value.BOOLEAN_FALSE}));
+    cache.put(function, new Value[] {Value.valueOf("hello"), Value.BOOLEAN_FALSE}, Value.valueOf("hello"));
+    assertEquals(Value.valueOf("hello"), cache.find(function, new Value[] {Value.valueOf("hello"), Value.BOOLEAN_FALSE}));
+    assertNull(cache.find(function, new Value[] {Value.valueOf("hello"), Value.BOOLEAN_TRUE}));
+
+    assertEquals(1, cache.size());
+    assertEquals(1L, cache.getHits());
+    assertEquals(2L, cache.getMisses());
+  }
+
+  @Test
+  public void testNotCachedCalls() {
+    final FunctionResultCache cache = new FunctionResultCache();
+
+    final AbstractFunction abs = AbstractFunction.findForClass(FunctionABS.class);
+    cache.put(abs, new Value[] {Value.valueOf(-1L)}, Value.INT_ONE);
+    assertNull(cache.find(abs, new Value[] {Value.valueOf(-1L)}));
+
+    final AbstractFunction notPure = AbstractFunction.findForClass(FunctionXML_OPEN.class);
+    cache.put(notPure, new Value[] {Value.valueOf("some.xml")}, Value.valueOf("id"));
+    assertNull(cache.find(notPure, new Value[] {Value.valueOf("some.xml")}));
+
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.getHits() + cache.getMisses());
+  }
+
+  @Test
+  public void testWeightLimit() {
+    final FunctionResultCache cache = new FunctionResultCache(100L);
+    final AbstractFunction function = AbstractFunction.findForClass(FunctionSTR2JAVA.class);
+
+    cache.put(function, new Value[] {Value.valueOf("aaaaaaaaaa"), Value.BOOLEAN_FALSE}, Value.valueOf("aaaaaaaaaa"));
+    cache.put(function, new Value[] {Value.valueOf("bbbbbbbbbb"), Value.BOOLEAN_FALSE}, Value.valueOf("bbbbbbbbbb"));
+    assertEquals(1, cache.size());
+    assertEquals(52L, cache.getWeight());
+    assertNotNull(cache.find(function, new Value[] {Value.valueOf("bbbbbbbbbb"), Value.BOOLEAN_FALSE}));
+
+    final StringBuilder buffer = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      buffer.append('c');
+    }
+    cache.put(function, new Value[] {Value.valueOf(buffer.toString()), Value.BOOLEAN_FALSE}, Value.valueOf(buffer.toString()));
+    assertNull(cache.find(function, new Value[] {Value.valueOf(buffer.toString()), Value.BOOLEAN_FALSE}));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testEvaluationUsesContextCache() throws Exception {
+    final PreprocessorContext context = preparePreprocessorContext(getCurrentTestFolder());
+    context.setLocalVariable("text", Value.valueOf("hello\tworld"));
+
+    final Value expected = Value.valueOf("hello\\tworld");
+    assertEquals(expected, Expression.evalExpression("str2java(text,false)", context));
+    assertEquals(expected, Expression.evalExpression("str2java(text,false)", context));
+    assertEquals(expected, Expression.evalTree(ExpressionParser.getInstance().parse("str2java(text,false)", context), context));
+
+    assertEquals(2L, context.getFunctionResultCache().getHits());
+    assertEquals(1L, context.getFunctionResultCache().getMisses());
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.igormaznitsa.jcp.expression;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ValueTest {
+
+  @Test
+  public void testSmallIntegersCached() {
+    assertSame(Value.INT_ZERO, Value.valueOf(0L));
+    assertSame(Value.INT_FIVE, Value.valueOf(Long.valueOf(5L)));
+    assertSame(Value.valueOf(-128L), Value.valueOf(-128L));
+    assertSame(Value.valueOf(1024L), Value.valueOf(1024L));
+    assertNotSame(Value.valueOf(100000L), Value.valueOf(100000L));
+    assertEquals(Value.valueOf(100000L), Value.valueOf(100000L));
+  }
+
+  @Test
+  public void testBooleanSingletons() {
+    assertSame(Value.BOOLEAN_TRUE, Value.valueOf(true));
+    assertSame(Value.BOOLEAN_FALSE, Value.valueOf(Boolean.FALSE));
+    assertTrue(Value.BOOLEAN_TRUE.booleanValue());
+    assertFalse(Value.BOOLEAN_FALSE.booleanValue());
+  }
+
+  @Test
+  public void testPrimitiveAccessors() {
+    assertEquals(-7L, Value.valueOf(-7L).longValue());
+    assertEquals(Long.valueOf(-7L), Value.valueOf(-7L).asLong());
+    assertEquals(Long.valueOf(-7L), Value.valueOf(-7L).getValue());
+    assertEquals(2.5f, Value.valueOf(2.5f).floatValue(), 0.0f);
+    assertEquals(Float.valueOf(2.5f), Value.valueOf(2.5f).getValue());
+    assertEquals(Boolean.TRUE, Value.BOOLEAN_TRUE.getValue());
+    assertEquals("7", Value.valueOf(7L).toString());
+    assertEquals("2.5", Value.valueOf(2.5f).toString());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testPrimitiveAccessor_WrongType() {
+    Value.valueOf(1.0f).longValue();
+  }
+
+  @Test
+  public void testEqualsAndHashCode() {
+    assertNotEquals(Value.valueOf(1L), Value.BOOLEAN_TRUE);
+    assertNotEquals(Value.valueOf(1L), Value.valueOf(1.0f));
+    assertEquals(Value.valueOf(Float.NaN), Value.valueOf(Float.NaN));
+    assertEquals(Long.valueOf(123456L).hashCode(), Value.valueOf(123456L).hashCode());
+    assertEquals(Float.valueOf(1.5f).hashCode(), Value.valueOf(1.5f).hashCode());
+    assertEquals("abc".hashCode(), Value.valueOf("abc").hashCode());
+  }
+}
@@ -23,9 +23,12 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import com.igormaznitsa.jcp.expression.ValueType;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class OperatorADDTest extends AbstractOperatorTest {
 
@@ -45,6 +48,15 @@ public class OperatorADDTest extends AbstractOperatorTest {
     assertExecution(Value.valueOf("1.2.3"), "1+\".\"+2+\".\"+3");
   }
 
+  @Test
+  public void testFindExecutor() throws Throwable {
+    assertEquals(AbstractOperator.EXECUTOR_TYPE_2, HANDLER.findExecutor(ValueType.INT, ValueType.INT).type());
+    assertEquals(Value.valueOf(5L), (Value) HANDLER.findExecutor(ValueType.INT, ValueType.INT).invokeExact((AbstractOperator) HANDLER, Value.INT_TWO, Value.INT_THREE));
+    assertEquals(Value.valueOf("2test"), (Value) HANDLER.findExecutor(ValueType.INT, ValueType.STRING).invokeExact((AbstractOperator) HANDLER, Value.INT_TWO, Value.valueOf("test")));
+    assertNotNull(HANDLER.findExecutor(ValueType.STRING, ValueType.BOOLEAN));
+    assertNull(HANDLER.findExecutor(ValueType.BOOLEAN, ValueType.INT));
+  }
+
   @Override
   public void testExecution_PreprocessorException() throws Exception {
     assertPreprocessorException("+");
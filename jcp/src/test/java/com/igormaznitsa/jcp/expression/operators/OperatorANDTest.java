@@ -45,6 +45,19 @@ public class OperatorANDTest extends AbstractOperatorTest {
     assertExecution(Value.valueOf(Boolean.TRUE), "true && true && true");
   }
 
+  @Test
+  public void testExecution_shortCircuit() throws Exception {
+    assertExecution(Value.BOOLEAN_FALSE, "false && 1/0==1");
+    assertExecution(Value.BOOLEAN_FALSE, "true && false && 1/0==1");
+    assertExecution(Value.BOOLEAN_FALSE, "false && (1/0==1 || !is(\"a\",1))");
+    assertExecution(Value.valueOf(0L), "0 && 3");
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void testExecution_noShortCircuitForTrue() throws Exception {
+    assertExecution(Value.BOOLEAN_FALSE, "true && 1/0==1");
+  }
+
   @Override
   public void testExecution_PreprocessorException() throws Exception {
     assertPreprocessorException("&&");
@@ -52,6 +65,7 @@ public class OperatorANDTest extends AbstractOperatorTest {
     assertPreprocessorException("&& false");
     assertPreprocessorException("\"test\" && true");
     assertPreprocessorException("false && 1.3");
+    assertPreprocessorException("false && (\"a\"+jcp.version)");
   }
 
   @Override
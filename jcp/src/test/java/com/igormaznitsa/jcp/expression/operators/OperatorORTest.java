@@ -23,6 +23,7 @@ package com.igormaznitsa.jcp.expression.operators;
 
 import com.igormaznitsa.jcp.expression.ExpressionItemPriority;
 import com.igormaznitsa.jcp.expression.Value;
+import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 
@@ -59,6 +60,19 @@ public class OperatorORTest extends AbstractOperatorTest {
     assertExecution(Value.valueOf(3L), "1||2");
   }
 
+  @Test
+  public void testExecution_shortCircuit() throws Exception {
+    assertExecution(Value.BOOLEAN_TRUE, "true || 1/0==1");
+    assertExecution(Value.BOOLEAN_TRUE, "false || true || 1/0==1");
+    assertExecution(Value.BOOLEAN_TRUE, "true || (1/0==1 && !is(\"a\",1))");
+    assertExecution(Value.valueOf(3L), "3 || 0");
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void testExecution_noShortCircuitForFalse() throws Exception {
+    assertExecution(Value.BOOLEAN_TRUE, "false || 1/0==1");
+  }
+
   @Override
   public void testExecution_PreprocessorException() throws Exception {
     assertPreprocessorException("||");
@@ -67,5 +81,6 @@ public class OperatorORTest extends AbstractOperatorTest {
     assertPreprocessorException("true||1");
     assertPreprocessorException("1.2||1.1");
     assertPreprocessorException("||false");
+    assertPreprocessorException("true || (\"a\"+jcp.version)");
   }
 }
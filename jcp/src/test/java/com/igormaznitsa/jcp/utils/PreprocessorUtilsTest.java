@@ -21,13 +21,18 @@
 
 package com.igormaznitsa.jcp.utils;
 
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import static org.junit.Assert.*;
 
@@ -40,6 +45,37 @@ public class PreprocessorUtilsTest {
     assertArrayEquals(new String[] {"/ae:123", "/homa-", "/hbd", "/-Some", "/", "/"}, processed);
   }
 
+  @Test
+  public void testFindSpaceTolerantDirectiveTail() {
+    assertEquals(3, PreprocessorUtils.findSpaceTolerantDirectiveTail("//#if", "#"));
+    assertEquals(8, PreprocessorUtils.findSpaceTolerantDirectiveTail(" \t//  \t#if", "#"));
+    assertEquals(5, PreprocessorUtils.findSpaceTolerantDirectiveTail("// $$text", "$$"));
+    assertEquals(4, PreprocessorUtils.findSpaceTolerantDirectiveTail("// $$text", "$"));
+    assertEquals(3, PreprocessorUtils.findSpaceTolerantDirectiveTail("//#", "#"));
+    assertEquals(-1, PreprocessorUtils.findSpaceTolerantDirectiveTail("// $text", "$$"));
+    assertEquals(-1, PreprocessorUtils.findSpaceTolerantDirectiveTail("/ /#if", "#"));
+    assertEquals(-1, PreprocessorUtils.findSpaceTolerantDirectiveTail("a//#if", "#"));
+    assertEquals(-1, PreprocessorUtils.findSpaceTolerantDirectiveTail("//#if\rtrue", "#"));
+  }
+
+  @Test
+  public void testFindSpaceTolerantTailRemover() {
+    assertEquals(4, PreprocessorUtils.findSpaceTolerantTailRemover("int /*-*/ a;"));
+    assertEquals(4, PreprocessorUtils.findSpaceTolerantTailRemover("int /* \t- */ a;"));
+    assertEquals(8, PreprocessorUtils.findSpaceTolerantTailRemover("int /*/*/* - */"));
+    assertEquals(-1, PreprocessorUtils.findSpaceTolerantTailRemover("int /* -- */ a;"));
+    assertEquals(-1, PreprocessorUtils.findSpaceTolerantTailRemover("int /* - * / a;"));
+  }
+
+  @Test
+  public void testProcessMacrosesWithSpaces() {
+    final PreprocessorContext context = new PreprocessorContext(new File("some_impossible_folder_121212"));
+    context.setAllowWhitespaces(true);
+    assertEquals("a 3 b", PreprocessorUtils.processMacroses("a /* $1+2$ */ b", context));
+    assertEquals("3x$y", PreprocessorUtils.processMacroses("/*$1+2$*//*$\"x$y\"$*/", context));
+    assertEquals("a /* $1+2 */ b", PreprocessorUtils.processMacroses("a /* $1+2 */ b", context));
+  }
+
   @Test
   public void testGenerateStringForChar() throws Exception {
     assertEquals("", PreprocessorUtils.generateStringForChar(' ', -1));
@@ -92,4 +128,38 @@ public class PreprocessorUtilsTest {
     assertEquals("Must have our selected size", BUFFER_SIZE, insideCharBuffer.length);
 
   }
+
+  @Test
+  public void testCopyAndLinkFile() throws Exception {
+    final TemporaryFolder folder = new TemporaryFolder();
+    folder.create();
+    try {
+      final File source = folder.newFile("source.gif");
+      FileUtils.write(source, "GIF89a", StandardCharsets.ISO_8859_1);
+      assertTrue(source.setLastModified(1000000000L));
+
+      final File copy = new File(folder.getRoot(), "target/copy.gif");
+      FileUtils.write(copy, "old longer content", StandardCharsets.ISO_8859_1);
+      PreprocessorUtils.copyFile(source, copy, false);
+      assertEquals("GIF89a", FileUtils.readFileToString(copy, StandardCharsets.ISO_8859_1));
+      assertEquals(source.lastModified(), copy.lastModified());
+      assertFalse(Files.isSameFile(source.toPath(), copy.toPath()));
+
+      final File link = new File(folder.getRoot(), "target/sub/link.gif");
+      if (PreprocessorUtils.linkFile(source, link, true)) {
+        assertTrue(Files.isSameFile(source.toPath(), link.toPath()));
+        assertTrue(PreprocessorUtils.linkFile(source, link, true));
+      }
+      assertEquals("GIF89a", FileUtils.readFileToString(link, StandardCharsets.ISO_8859_1));
+
+      // copy over a linked file must not change the source
+      final File other = folder.newFile("other.gif");
+      FileUtils.write(other, "other", StandardCharsets.ISO_8859_1);
+      PreprocessorUtils.copyFile(other, link, true);
+      assertEquals("other", FileUtils.readFileToString(link, StandardCharsets.ISO_8859_1));
+      assertEquals("GIF89a", FileUtils.readFileToString(source, StandardCharsets.ISO_8859_1));
+    } finally {
+      folder.delete();
+    }
+  }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2002-2019 Igor Maznitsa (http://www.igormaznitsa.com)
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.igormaznitsa.jcp.utils;
+
+import com.igormaznitsa.jcp.context.PreprocessorContext;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class SourceTreeScannerTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static boolean match(final String pattern, final String path) {
+    return SourceTreeScanner.compileAntPatterns(Collections.singletonList(pattern)).matcher(path).matches();
+  }
+
+  @Test
+  public void testAntPatterns() {
+    assertNull(SourceTreeScanner.compileAntPatterns(Collections.emptyList()));
+
+    assertTrue(match("?", "a"));
+    assertFalse(match("?", ""));
+    assertTrue(match(".git", ".git"));
+    assertFalse(match(".git", "a/.git"));
+
+    assertTrue(match("**/test", "test"));
+    assertTrue(match("**/test?", "test1"));
+    assertTrue(match("**/test*", "test111"));
+    assertTrue(match("**/test", "some/test"));
+    assertTrue(match("**/test", "some/help/test"));
+    assertTrue(match("some/**/test", "some/help/test"));
+    assertTrue(match("some/**/test", "some/test"));
+    assertTrue(match("**/some/help/test", "some/help/test"));
+    assertTrue(match("**/help/test", "some/help/test"));
+    assertTrue(match("**\\help\\test", "some/help/test"));
+    assertTrue(match("some/**", "some"));
+    assertTrue(match("some/**", "some/help/test"));
+    assertTrue(match("**", "some/help"));
+    assertTrue(match("**/**", "some/help"));
+    assertTrue(match("a.b[c]", "a.b[c]"));
+
+    assertFalse(match("**\\help\\test", "some/help/test1"));
+    assertFalse(match("some", "some1"));
+    assertFalse(match("some/help", "some/help/ddd"));
+    assertFalse(match("some/*", "some/help/ddd"));
+    assertFalse(match("a.b", "axb"));
+
+    final Pattern several = SourceTreeScanner.compileAntPatterns(Arrays.asList(".git", "**/.cvs"));
+    assertTrue(several.matcher(".git").matches());
+    assertTrue(several.matcher("a/b/.cvs").matches());
+    assertFalse(several.matcher("a/.git").matches());
+  }
+
+  private static List<String> relativePaths(final List<SourceTreeScanner.FoundFile> files) {
+    final List<String> result = new ArrayList<>();
+    files.forEach(x -> result.add(x.getRelativePath().replace('\\', '/')));
+    return result;
+  }
+
+  @Test
+  public void testScan() throws Exception {
+    final File root = tempFolder.newFolder("src");
+    FileUtils.write(new File(root, "b.txt"), "b", StandardCharsets.UTF_8);
+    FileUtils.write(new File(root, "a/z.txt"), "z", StandardCharsets.UTF_8);
+    FileUtils.write(new File(root, "a/c/empty.txt"), "", StandardCharsets.UTF_8);
+    FileUtils.write(new File(root, "a/.git/config"), "git", StandardCharsets.UTF_8);
+    FileUtils.write(new File(root, ".git/config"), "git", StandardCharsets.UTF_8);
+    FileUtils.write(new File(root, "c/d/e/f.txt"), "f", StandardCharsets.UTF_8);
+
+    final PreprocessorContext context = new PreprocessorContext(tempFolder.getRoot());
+
+    final List<SourceTreeScanner.FoundFile> found = new SourceTreeScanner(context, Arrays.asList("**/.git", "c/d"), false).scan(root);
+    assertEquals(Arrays.asList("a/c/empty.txt", "a/z.txt", "b.txt"), relativePaths(found));
+    assertEquals(new File(root, "a/z.txt"), found.get(1).getFile());
+    assertEquals(0L, found.get(0).getSize());
+    assertEquals(1L, found.get(1).getSize());
+
+    final List<SourceTreeScanner.FoundFile> all = new SourceTreeScanner(context, Collections.emptyList(), false).scan(root);
+    assertEquals(Arrays.asList(".git/config", "a/.git/config", "a/c/empty.txt", "a/z.txt", "b.txt", "c/d/e/f.txt"), relativePaths(all));
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(all, new SourceTreeScanner(context, Collections.emptyList(), true).scan(root));
+    }
+
+    assertTrue(new SourceTreeScanner(context, Collections.emptyList(), false).scan(new File(root, "unknown")).isEmpty());
+  }
+}